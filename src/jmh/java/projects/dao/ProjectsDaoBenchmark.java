@@ -0,0 +1,356 @@
+package projects.dao;
+
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ch.vorburger.mariadb4j.DB;
+import ch.vorburger.mariadb4j.DBConfigurationBuilder;
+import projects.entity.Category;
+import projects.entity.Material;
+import projects.entity.Project;
+import projects.entity.ProjectPage;
+import projects.entity.Step;
+import provided.util.DaoMetrics;
+import provided.util.SlowQueryLog;
+
+/*
+ * end-to-end benchmarks of ProjectsDao against an embedded MariaDB started from projects-schema.sql. The catalog is seeded
+ * once per trial, and DbConnection is pointed at the embedded server through its projects.db.* system properties
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProjectsDaoBenchmark {
+	private static final int PROJECTS = 1_000;
+	private static final int CHILDREN_PER_PROJECT = 5;
+
+	private DB db;
+	private ProjectsDao projectsDao;
+	private List<Integer> projectIds;
+	private Path snapshotFile;
+	private ProjectSnapshot snapshot;
+	private int next;
+
+	@Setup(Level.Trial)
+	public void startDatabase() throws Exception {
+		DBConfigurationBuilder config = DBConfigurationBuilder.newBuilder();
+		config.setPort(0);
+
+		// mariadbd refuses to start as the OS root user (e.g. in containers) unless told to
+		if("root".equals(System.getProperty("user.name"))) {
+			config.addArg("--user=root");
+		}
+
+		db = DB.newEmbeddedDB(config.build());
+		db.start();
+		createSchema(config.getPort());
+
+		// must be set before DbConnection is first used, since it builds its URL once
+		System.setProperty("projects.db.port", String.valueOf(config.getPort()));
+		System.setProperty("projects.db.user", "root");
+		System.setProperty("projects.db.password", "");
+
+		projectsDao = new ProjectsDao();
+		seedCategories();
+		projectIds = new ArrayList<>();
+
+		for(Project project : projectsDao.insertProjects(seedProjects(), 250)) {
+			projectIds.add(project.getProjectId());
+		}
+
+		snapshotFile = Files.createTempFile("projects", ".snapshot");
+
+		try(Stream<Project> projects = projectsDao.streamAllProjectGraphs()){
+			ProjectSnapshot.write(snapshotFile, projectsDao.fetchAllCategories(), projects, projectsDao.fetchLastChangeSeq());
+		}
+		snapshot = ProjectSnapshot.open(snapshotFile);
+	}
+
+	@TearDown(Level.Trial)
+	public void stopDatabase() throws Exception {
+		System.out.println("\n" + DbConnection.getPoolStats());
+
+		// populated when the fork runs with -jvmArgsAppend -Dprojects.metrics.enabled=true
+		if(DaoMetrics.isEnabled()) {
+			System.out.println(DaoMetrics.snapshotText());
+		}
+
+		// populated when the fork runs with -jvmArgsAppend -Dprojects.slowlog.thresholdMillis=...
+		if(SlowQueryLog.isEnabled()) {
+			System.out.print(SlowQueryLog.dump());
+		}
+		DbConnection.shutdown();
+		db.stop();
+
+		snapshot.close();
+		Files.deleteIfExists(snapshotFile);
+	}
+
+	// runs projects-schema.sql over JDBC so the benchmark doesn't depend on the mariadb command line client
+	private void createSchema(int port) throws Exception {
+		String script;
+
+		try(InputStream in = getClass().getClassLoader().getResourceAsStream("projects-schema.sql")){
+			script = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+		}
+
+		try(Connection conn = DriverManager.getConnection("jdbc:mysql://localhost:" + port + "/?user=root&useSSL=false");
+				Statement stmt = conn.createStatement()){
+			stmt.executeUpdate("CREATE DATABASE projects");
+			stmt.execute("USE projects");
+
+			for(String sql : script.split(";")) {
+				if(!sql.isBlank()) {
+					stmt.execute(sql);
+				}
+			}
+		}
+	}
+
+	private void seedCategories() throws SQLException {
+		try(Connection conn = DbConnection.getConnection(); Statement stmt = conn.createStatement()){
+			stmt.executeUpdate("INSERT INTO category (category_name) VALUES ('Doors and Windows'), ('Repairs'), ('Gardening')");
+		}
+	}
+
+	private List<Project> seedProjects() {
+		return newProjects(PROJECTS);
+	}
+
+	// project graphs shaped like the seeded catalog: five materials, five steps and one category each
+	private static List<Project> newProjects(int count) {
+		List<Project> projects = new ArrayList<>(count);
+
+		for(int index = 1; index <= count; index++) {
+			Project project = new Project();
+			project.setProjectName("Project " + index);
+			project.setEstimatedHours(new BigDecimal("8.00"));
+			project.setActualHours(new BigDecimal("9.50"));
+			project.setDifficulty(index % 5 + 1);
+			project.setNotes("Notes for project " + index);
+
+			for(int child = 1; child <= CHILDREN_PER_PROJECT; child++) {
+				Material material = new Material();
+				material.setMaterialName("Material " + child);
+				material.setNumRequired(child);
+				material.setCost(new BigDecimal("2.75"));
+				project.getMaterials().add(material);
+
+				Step step = new Step();
+				step.setStepText("Step " + child + " of project " + index);
+				project.getSteps().add(step);
+			}
+
+			Category category = new Category();
+			category.setCategoryId(index % 3 + 1);
+			project.getCategories().add(category);
+
+			projects.add(project);
+		}
+
+		return projects;
+	}
+
+	private Integer nextProjectId() {
+		next = (next + 1) % projectIds.size();
+		return projectIds.get(next);
+	}
+
+	@Benchmark
+	public Project fetchProjectById() {
+		return projectsDao.fetchProjectById(nextProjectId()).orElseThrow();
+	}
+
+	// the same graph with materials and steps read on separate connections; the gain grows with the size of the child lists
+	@Benchmark
+	public Project fetchProjectByIdParallel() {
+		return projectsDao.fetchProjectByIdParallel(nextProjectId(), ForkJoinPool.commonPool()).orElseThrow();
+	}
+
+	/*
+	 * one project with long child lists, inserted only for the benchmarks that take it so the seeded catalog stays the same for the
+	 * others. Compares the single round trip with the three-connection load where the parallel path should gain the most
+	 */
+	@State(Scope.Benchmark)
+	public static class LargeProject {
+		private static final int CHILD_ROWS = 5_000;
+
+		private Integer projectId;
+
+		@Setup(Level.Trial)
+		public void insert(ProjectsDaoBenchmark benchmark) {
+			Project project = new Project();
+			project.setProjectName("Large project");
+
+			for(int child = 1; child <= CHILD_ROWS; child++) {
+				Material material = new Material();
+				material.setMaterialName("Material " + child);
+				material.setNumRequired(child);
+				material.setCost(new BigDecimal("2.75"));
+				project.getMaterials().add(material);
+
+				Step step = new Step();
+				step.setStepText("Step " + child + " of the large project");
+				project.getSteps().add(step);
+			}
+
+			projectId = benchmark.projectsDao.insertProjects(List.of(project), 1).get(0).getProjectId();
+		}
+	}
+
+	@Benchmark
+	public Project fetchLargeProjectById(LargeProject large) {
+		return projectsDao.fetchProjectById(large.projectId).orElseThrow();
+	}
+
+	@Benchmark
+	public Project fetchLargeProjectByIdParallel(LargeProject large) {
+		return projectsDao.fetchProjectByIdParallel(large.projectId, ForkJoinPool.commonPool()).orElseThrow();
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MINUTES)
+	public List<Project> fetchAllProjects() {
+		return projectsDao.fetchAllProjects();
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MINUTES)
+	public long streamAllProjects() {
+		try(Stream<Project> projects = projectsDao.streamAllProjects()){
+			return projects.count();
+		}
+	}
+
+	// the same reads answered from the memory-mapped snapshot of the seeded catalog, with no database round trip
+	@Benchmark
+	public Project snapshotFetchProjectById() {
+		return snapshot.fetchProjectById(nextProjectId()).orElseThrow();
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MINUTES)
+	public List<Project> snapshotFetchAllProjects() {
+		return snapshot.fetchAllProjects();
+	}
+
+	@Benchmark
+	public ProjectPage fetchProjectPage() {
+		return projectsDao.fetchProjectPage(null, 50);
+	}
+
+	/*
+	 * writes 100 project graphs per call through insertProjects. A chunk size of 100 writes them in one transaction with one batch per
+	 * table, and 1 commits each project on its own, which shows what the batching saves. The inserted projects are deleted after each
+	 * iteration, so the table only grows by what one iteration adds
+	 */
+	@State(Scope.Benchmark)
+	public static class InsertBatch {
+		private static final int BATCH_PROJECTS = 100;
+
+		@Param({"1", "100"})
+		private int chunkSize;
+
+		private final List<Integer> insertedIds = new ArrayList<>();
+
+		@TearDown(Level.Iteration)
+		public void deleteInserted(ProjectsDaoBenchmark benchmark) {
+			benchmark.projectsDao.deleteProjects(insertedIds, 500);
+			insertedIds.clear();
+		}
+	}
+
+	@Benchmark
+	public int insertProjects(InsertBatch batch) {
+		List<Project> projects = projectsDao.insertProjects(newProjects(InsertBatch.BATCH_PROJECTS), batch.chunkSize);
+
+		for(Project project : projects) {
+			batch.insertedIds.add(project.getProjectId());
+		}
+		return projects.size();
+	}
+
+	/*
+	 * the latency of one insertProject as the project table grows. The table is topped up with bare project rows to each size before
+	 * the trial; the key comes back with the insert (RETURN_GENERATED_KEYS) rather than from a query over the table, so the average
+	 * should stay flat from 1,000 to 1,000,000 rows
+	 */
+	@State(Scope.Benchmark)
+	public static class TableSize {
+		// six cross-joined digit tables give up to a million rows without a recursive CTE, whose depth the server limits
+		private static final String DIGITS = "(SELECT 0 d UNION ALL SELECT 1 UNION ALL SELECT 2 UNION ALL SELECT 3 UNION ALL SELECT 4 "
+				+ "UNION ALL SELECT 5 UNION ALL SELECT 6 UNION ALL SELECT 7 UNION ALL SELECT 8 UNION ALL SELECT 9)";
+		private static final String FILL_PROJECTS_SQL = ""
+				+ "INSERT INTO project (project_name, difficulty) "
+				+ "SELECT 'Filler project', 1 "
+				+ "FROM " + DIGITS + " a, " + DIGITS + " b, " + DIGITS + " c, " + DIGITS + " d, " + DIGITS + " e, " + DIGITS + " f "
+				+ "LIMIT ?";
+
+		@Param({"1000", "100000", "1000000"})
+		private int projectRows;
+
+		@Setup(Level.Trial)
+		public void fill(ProjectsDaoBenchmark benchmark) throws SQLException {
+			int missing = projectRows - benchmark.projectIds.size();
+
+			if(missing <= 0) {
+				return;
+			}
+
+			try(Connection conn = DbConnection.getConnection(); PreparedStatement stmt = conn.prepareStatement(FILL_PROJECTS_SQL)){
+				stmt.setInt(1, missing);
+				stmt.executeUpdate();
+			}
+		}
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public Project insertProjectAtTableSize(TableSize tableSize) {
+		Project project = new Project();
+		project.setProjectName("Benchmark project");
+		project.setDifficulty(1);
+
+		return projectsDao.insertProject(project);
+	}
+
+	@Benchmark
+	public boolean insertAndDeleteProject() {
+		Project project = new Project();
+		project.setProjectName("Benchmark project");
+		project.setDifficulty(1);
+
+		return projectsDao.deleteProject(projectsDao.insertProject(project).getProjectId());
+	}
+}
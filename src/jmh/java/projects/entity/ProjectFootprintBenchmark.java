@@ -0,0 +1,162 @@
+/**
+ * 
+ */
+package projects.entity;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import provided.util.IntIntMap;
+
+/**
+ * Measures the memory a bulk load spends per project on the project and the structures that hold
+ * its children, before and after the move to array-backed lists. The material, step and category
+ * rows are built once in setup, so the only allocations left in the benchmark are the ones whose
+ * layout changed: LINKED is the old layout (LinkedList children, a HashMap of boxed IDs to join
+ * them), ARRAY is the current one (presized ArrayLists, an {@link IntIntMap} of positions). Nothing
+ * allocated is temporary apart from the join index, so run with -prof gc and read
+ * gc.alloc.rate.norm as bytes per loaded project.
+ * 
+ * @author Promineo
+ * 
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProjectFootprintBenchmark {
+  private static final int PROJECTS = 1_000;
+
+  @Param({"LINKED", "ARRAY"})
+  private String layout;
+
+  @Param({"5", "50"})
+  private int children;
+
+  private Material[] materials;
+  private Step[] steps;
+  private Category[] categories;
+
+  /**
+   * The shape of {@link Project} before its child lists were array-backed.
+   */
+  static class LinkedProject {
+    Integer projectId;
+    String projectName;
+    BigDecimal estimatedHours;
+    BigDecimal actualHours;
+    Integer difficulty;
+    String notes;
+
+    List<Material> materials = new LinkedList<>();
+    List<Step> steps = new LinkedList<>();
+    List<Category> categories = new LinkedList<>();
+  }
+
+  @Setup
+  public void setup() {
+    materials = new Material[PROJECTS * children];
+    steps = new Step[PROJECTS * children];
+    categories = new Category[PROJECTS];
+
+    for(int index = 0; index < materials.length; index++) {
+      Material material = new Material();
+      material.setMaterialId(index + 1);
+      material.setProjectId(index / children + 1);
+      material.setMaterialName("Material " + index);
+      materials[index] = material;
+
+      Step step = new Step();
+      step.setStepId(index + 1);
+      step.setProjectId(index / children + 1);
+      step.setStepText("Step " + index);
+      steps[index] = step;
+    }
+
+    for(int index = 0; index < categories.length; index++) {
+      Category category = new Category();
+      category.setCategoryId(index + 1);
+      category.setCategoryName("Category " + index);
+      categories[index] = category;
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(PROJECTS)
+  public Object loadProjects() {
+    return "LINKED".equals(layout) ? loadLinked() : loadArray();
+  }
+
+  // mirrors fetchProjectGraphs as it was: parents looked up through a map of boxed IDs
+  private List<LinkedProject> loadLinked() {
+    Map<Integer, LinkedProject> projectsById = new HashMap<>();
+
+    for(int index = 0; index < PROJECTS; index++) {
+      LinkedProject project = new LinkedProject();
+      project.projectId = index + 1;
+      projectsById.put(project.projectId, project);
+    }
+
+    for(Material material : materials) {
+      projectsById.get(material.getProjectId()).materials.add(material);
+    }
+
+    for(Step step : steps) {
+      projectsById.get(step.getProjectId()).steps.add(step);
+    }
+
+    for(int index = 0; index < categories.length; index++) {
+      projectsById.get(index + 1).categories.add(categories[index]);
+    }
+
+    return new LinkedList<>(projectsById.values());
+  }
+
+  // mirrors fetchProjectGraphs as it is: parents looked up by position, child lists presized from the row counts
+  private List<Project> loadArray() {
+    List<Project> projects = new ArrayList<>(PROJECTS);
+    IntIntMap indexById = new IntIntMap(PROJECTS);
+
+    for(int index = 0; index < PROJECTS; index++) {
+      Project project = new Project();
+      project.setProjectId(index + 1);
+      indexById.put(index + 1, projects.size());
+      projects.add(project);
+      project.ensureChildCapacity(children, children, 1);
+    }
+
+    for(Material material : materials) {
+      projects.get(indexById.get(material.getProjectId())).getMaterials().add(material);
+    }
+
+    for(Step step : steps) {
+      projects.get(indexById.get(step.getProjectId())).getSteps().add(step);
+    }
+
+    for(int index = 0; index < categories.length; index++) {
+      projects.get(indexById.get(index + 1)).getCategories().add(categories[index]);
+    }
+
+    return projects;
+  }
+}
@@ -0,0 +1,83 @@
+/**
+ * 
+ */
+package projects.entity;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks {@link Project#toString()} and {@link Project#appendTo(Appendable)} for projects with
+ * growing numbers of children.
+ * 
+ * @author Promineo
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProjectToStringBenchmark {
+  @Param({"10", "100", "1000"})
+  private int children;
+
+  private Project project;
+  private StringBuilder out = new StringBuilder();
+
+  @Setup
+  public void setup() {
+    project = new Project();
+    project.setProjectId(1);
+    project.setProjectName("Build a shed");
+    project.setEstimatedHours(new BigDecimal("40.00"));
+    project.setDifficulty(4);
+
+    for(int index = 1; index <= children; index++) {
+      Material material = new Material();
+      material.setMaterialId(index);
+      material.setMaterialName("2x4 board " + index);
+      material.setNumRequired(index);
+      material.setCost(new BigDecimal("3.99"));
+      project.getMaterials().add(material);
+
+      Step step = new Step();
+      step.setStepId(index);
+      step.setStepText("Cut and fasten board " + index);
+      step.setStepOrder(index);
+      project.getSteps().add(step);
+
+      Category category = new Category();
+      category.setCategoryId(index);
+      category.setCategoryName("Category " + index);
+      project.getCategories().add(category);
+    }
+  }
+
+  @Benchmark
+  public String projectToString() {
+    return project.toString();
+  }
+
+  // rendering into a reused buffer, like the console's buffered writer, so only the per-field conversions allocate
+  @Benchmark
+  public int projectAppendTo() throws IOException {
+    out.setLength(0);
+    project.appendTo(out);
+    return out.length();
+  }
+}
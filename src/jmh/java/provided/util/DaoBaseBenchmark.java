@@ -0,0 +1,118 @@
+/**
+ * 
+ */
+package provided.util;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import projects.entity.Project;
+
+/**
+ * Benchmarks for the mapping and parameter binding in {@link DaoBase}. Rows come from an in-memory
+ * result set so only the DAO code is measured. Run with -prof gc to see allocations per row.
+ * 
+ * @author Promineo
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DaoBaseBenchmark {
+  private static final int ROWS = 1_000;
+
+  // @formatter:off
+  private static final String[] PROJECT_COLUMNS = {
+      "project_id", "project_name", "estimated_hours", "actual_hours", "difficulty", "notes"};
+  // @formatter:on
+
+  @Param({"REFLECTION", "GENERATED"})
+  private MappingStrategy strategy;
+
+  private BenchmarkDao dao;
+  private ResultSet rs;
+  private PreparedStatement stmt;
+  private Project project;
+
+  /** Exposes the protected DaoBase methods to the benchmarks. */
+  private static class BenchmarkDao extends DaoBase {
+    BenchmarkDao(MappingStrategy strategy) {
+      super(strategy);
+    }
+  }
+
+  @Setup
+  public void setup() {
+    List<Object[]> rows = new ArrayList<>(ROWS);
+
+    for(int id = 1; id <= ROWS; id++) {
+      // @formatter:off
+      rows.add(new Object[] {id, "Project " + id, new BigDecimal("12.50"), new BigDecimal("14.25"),
+          id % 5 + 1, "Notes for project " + id});
+      // @formatter:on
+    }
+
+    dao = new BenchmarkDao(strategy);
+    rs = InMemoryResultSet.of(PROJECT_COLUMNS, rows);
+    stmt = InMemoryResultSet.discardingStatement();
+
+    project = new Project();
+    project.setProjectId(1);
+    project.setProjectName("Hang a door");
+    project.setEstimatedHours(new BigDecimal("4.00"));
+    project.setActualHours(new BigDecimal("3.50"));
+    project.setDifficulty(3);
+    project.setNotes("Use the level");
+  }
+
+  /**
+   * Maps every row of the result set; the score is rows per second.
+   */
+  @Benchmark
+  @OperationsPerInvocation(ROWS)
+  public void extract(Blackhole blackhole) throws SQLException {
+    rs.beforeFirst();
+
+    while(rs.next()) {
+      blackhole.consume(dao.extract(rs, Project.class));
+    }
+  }
+
+  /**
+   * Binds the five parameters of an insert or update of a project.
+   */
+  @Benchmark
+  public void setParameter() throws SQLException {
+    dao.setParameter(stmt, 1, project.getProjectName(), String.class);
+    dao.setParameter(stmt, 2, project.getEstimatedHours(), BigDecimal.class);
+    dao.setParameter(stmt, 3, project.getActualHours(), BigDecimal.class);
+    dao.setParameter(stmt, 4, project.getDifficulty(), Integer.class);
+    dao.setParameter(stmt, 5, project.getNotes(), String.class);
+  }
+
+  @Benchmark
+  public String camelCaseToSnakeCase() {
+    return DaoBase.camelCaseToSnakeCase("estimatedHours");
+  }
+}
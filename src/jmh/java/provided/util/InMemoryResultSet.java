@@ -0,0 +1,106 @@
+/**
+ * 
+ */
+package provided.util;
+
+import java.lang.reflect.Proxy;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * This provides just enough of {@link ResultSet} and {@link PreparedStatement} over in-memory rows
+ * to benchmark the mapping code in {@link DaoBase} without a database. Only the methods the DAO
+ * layer calls are implemented.
+ * 
+ * @author Promineo
+ *
+ */
+final class InMemoryResultSet {
+  private InMemoryResultSet() {}
+
+  /**
+   * Creates a result set over the given rows. The result set can be rewound with beforeFirst().
+   * 
+   * @param labels The column labels
+   * @param rows The row values, in label order
+   * @return The result set
+   */
+  static ResultSet of(String[] labels, List<Object[]> rows) {
+    ResultSetMetaData meta = (ResultSetMetaData)Proxy.newProxyInstance(
+        InMemoryResultSet.class.getClassLoader(), new Class<?>[] {ResultSetMetaData.class},
+        (proxy, method, args) -> {
+          switch(method.getName()) {
+            case "getColumnCount":
+              return labels.length;
+
+            case "getColumnLabel":
+            case "getColumnName":
+              return labels[(Integer)args[0] - 1];
+
+            default:
+              throw new UnsupportedOperationException(method.getName());
+          }
+        });
+
+    int[] row = {-1};
+
+    return (ResultSet)Proxy.newProxyInstance(InMemoryResultSet.class.getClassLoader(),
+        new Class<?>[] {ResultSet.class}, (proxy, method, args) -> {
+          switch(method.getName()) {
+            case "next":
+              return ++row[0] < rows.size();
+
+            case "beforeFirst":
+              row[0] = -1;
+              return null;
+
+            case "getMetaData":
+              return meta;
+
+            case "getObject":
+              if(args[0] instanceof Integer) {
+                return rows.get(row[0])[(Integer)args[0] - 1];
+              }
+
+              for(int index = 0; index < labels.length; index++) {
+                if(labels[index].equalsIgnoreCase((String)args[0])) {
+                  return rows.get(row[0])[index];
+                }
+              }
+
+              throw new SQLException("Column not found: " + args[0]);
+
+            case "close":
+              return null;
+
+            case "hashCode":
+              return System.identityHashCode(proxy);
+
+            case "equals":
+              return proxy == args[0];
+
+            default:
+              throw new UnsupportedOperationException(method.getName());
+          }
+        });
+  }
+
+  /**
+   * Creates a prepared statement that accepts and discards parameters.
+   * 
+   * @return The statement
+   */
+  static PreparedStatement discardingStatement() {
+    return (PreparedStatement)Proxy.newProxyInstance(InMemoryResultSet.class.getClassLoader(),
+        new Class<?>[] {PreparedStatement.class}, (proxy, method, args) -> {
+          if(method.getName().startsWith("set")) {
+            return null;
+          }
+
+          throw new UnsupportedOperationException(method.getName());
+        });
+  }
+}
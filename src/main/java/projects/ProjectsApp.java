@@ -1,20 +1,35 @@
 package projects;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.math.BigDecimal;
-import java.util.LinkedList;
+import java.nio.file.Path;
 import java.util.List;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.Scanner;
+import java.util.stream.Stream;
 
+import projects.catalog.CatalogExporter;
+import projects.catalog.CatalogImporter;
+import projects.catalog.ImportProgress;
+import projects.dao.ProjectSnapshot;
+import projects.entity.ImportCheckpoint;
 import projects.entity.Project;
 import projects.exception.DbException;
+import projects.exception.ProjectConflictException;
 import projects.service.ProjectsService;
 
 public class ProjectsApp {
 	// scanner used for user input, project services creates an instance of the projects service class
 	private Scanner scanner = new Scanner(System.in);
-	private ProjectsService projectsService = new ProjectsService();
+	private ProjectsService projectsService;
 	private Project curProject;
+	// projects are rendered through this buffer rather than System.out directly, which would flush on every line
+	private Writer console = new BufferedWriter(new OutputStreamWriter(System.out));
 	
 	// list below is utilized in menu app to show the options
 	
@@ -24,13 +39,27 @@ public class ProjectsApp {
 		"2) List projects",
 		"3) Select a project",
 		"4) Update project details",
-		"5) Delete a project"
+		"5) Delete a project",
+		"6) Import projects from a file",
+		"7) Export projects to a file",
+		"8) Write or refresh the local snapshot"
 	);
 	// @formatter:on
 
-	public static void main(String[] args) {
-		// calls method that brings up the menu
-		new ProjectsApp().processUserSelections();
+	private ProjectsApp(ProjectsService projectsService) {
+		this.projectsService = projectsService;
+	}
+
+	/*
+	 * calls method that brings up the menu. Started with --snapshot <file> the app is read-only and lists and selects projects from the
+	 * local snapshot without connecting to the database until the snapshot is refreshed
+	 */
+	public static void main(String[] args) throws IOException {
+		if(args.length == 2 && "--snapshot".equals(args[0])) {
+			new ProjectsApp(new ProjectsService(ProjectSnapshot.open(Path.of(args[1])))).processUserSelections();
+		} else {
+			new ProjectsApp(new ProjectsService()).processUserSelections();
+		}
 	}
 	
 	
@@ -71,6 +100,18 @@ public class ProjectsApp {
 					deleteProject();
 					break;
 					
+				case 6:
+					importProjects();
+					break;
+					
+				case 7:
+					exportProjects();
+					break;
+					
+				case 8:
+					writeSnapshot();
+					break;
+					
 					default:
 						System.out.println("\n" + selection + " is not a valid selection. Try again.");
 				}
@@ -83,6 +124,71 @@ public class ProjectsApp {
 				
 	}
 
+	/*
+	 * method imports a CSV or JSON-lines catalog of projects with their materials, steps and categories. Progress is printed after every chunk,
+	 * and a checkpoint saved in the database under the file's path lets an interrupted import pick up where it stopped when it is run again
+	 */
+	private void importProjects() throws IOException {
+		String fileName = getStringInput("Enter the path of the CSV or JSON-lines file to import");
+		
+		if(Objects.isNull(fileName)) {
+			return;
+		}
+		
+		Path source = Path.of(fileName);
+		String checkpointName = source.toAbsolutePath().normalize().toString();
+		Optional<ImportCheckpoint> checkpoint = projectsService.fetchImportCheckpoint(checkpointName);
+		
+		if(checkpoint.isPresent()) {
+			String answer = getStringInput("This file was imported up to record " + checkpoint.get().getRecords()
+					+ ". Enter 'restart' to import it from the beginning, or press Enter to resume");
+			
+			if("restart".equalsIgnoreCase(answer)) {
+				projectsService.deleteImportCheckpoint(checkpointName);
+			}
+		}
+		
+		ImportProgress result = new CatalogImporter(projectsService).importCatalog(source, checkpointName, progress -> {
+			progress.errors().forEach(error -> System.out.println("   Rejected " + error));
+			System.out.println("   " + progress);
+		});
+		
+		System.out.println("\nImport finished: " + result);
+	}
+
+	// method regenerates the snapshot the app is reading from, or in normal mode writes a snapshot that --snapshot can start from
+	private void writeSnapshot() throws IOException {
+		long start = System.nanoTime();
+		int count;
+		
+		if(projectsService.isReadOnly()) {
+			count = projectsService.refreshSnapshot();
+		} else {
+			String fileName = getStringInput("Enter the path of the snapshot file to write");
+			
+			if(Objects.isNull(fileName)) {
+				return;
+			}
+			count = projectsService.writeSnapshot(Path.of(fileName));
+		}
+		
+		System.out.printf("%nWrote %,d projects to the snapshot in %.1fs%n", count, (System.nanoTime() - start) / 1e9);
+	}
+
+	// method writes every project with its materials, steps and categories to a CSV or JSON-lines file that option 6 can import again
+	private void exportProjects() throws IOException {
+		String fileName = getStringInput("Enter the path of the CSV or JSON-lines file to export to");
+		
+		if(Objects.isNull(fileName)) {
+			return;
+		}
+		
+		long start = System.nanoTime();
+		long count = new CatalogExporter(projectsService).exportCatalog(Path.of(fileName));
+		
+		System.out.printf("%nExported %,d projects to %s in %.1fs%n", count, fileName, (System.nanoTime() - start) / 1e9);
+	}
+
 	/*
 	 * method lists all projects available and asks the user to select one to delete based on its ID, the ID is checked to make sure the project exists then the id is sent to the Services layer
 	 * this method also checks to make sure that the project being deleted is not the current project and if it is, it sets the current project to Null
@@ -129,7 +235,12 @@ public class ProjectsApp {
 		project.setDifficulty(Objects.isNull(difficulty) ? curProject.getDifficulty() : difficulty);
 		project.setNotes(Objects.isNull(notes) ? curProject.getNotes() : notes);
 		
-		projectsService.modifyProjectDetails(project);
+		// only the fields the user changed are written, and they are rejected if someone else changed the same fields since the project was selected
+		try {
+			projectsService.modifyProjectDetails(curProject, project);
+		} catch(ProjectConflictException e) {
+			System.out.println("\nThe project was changed by someone else before your update was saved. It has been reloaded, please try again.");
+		}
 		
 		curProject = projectsService.fetchProjectById(curProject.getProjectId());
 	}
@@ -153,12 +264,12 @@ public class ProjectsApp {
 
 	// sends user input to Project Services which retrieves the data from the DAO layer. Once the data is received by the DAO layer from the Service layer, this method prints out all projects
 	private void listProjects() {
-		List<Project> projects = projectsService.fetchAllProjects();
-		
 		System.out.println("\nProjects:");
 		
-		projects.forEach(project -> System.out.println("   " + project.getProjectId()+ ": " + project.getProjectName()));
-		
+		// projects are streamed and printed as they arrive so large catalogs aren't held in memory
+		try(Stream<Project> projects = projectsService.streamAllProjects()){
+			projects.forEach(project -> System.out.println("   " + project.getProjectId()+ ": " + project.getProjectName()));
+		}
 		
 	}
 
@@ -185,7 +296,7 @@ public class ProjectsApp {
 		
 		// sends the new project to the project services class which sends to the DAO class & that will be sent off to our database
 		Project dbProject = projectsService.addProject(project);
-		System.out.println("You have successfully created the project: " + dbProject);
+		printProject("You have successfully created the project: ", dbProject);
 	}
 
 
@@ -255,11 +366,23 @@ public class ProjectsApp {
 		if(Objects.isNull(curProject)) {
 			System.out.println("\nYou are not working with a project");
 		} else {
-			System.out.println("\nYou are working with project: "+ curProject);
+			printProject("\nYou are working with project: ", curProject);
 		}
 		
 		
 		
 	}
+	
+	// writes the heading and the project graph to the console in one pass and flushes once at the end, so printing a large project doesn't build it into a string first
+	private void printProject(String heading, Project project) {
+		try {
+			console.write(heading);
+			project.appendTo(console);
+			console.write(System.lineSeparator());
+			console.flush();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
 
 }
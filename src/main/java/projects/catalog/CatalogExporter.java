@@ -0,0 +1,48 @@
+package projects.catalog;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+import projects.entity.Project;
+import projects.service.ProjectsService;
+
+/*
+ * exports every project with its materials, steps and categories to a CSV or JSON-lines file that CatalogImporter can read back. The
+ * projects are streamed from the database and written as they arrive, so memory use doesn't grow with the catalog. The file is
+ * written under a unique temporary name in the same directory and moved into place at the end, so a failed export never leaves a
+ * partial file behind and concurrent exports don't write to the same file
+ */
+public class CatalogExporter {
+	private final ProjectsService projectsService;
+
+	public CatalogExporter(ProjectsService projectsService) {
+		this.projectsService = projectsService;
+	}
+
+	// returns the number of projects written
+	public long exportCatalog(Path target) throws IOException {
+		// the temporary name keeps the target's extension, which picks the format
+		String fileName = target.getFileName().toString();
+		int dot = fileName.lastIndexOf('.');
+		String extension = dot < 0 ? null : fileName.substring(dot);
+		Path temp = Files.createTempFile(target.toAbsolutePath().getParent(), "partial-", extension);
+		long count = 0;
+
+		try(Stream<Project> projects = projectsService.streamAllProjectGraphs(); CatalogWriter writer = CatalogWriter.open(temp)) {
+			for(Iterator<Project> it = projects.iterator(); it.hasNext();) {
+				writer.write(it.next());
+				count++;
+			}
+		} catch(IOException | RuntimeException e) {
+			Files.deleteIfExists(temp);
+			throw e;
+		}
+
+		Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		return count;
+	}
+}
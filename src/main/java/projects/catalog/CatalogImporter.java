@@ -0,0 +1,279 @@
+package projects.catalog;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Consumer;
+
+import projects.entity.Category;
+import projects.entity.ImportCheckpoint;
+import projects.entity.Project;
+import projects.exception.DbException;
+import projects.service.ProjectsService;
+
+/*
+ * imports a CSV or JSON-lines catalog in three overlapping stages: a reader thread parses the file into chunks of records, validates
+ * each chunk in parallel and hands it over through a small queue, while the calling thread writes the previous chunk with the batched
+ * inserts of ProjectsDao in one transaction. At most QUEUED_CHUNKS chunks wait between the stages, so memory stays bounded however
+ * large the file is.
+ *
+ * The number of the last record each chunk covered is saved as a named checkpoint in the chunk's own transaction, so the checkpoint
+ * and the imported projects can't disagree. An import that stops part way (a crash, a database error) is resumed by running it again
+ * with the same checkpoint name: records up to that number are read but not written again. The checkpoint is kept when the import
+ * completes, so importing the same file again adds nothing; delete it to import the file a second time. Categories named in the file
+ * that don't exist yet are created in the transaction of the first chunk that uses them, so a failed chunk leaves none behind
+ */
+public class CatalogImporter {
+	public static final int DEFAULT_CHUNK_SIZE = 500;
+
+	private static final int QUEUED_CHUNKS = 2;
+
+	// marks the end of the file on the queue
+	private static final Chunk END = new Chunk(List.of(), 0, null);
+
+	private final ProjectsService projectsService;
+	private final ProjectValidator validator = new ProjectValidator();
+
+	public CatalogImporter(ProjectsService projectsService) {
+		this.projectsService = projectsService;
+	}
+
+	// records read and validated by the reader thread, or the failure that stopped it
+	private record Chunk(List<CatalogRecord> records, long lastNumber, Exception failure) {
+	}
+
+	// a null checkpoint name imports the whole file without saving a checkpoint
+	public ImportProgress importCatalog(Path source, String checkpointName, Consumer<ImportProgress> listener) throws IOException {
+		return importCatalog(source, checkpointName, DEFAULT_CHUNK_SIZE, listener);
+	}
+
+	public ImportProgress importCatalog(Path source, String checkpointName, int chunkSize, Consumer<ImportProgress> listener)
+			throws IOException {
+		if(chunkSize < 1) {
+			throw new IllegalArgumentException("Chunk size must be at least 1 but was " + chunkSize + ".");
+		}
+
+		String sourceName = source.toAbsolutePath().normalize().toString();
+		long resumeAfter = readCheckpoint(checkpointName, sourceName);
+		long start = System.nanoTime();
+
+		BlockingQueue<Chunk> queue = new ArrayBlockingQueue<>(QUEUED_CHUNKS);
+		CatalogReader catalogReader = CatalogReader.open(source);
+		Thread reader = new Thread(() -> readChunks(catalogReader, resumeAfter, chunkSize, queue), "catalog-reader");
+		reader.setDaemon(true);
+		reader.start();
+
+		CategoryResolver categories = new CategoryResolver();
+		long recordsRead = 0;
+		long projectsImported = 0;
+		long recordsRejected = 0;
+		List<String> errors = List.of();
+
+		try {
+			Chunk chunk;
+
+			while((chunk = queue.take()) != END) {
+				if(chunk.failure() instanceof IOException e) {
+					throw e;
+				}
+
+				if(Objects.nonNull(chunk.failure())) {
+					throw new DbException(chunk.failure());
+				}
+
+				List<Project> valid = new ArrayList<>(chunk.records().size());
+				errors = new ArrayList<>();
+
+				for(CatalogRecord record : chunk.records()) {
+					String error = record.isValid() ? categories.resolve(record.project()) : record.error();
+
+					if(Objects.isNull(error)) {
+						valid.add(record.project());
+					} else {
+						errors.add("record " + record.number() + ": " + error);
+					}
+				}
+
+				// the whole chunk and its checkpoint are one transaction, so the checkpoint never covers a partly written chunk
+				if(Objects.nonNull(checkpointName)) {
+					projectsService.addProjects(valid, new ImportCheckpoint(checkpointName, sourceName, chunk.lastNumber()));
+				} else if(!valid.isEmpty()) {
+					projectsService.addProjects(valid, valid.size());
+				}
+				
+				categories.committed(valid);
+
+				recordsRead += chunk.records().size();
+				projectsImported += valid.size();
+				recordsRejected += errors.size();
+				listener.accept(new ImportProgress(recordsRead, projectsImported, recordsRejected, elapsedSince(start), errors));
+			}
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Import of " + source + " was interrupted.");
+		} finally {
+			// stops the reader if the writer failed; after END it has already finished
+			reader.interrupt();
+		}
+
+		return new ImportProgress(recordsRead, projectsImported, recordsRejected, elapsedSince(start), errors);
+	}
+
+	// runs on the reader thread. Every outcome, including a failure, is passed to the writer through the queue
+	private void readChunks(CatalogReader catalogReader, long resumeAfter, int chunkSize, BlockingQueue<Chunk> queue) {
+		try(catalogReader) {
+			List<CatalogRecord> records = new ArrayList<>(chunkSize);
+			CatalogRecord record;
+
+			while((record = catalogReader.next()) != null) {
+				if(record.number() <= resumeAfter) {
+					continue;
+				}
+
+				records.add(record);
+
+				if(records.size() == chunkSize) {
+					queue.put(validate(records));
+					records = new ArrayList<>(chunkSize);
+				}
+			}
+
+			if(!records.isEmpty()) {
+				queue.put(validate(records));
+			}
+			queue.put(END);
+		} catch(InterruptedException e) {
+			// the writer gave up, so nobody is waiting for more chunks
+		} catch(Exception e) {
+			try {
+				queue.put(new Chunk(List.of(), 0, e));
+			} catch(InterruptedException ignored) {
+				// the writer is gone as well
+			}
+		}
+	}
+
+	// validation only reads each project, so the records are checked in parallel; the order of the chunk is kept for the checkpoint
+	private Chunk validate(List<CatalogRecord> records) {
+		List<CatalogRecord> validated = records.parallelStream().map(record -> {
+			String error = record.isValid() ? validator.validate(record.project()) : null;
+			return Objects.isNull(error) ? record : record.reject(error);
+		}).toList();
+
+		return new Chunk(validated, records.get(records.size() - 1).number(), null);
+	}
+
+	/*
+	 * category IDs are resolved on the writer thread, since it needs the database: a category given by name gets the ID of the existing
+	 * category with that name (ignoring case), and a category given by ID must exist. A name with no category is left without an ID
+	 * and spelled like its first use in the chunk, so ProjectsDao creates it once, in the chunk's transaction. The categories are loaded
+	 * once per import
+	 */
+	private class CategoryResolver {
+		private Map<String, Integer> idsByName;
+		private Set<Integer> ids;
+
+		// the spelling of each name in the current chunk that has no category yet
+		private final Map<String, String> newNames = new HashMap<>();
+
+		// returns the reason the project can't be imported, or null once every category has an ID
+		String resolve(Project project) {
+			if(project.getCategories().isEmpty()) {
+				return null;
+			}
+
+			if(Objects.isNull(ids)) {
+				load();
+			}
+
+			Set<Object> linked = new HashSet<>();
+
+			for(Category category : project.getCategories()) {
+				if(Objects.isNull(category.getCategoryId())) {
+					String key = key(category.getCategoryName());
+					Integer categoryId = idsByName.get(key);
+
+					if(Objects.nonNull(categoryId)) {
+						category.setCategoryId(categoryId);
+					} else {
+						category.setCategoryName(newNames.computeIfAbsent(key, unused -> category.getCategoryName().trim()));
+					}
+				} else if(!ids.contains(category.getCategoryId())) {
+					return "Category with ID=" + category.getCategoryId() + " does not exist.";
+				}
+			}
+
+			// a category listed twice would break the unique key of project_category
+			project.getCategories().removeIf(category -> !linked.add(Objects.nonNull(category.getCategoryId())
+					? category.getCategoryId() : key(category.getCategoryName())));
+			return null;
+		}
+
+		// remembers the categories the written chunk created, so later chunks link to them
+		void committed(List<Project> projects) {
+			if(newNames.isEmpty()) {
+				return;
+			}
+
+			for(Project project : projects) {
+				for(Category category : project.getCategories()) {
+					if(idsByName.putIfAbsent(key(category.getCategoryName()), category.getCategoryId()) == null) {
+						ids.add(category.getCategoryId());
+					}
+				}
+			}
+
+			newNames.clear();
+		}
+
+		private void load() {
+			idsByName = new HashMap<>();
+			ids = new HashSet<>();
+
+			for(Category category : projectsService.fetchAllCategories()) {
+				idsByName.putIfAbsent(key(category.getCategoryName()), category.getCategoryId());
+				ids.add(category.getCategoryId());
+			}
+		}
+
+		private String key(String categoryName) {
+			return categoryName.trim().toLowerCase(Locale.ROOT);
+		}
+	}
+
+	// the number of the last record imported from the source by an earlier run, or 0 when there is no checkpoint
+	private long readCheckpoint(String checkpointName, String sourceName) throws IOException {
+		if(Objects.isNull(checkpointName)) {
+			return 0;
+		}
+
+		Optional<ImportCheckpoint> checkpoint = projectsService.fetchImportCheckpoint(checkpointName);
+
+		if(checkpoint.isEmpty()) {
+			return 0;
+		}
+
+		if(!sourceName.equals(checkpoint.get().getSource())) {
+			throw new IOException("Checkpoint " + checkpointName + " belongs to " + checkpoint.get().getSource() + ", not " + sourceName
+					+ ". Delete it or use a different checkpoint name.");
+		}
+
+		return checkpoint.get().getRecords();
+	}
+
+	private Duration elapsedSince(long start) {
+		return Duration.ofNanos(System.nanoTime() - start);
+	}
+}
@@ -0,0 +1,28 @@
+package projects.catalog;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+
+/*
+ * reads a catalog file one project at a time, so a file of any size is parsed with memory proportional to one project. A record that
+ * can't be parsed is returned as a rejected record rather than thrown, so the rest of the file can still be read
+ */
+public interface CatalogReader extends Closeable {
+
+	// the next record, or null at the end of the file
+	CatalogRecord next() throws IOException;
+
+	// picks the reader from the file extension: .csv for CSV, anything else (.jsonl, .ndjson, .json) for JSON lines
+	static CatalogReader open(Path path) throws IOException {
+		String fileName = path.getFileName().toString().toLowerCase(Locale.ROOT);
+
+		if(fileName.endsWith(".csv")) {
+			return new CsvCatalogReader(Files.newBufferedReader(path, StandardCharsets.UTF_8));
+		}
+		return new JsonLinesCatalogReader(Files.newBufferedReader(path, StandardCharsets.UTF_8));
+	}
+}
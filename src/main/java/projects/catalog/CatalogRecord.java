@@ -0,0 +1,27 @@
+package projects.catalog;
+
+import projects.entity.Project;
+
+/*
+ * one project read from a catalog file, or the reason it could not be read. The number is the record's position in the file, counting
+ * from 1, and is what the import checkpoint counts
+ */
+public record CatalogRecord(long number, Project project, String error) {
+
+	public static CatalogRecord of(long number, Project project) {
+		return new CatalogRecord(number, project, null);
+	}
+
+	public static CatalogRecord rejected(long number, String error) {
+		return new CatalogRecord(number, null, error);
+	}
+
+	public boolean isValid() {
+		return error == null;
+	}
+
+	// the same record, rejected for the given reason
+	public CatalogRecord reject(String reason) {
+		return rejected(number, reason);
+	}
+}
@@ -0,0 +1,37 @@
+package projects.catalog;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+
+import projects.entity.Project;
+
+/*
+ * writes project graphs to a catalog file one at a time, in a format the matching CatalogReader reads back, so an export can be
+ * imported into another database. Categories are written by name, since IDs differ between databases
+ */
+public interface CatalogWriter extends Closeable {
+	// characters are gathered into 64 KB before being encoded into the channel's own 64 KB byte buffer
+	int BUFFER_SIZE = 64 * 1024;
+
+	void write(Project project) throws IOException;
+
+	// picks the format from the file extension as CatalogReader.open does, writing through a buffered file channel
+	static CatalogWriter open(Path path) throws IOException {
+		FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+				StandardOpenOption.WRITE);
+		Writer writer = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8.newEncoder(), BUFFER_SIZE), BUFFER_SIZE);
+
+		if(path.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".csv")) {
+			return new CsvCatalogWriter(writer);
+		}
+		return new JsonLinesCatalogWriter(writer);
+	}
+}
@@ -0,0 +1,239 @@
+package projects.catalog;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import projects.entity.Category;
+import projects.entity.Material;
+import projects.entity.Project;
+import projects.entity.Step;
+
+/*
+ * reads a CSV catalog in which the first column gives the row type, and material, step and category rows belong to the project row
+ * above them, so a spreadsheet can hold whole project graphs:
+ *
+ *   type,name,estimated_hours,actual_hours,difficulty,notes
+ *   project,Build a shed,40,45.5,4,"Needs a permit, check with the city"
+ *   material,2x4 board,20,3.99
+ *   step,Pour the footings
+ *   category,Outdoor
+ *
+ * Material rows are (name, num_required, cost), step rows (text) and category rows (name, or an ID written as #12, so a category
+ * named 2024 stays a name; a name that starts with # has it doubled, as in ##1 for the category named #1). Fields follow RFC 4180:
+ * they may be quoted, and a quoted field may contain commas, doubled quotes and line breaks. A first row starting with "type" is a
+ * header and is skipped, as are blank rows
+ */
+public class CsvCatalogReader implements CatalogReader {
+	private static final String PROJECT = "project";
+
+	private final BufferedReader reader;
+	private long number;
+	private List<String> pending;
+	private boolean firstRow = true;
+
+	public CsvCatalogReader(BufferedReader reader) {
+		this.reader = reader;
+	}
+
+	@Override
+	public CatalogRecord next() throws IOException {
+		List<String> row = pending != null ? pending : readRow();
+		pending = null;
+
+		if(row == null) {
+			return null;
+		}
+
+		number++;
+
+		// child rows with no project above them are rejected together as one record
+		if(!PROJECT.equalsIgnoreCase(row.get(0))) {
+			String type = row.get(0);
+
+			do {
+				row = readRow();
+			} while(row != null && !PROJECT.equalsIgnoreCase(row.get(0)));
+
+			pending = row;
+			return CatalogRecord.rejected(number, "Found a " + type + " row before the first project row.");
+		}
+
+		String error = null;
+		Project project = new Project();
+
+		try {
+			project.setProjectName(field(row, 1));
+			project.setEstimatedHours(decimal(row, 2));
+			project.setActualHours(decimal(row, 3));
+			project.setDifficulty(integer(row, 4));
+			project.setNotes(field(row, 5));
+		} catch(IllegalArgumentException e) {
+			error = e.getMessage();
+		}
+
+		// the children are read up to the next project row, even when the project is already rejected, so the next record starts cleanly
+		while((row = readRow()) != null && !PROJECT.equalsIgnoreCase(row.get(0))) {
+			try {
+				addChild(project, row);
+			} catch(IllegalArgumentException e) {
+				error = error == null ? e.getMessage() : error;
+			}
+		}
+		pending = row;
+
+		return error == null ? CatalogRecord.of(number, project) : CatalogRecord.rejected(number, error);
+	}
+
+	private void addChild(Project project, List<String> row) {
+		switch(row.get(0).toLowerCase(Locale.ROOT)) {
+		case "material":
+			Material material = new Material();
+			material.setMaterialName(field(row, 1));
+			material.setNumRequired(integer(row, 2));
+			material.setCost(decimal(row, 3));
+			project.getMaterials().add(material);
+			break;
+
+		case "step":
+			Step step = new Step();
+			step.setStepText(field(row, 1));
+			project.getSteps().add(step);
+			break;
+
+		case "category":
+			project.getCategories().add(category(field(row, 1)));
+			break;
+
+		default:
+			throw new IllegalArgumentException("Unknown row type '" + row.get(0) + "'.");
+		}
+	}
+
+	private Category category(String value) {
+		Category category = new Category();
+
+		if(value == null || !value.startsWith(CsvCatalogWriter.CATEGORY_ID_PREFIX)) {
+			category.setCategoryName(value);
+		} else if(value.startsWith(CsvCatalogWriter.CATEGORY_ID_PREFIX, 1)) {
+			category.setCategoryName(value.substring(1));
+		} else {
+			String categoryId = value.substring(1);
+
+			try {
+				category.setCategoryId(Integer.valueOf(categoryId));
+			} catch(NumberFormatException e) {
+				throw new IllegalArgumentException("Category ID " + categoryId + " is not a whole number. Write ## to start a name with #.");
+			}
+		}
+		return category;
+	}
+
+	// an empty field is null
+	private String field(List<String> row, int index) {
+		String value = index < row.size() ? row.get(index).trim() : "";
+		return value.isEmpty() ? null : value;
+	}
+
+	private BigDecimal decimal(List<String> row, int index) {
+		String value = field(row, index);
+
+		try {
+			return value == null ? null : new BigDecimal(value);
+		} catch(NumberFormatException e) {
+			throw new IllegalArgumentException("Column " + (index + 1) + " of a " + row.get(0) + " row is not a number: " + value);
+		}
+	}
+
+	private Integer integer(List<String> row, int index) {
+		String value = field(row, index);
+
+		try {
+			return value == null ? null : Integer.valueOf(value);
+		} catch(NumberFormatException e) {
+			throw new IllegalArgumentException("Column " + (index + 1) + " of a " + row.get(0) + " row is not a whole number: " + value);
+		}
+	}
+
+	// reads the next non-blank row, skipping a header row at the start of the file. Returns null at the end of the file
+	private List<String> readRow() throws IOException {
+		List<String> row;
+
+		do {
+			row = readFields();
+
+			if(row != null && firstRow && "type".equalsIgnoreCase(row.get(0).trim())) {
+				row = readFields();
+			}
+			firstRow = false;
+		} while(row != null && row.size() == 1 && row.get(0).isBlank());
+
+		if(row != null) {
+			row.set(0, row.get(0).trim());
+		}
+		return row;
+	}
+
+	// splits one CSV row into fields. A quoted field may run over several lines
+	private List<String> readFields() throws IOException {
+		int c = reader.read();
+
+		if(c == -1) {
+			return null;
+		}
+
+		List<String> fields = new ArrayList<>();
+		StringBuilder field = new StringBuilder();
+		boolean quoted = false;
+
+		while(true) {
+			if(quoted) {
+				if(c == -1) {
+					throw new IOException("Unterminated quoted field after record " + number + ".");
+				}
+
+				if(c == '"') {
+					reader.mark(1);
+
+					if(reader.read() == '"') {
+						field.append('"');
+					} else {
+						reader.reset();
+						quoted = false;
+					}
+				} else {
+					field.append((char)c);
+				}
+			} else if(c == '"') {
+				quoted = true;
+			} else if(c == ',') {
+				fields.add(field.toString());
+				field.setLength(0);
+			} else if(c == '\n' || c == -1) {
+				break;
+			} else if(c == '\r') {
+				reader.mark(1);
+
+				if(reader.read() != '\n') {
+					reader.reset();
+				}
+				break;
+			} else {
+				field.append((char)c);
+			}
+
+			c = reader.read();
+		}
+
+		fields.add(field.toString());
+		return fields;
+	}
+
+	@Override
+	public void close() throws IOException {
+		reader.close();
+	}
+}
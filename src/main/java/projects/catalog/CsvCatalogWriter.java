@@ -0,0 +1,102 @@
+package projects.catalog;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+
+import projects.entity.Category;
+import projects.entity.Material;
+import projects.entity.Project;
+import projects.entity.Step;
+
+/*
+ * writes the typed-row layout CsvCatalogReader reads: a header, then each project row followed by its material, step and category
+ * rows. A field is quoted only when it holds a comma, a quote or a line break, and null is an empty field. A category is written by
+ * name, with a leading # doubled so the name can't be read back as an ID
+ */
+public class CsvCatalogWriter implements CatalogWriter {
+	// marks a category value as an ID rather than a name
+	static final String CATEGORY_ID_PREFIX = "#";
+
+	private static final String HEADER = "type,name,estimated_hours,actual_hours,difficulty,notes\n";
+
+	private final Writer writer;
+	private boolean headerWritten;
+
+	public CsvCatalogWriter(Writer writer) {
+		this.writer = writer;
+	}
+
+	@Override
+	public void write(Project project) throws IOException {
+		if(!headerWritten) {
+			writer.append(HEADER);
+			headerWritten = true;
+		}
+
+		writer.append("project,");
+		writeField(project.getProjectName());
+		writer.append(',');
+		writeField(project.getEstimatedHours());
+		writer.append(',');
+		writeField(project.getActualHours());
+		writer.append(',');
+		writeField(project.getDifficulty());
+		writer.append(',');
+		writeField(project.getNotes());
+		writer.append('\n');
+
+		for(Material material : project.getMaterials()) {
+			writer.append("material,");
+			writeField(material.getMaterialName());
+			writer.append(',');
+			writeField(material.getNumRequired());
+			writer.append(',');
+			writeField(material.getCost());
+			writer.append('\n');
+		}
+
+		for(Step step : project.getSteps()) {
+			writer.append("step,");
+			writeField(step.getStepText());
+			writer.append('\n');
+		}
+
+		for(Category category : project.getCategories()) {
+			writer.append("category,");
+			String categoryName = category.getCategoryName();
+			writeField(categoryName != null && categoryName.startsWith(CATEGORY_ID_PREFIX) ? CATEGORY_ID_PREFIX + categoryName : categoryName);
+			writer.append('\n');
+		}
+	}
+
+	private void writeField(Object value) throws IOException {
+		if(value == null) {
+			return;
+		}
+
+		String text = value instanceof BigDecimal decimal ? decimal.toPlainString() : value.toString();
+
+		if(text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0 && text.indexOf('\r') < 0) {
+			writer.append(text);
+			return;
+		}
+
+		writer.append('"');
+
+		for(int index = 0; index < text.length(); index++) {
+			char c = text.charAt(index);
+
+			if(c == '"') {
+				writer.append('"');
+			}
+			writer.append(c);
+		}
+		writer.append('"');
+	}
+
+	@Override
+	public void close() throws IOException {
+		writer.close();
+	}
+}
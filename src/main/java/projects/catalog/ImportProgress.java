@@ -0,0 +1,23 @@
+package projects.catalog;
+
+import java.time.Duration;
+import java.util.List;
+
+/*
+ * how far an import has got, reported after each committed chunk and returned at the end. The counts cover this run only, not records
+ * skipped because an earlier run's checkpoint already covered them. Errors holds the rejected records of the latest chunk, as
+ * "record N: reason"
+ */
+public record ImportProgress(long recordsRead, long projectsImported, long recordsRejected, Duration elapsed, List<String> errors) {
+
+	public double rowsPerSecond() {
+		long millis = elapsed.toMillis();
+		return millis == 0 ? 0 : recordsRead * 1000.0 / millis;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%,d records read, %,d projects imported, %,d rejected in %.1fs (%,.0f rows/sec)", recordsRead,
+				projectsImported, recordsRejected, elapsed.toMillis() / 1000.0, rowsPerSecond());
+	}
+}
@@ -0,0 +1,294 @@
+package projects.catalog;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * a minimal JSON parser for catalog files, so the importer needs no library beyond the JDBC driver. Objects become LinkedHashMaps,
+ * arrays become ArrayLists, numbers become BigDecimals (so hours and costs keep their exact scale), and true, false and null become
+ * Boolean and null. Malformed input throws a JsonException giving the offset of the problem. appendString writes the other way, for
+ * the exporter
+ */
+public class Json {
+	private final String text;
+	private int position;
+
+	private Json(String text) {
+		this.text = text;
+	}
+
+	// parses a complete JSON value; anything but whitespace after it is an error
+	public static Object parse(String text) {
+		Json parser = new Json(text);
+		Object value = parser.readValue();
+		parser.skipWhitespace();
+
+		if(parser.position < text.length()) {
+			throw parser.error("Unexpected text after the value");
+		}
+		return value;
+	}
+
+	// writes the value as a quoted JSON string, or null
+	public static void appendString(Appendable out, String value) throws IOException {
+		if(value == null) {
+			out.append("null");
+			return;
+		}
+
+		out.append('"');
+
+		for(int index = 0; index < value.length(); index++) {
+			char c = value.charAt(index);
+
+			switch(c) {
+			case '"':
+				out.append("\\\"");
+				break;
+
+			case '\\':
+				out.append("\\\\");
+				break;
+
+			case '\n':
+				out.append("\\n");
+				break;
+
+			case '\r':
+				out.append("\\r");
+				break;
+
+			case '\t':
+				out.append("\\t");
+				break;
+
+			default:
+				if(c < 0x20) {
+					out.append(String.format("\\u%04x", (int)c));
+				} else {
+					out.append(c);
+				}
+			}
+		}
+
+		out.append('"');
+	}
+
+	private Object readValue() {
+		skipWhitespace();
+
+		if(position >= text.length()) {
+			throw error("Unexpected end of input");
+		}
+
+		char c = text.charAt(position);
+
+		switch(c) {
+		case '{':
+			return readObject();
+
+		case '[':
+			return readArray();
+
+		case '"':
+			return readString();
+
+		case 't':
+			return readLiteral("true", Boolean.TRUE);
+
+		case 'f':
+			return readLiteral("false", Boolean.FALSE);
+
+		case 'n':
+			return readLiteral("null", null);
+
+		default:
+			if(c == '-' || (c >= '0' && c <= '9')) {
+				return readNumber();
+			}
+			throw error("Unexpected character '" + c + "'");
+		}
+	}
+
+	private Map<String, Object> readObject() {
+		Map<String, Object> object = new LinkedHashMap<>();
+		position++;
+		skipWhitespace();
+
+		if(peek() == '}') {
+			position++;
+			return object;
+		}
+
+		while(true) {
+			skipWhitespace();
+
+			if(peek() != '"') {
+				throw error("Expected a field name");
+			}
+
+			String name = readString();
+			skipWhitespace();
+			expect(':');
+			object.put(name, readValue());
+			skipWhitespace();
+
+			if(peek() == ',') {
+				position++;
+			} else {
+				expect('}');
+				return object;
+			}
+		}
+	}
+
+	private List<Object> readArray() {
+		List<Object> array = new ArrayList<>();
+		position++;
+		skipWhitespace();
+
+		if(peek() == ']') {
+			position++;
+			return array;
+		}
+
+		while(true) {
+			array.add(readValue());
+			skipWhitespace();
+
+			if(peek() == ',') {
+				position++;
+			} else {
+				expect(']');
+				return array;
+			}
+		}
+	}
+
+	private String readString() {
+		position++;
+		StringBuilder value = new StringBuilder();
+
+		while(true) {
+			if(position >= text.length()) {
+				throw error("Unterminated string");
+			}
+
+			char c = text.charAt(position++);
+
+			if(c == '"') {
+				return value.toString();
+			}
+
+			if(c != '\\') {
+				value.append(c);
+				continue;
+			}
+
+			if(position >= text.length()) {
+				throw error("Unterminated string");
+			}
+
+			char escaped = text.charAt(position++);
+
+			switch(escaped) {
+			case '"':
+			case '\\':
+			case '/':
+				value.append(escaped);
+				break;
+
+			case 'b':
+				value.append('\b');
+				break;
+
+			case 'f':
+				value.append('\f');
+				break;
+
+			case 'n':
+				value.append('\n');
+				break;
+
+			case 'r':
+				value.append('\r');
+				break;
+
+			case 't':
+				value.append('\t');
+				break;
+
+			case 'u':
+				if(position + 4 > text.length()) {
+					throw error("Incomplete unicode escape");
+				}
+
+				try {
+					value.append((char)Integer.parseInt(text.substring(position, position + 4), 16));
+				} catch(NumberFormatException e) {
+					throw error("Invalid unicode escape");
+				}
+				position += 4;
+				break;
+
+			default:
+				throw error("Invalid escape '\\" + escaped + "'");
+			}
+		}
+	}
+
+	private BigDecimal readNumber() {
+		int start = position;
+
+		while(position < text.length() && "+-0123456789.eE".indexOf(text.charAt(position)) >= 0) {
+			position++;
+		}
+
+		try {
+			return new BigDecimal(text.substring(start, position));
+		} catch(NumberFormatException e) {
+			position = start;
+			throw error("Invalid number");
+		}
+	}
+
+	private Object readLiteral(String literal, Object value) {
+		if(!text.startsWith(literal, position)) {
+			throw error("Unexpected character '" + text.charAt(position) + "'");
+		}
+		position += literal.length();
+		return value;
+	}
+
+	private void expect(char c) {
+		if(peek() != c) {
+			throw error("Expected '" + c + "'");
+		}
+		position++;
+	}
+
+	private char peek() {
+		return position < text.length() ? text.charAt(position) : '\0';
+	}
+
+	private void skipWhitespace() {
+		while(position < text.length() && Character.isWhitespace(text.charAt(position))) {
+			position++;
+		}
+	}
+
+	private JsonException error(String message) {
+		return new JsonException(message + " at offset " + position + ".");
+	}
+
+	@SuppressWarnings("serial")
+	public static class JsonException extends RuntimeException {
+		public JsonException(String message) {
+			super(message);
+		}
+	}
+}
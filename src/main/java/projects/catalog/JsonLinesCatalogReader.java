@@ -0,0 +1,174 @@
+package projects.catalog;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+import projects.entity.Category;
+import projects.entity.Material;
+import projects.entity.Project;
+import projects.entity.Step;
+
+/*
+ * reads a JSON-lines catalog: one project object per line, with its children nested. Blank lines are skipped. For example:
+ *
+ *   {"projectName": "Build a shed", "estimatedHours": 40, "difficulty": 4, "notes": "Needs a permit",
+ *    "materials": [{"materialName": "2x4 board", "numRequired": 20, "cost": 3.99}],
+ *    "steps": ["Pour the footings", {"stepText": "Frame the walls"}],
+ *    "categories": ["Outdoor", 2]}
+ *
+ * (shown wrapped, but each project must be on one line). A step may be given as its text or as an object, and a category by name or
+ * by ID. Unknown fields are ignored
+ */
+public class JsonLinesCatalogReader implements CatalogReader {
+	private final BufferedReader reader;
+	private long number;
+
+	public JsonLinesCatalogReader(BufferedReader reader) {
+		this.reader = reader;
+	}
+
+	@Override
+	public CatalogRecord next() throws IOException {
+		String line;
+
+		do {
+			line = reader.readLine();
+
+			if(line == null) {
+				return null;
+			}
+		} while(line.isBlank());
+
+		number++;
+
+		try {
+			if(!(Json.parse(line) instanceof Map<?, ?> object)) {
+				return CatalogRecord.rejected(number, "Expected a JSON object.");
+			}
+			return CatalogRecord.of(number, toProject(object));
+		} catch(RuntimeException e) {
+			// whatever is wrong with one line, only that record is rejected; the import carries on with the next
+			return CatalogRecord.rejected(number, e.getMessage() != null ? e.getMessage() : e.toString());
+		}
+	}
+
+	private Project toProject(Map<?, ?> object) {
+		Project project = new Project();
+		project.setProjectName(string(object, "projectName"));
+		project.setEstimatedHours(decimal(object, "estimatedHours"));
+		project.setActualHours(decimal(object, "actualHours"));
+		project.setDifficulty(integer(object, "difficulty"));
+		project.setNotes(string(object, "notes"));
+
+		for(Object value : list(object, "materials")) {
+			if(!(value instanceof Map<?, ?> fields)) {
+				throw new IllegalArgumentException("Each material must be an object but found " + describe(value) + ".");
+			}
+
+			Material material = new Material();
+			material.setMaterialName(string(fields, "materialName"));
+			material.setNumRequired(integer(fields, "numRequired"));
+			material.setCost(decimal(fields, "cost"));
+			project.getMaterials().add(material);
+		}
+
+		for(Object value : list(object, "steps")) {
+			Step step = new Step();
+
+			if(value instanceof Map<?, ?> fields) {
+				step.setStepText(string(fields, "stepText"));
+			} else if(value instanceof String stepText) {
+				step.setStepText(stepText);
+			} else {
+				throw new IllegalArgumentException("Each step must be its text or an object but found " + describe(value) + ".");
+			}
+			project.getSteps().add(step);
+		}
+
+		for(Object value : list(object, "categories")) {
+			Category category = new Category();
+
+			if(value instanceof BigDecimal categoryId) {
+				try {
+					category.setCategoryId(categoryId.intValueExact());
+				} catch(ArithmeticException e) {
+					throw new IllegalArgumentException("Category ID " + categoryId + " is not a whole number.");
+				}
+			} else if(value instanceof String categoryName) {
+				category.setCategoryName(categoryName);
+			} else {
+				throw new IllegalArgumentException("Each category must be a name or an ID but found " + describe(value) + ".");
+			}
+			project.getCategories().add(category);
+		}
+
+		return project;
+	}
+
+	// names the JSON type of a value for an error message
+	private String describe(Object value) {
+		if(value == null) {
+			return "null";
+		}
+		if(value instanceof Map) {
+			return "an object";
+		}
+		if(value instanceof List) {
+			return "an array";
+		}
+		if(value instanceof String) {
+			return "a string";
+		}
+		return value instanceof Boolean ? "a boolean" : "a number";
+	}
+
+	private String string(Map<?, ?> object, String name) {
+		Object value = object.get(name);
+		return value == null ? null : value.toString();
+	}
+
+	private BigDecimal decimal(Map<?, ?> object, String name) {
+		Object value = object.get(name);
+
+		if(value == null || value instanceof BigDecimal) {
+			return (BigDecimal)value;
+		}
+
+		try {
+			return new BigDecimal(value.toString());
+		} catch(NumberFormatException e) {
+			throw new IllegalArgumentException(name + " is not a number: " + value);
+		}
+	}
+
+	private Integer integer(Map<?, ?> object, String name) {
+		BigDecimal value = decimal(object, name);
+
+		try {
+			return value == null ? null : value.intValueExact();
+		} catch(ArithmeticException e) {
+			throw new IllegalArgumentException(name + " is not a whole number: " + value);
+		}
+	}
+
+	private List<?> list(Map<?, ?> object, String name) {
+		Object value = object.get(name);
+
+		if(value == null) {
+			return List.of();
+		}
+
+		if(!(value instanceof List<?> list)) {
+			throw new IllegalArgumentException(name + " must be an array.");
+		}
+		return list;
+	}
+
+	@Override
+	public void close() throws IOException {
+		reader.close();
+	}
+}
@@ -0,0 +1,83 @@
+package projects.catalog;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+
+import projects.entity.Category;
+import projects.entity.Material;
+import projects.entity.Project;
+import projects.entity.Step;
+
+/*
+ * writes one project object per line in the layout JsonLinesCatalogReader reads. The IDs are written too, for reference; the reader
+ * ignores them. Null fields are left out
+ */
+public class JsonLinesCatalogWriter implements CatalogWriter {
+	private final Writer writer;
+
+	public JsonLinesCatalogWriter(Writer writer) {
+		this.writer = writer;
+	}
+
+	@Override
+	public void write(Project project) throws IOException {
+		writer.append("{\"projectId\":").append(String.valueOf(project.getProjectId()));
+		writeString(",\"projectName\":", project.getProjectName());
+		writeDecimal(",\"estimatedHours\":", project.getEstimatedHours());
+		writeDecimal(",\"actualHours\":", project.getActualHours());
+
+		if(project.getDifficulty() != null) {
+			writer.append(",\"difficulty\":").append(String.valueOf(project.getDifficulty()));
+		}
+		writeString(",\"notes\":", project.getNotes());
+
+		writer.append(",\"materials\":[");
+
+		for(int index = 0; index < project.getMaterials().size(); index++) {
+			Material material = project.getMaterials().get(index);
+			writer.append(index == 0 ? "{" : ",{");
+			writeString("\"materialName\":", material.getMaterialName());
+
+			if(material.getNumRequired() != null) {
+				writer.append(",\"numRequired\":").append(String.valueOf(material.getNumRequired()));
+			}
+			writeDecimal(",\"cost\":", material.getCost());
+			writer.append('}');
+		}
+
+		writer.append("],\"steps\":[");
+
+		for(int index = 0; index < project.getSteps().size(); index++) {
+			Step step = project.getSteps().get(index);
+			writeString(index == 0 ? "" : ",", step.getStepText());
+		}
+
+		writer.append("],\"categories\":[");
+
+		for(int index = 0; index < project.getCategories().size(); index++) {
+			Category category = project.getCategories().get(index);
+			writeString(index == 0 ? "" : ",", category.getCategoryName());
+		}
+
+		writer.append("]}\n");
+	}
+
+	private void writeString(String prefix, String value) throws IOException {
+		if(value != null) {
+			writer.append(prefix);
+			Json.appendString(writer, value);
+		}
+	}
+
+	private void writeDecimal(String prefix, BigDecimal value) throws IOException {
+		if(value != null) {
+			writer.append(prefix).append(value.toPlainString());
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		writer.close();
+	}
+}
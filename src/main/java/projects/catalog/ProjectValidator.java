@@ -0,0 +1,107 @@
+package projects.catalog;
+
+import java.math.BigDecimal;
+import java.util.Objects;
+
+import projects.entity.Category;
+import projects.entity.Material;
+import projects.entity.Project;
+import projects.entity.Step;
+
+/*
+ * checks an imported project graph against the limits of projects-schema.sql before it is written, so one bad row is reported and
+ * skipped instead of failing the whole chunk's transaction. It has no state and only reads the project, so records can be validated
+ * in parallel
+ */
+public class ProjectValidator {
+	private static final int MAX_NAME_LENGTH = 128;
+	private static final int MIN_DIFFICULTY = 1;
+	private static final int MAX_DIFFICULTY = 5;
+	// DECIMAL(7,2) holds up to 99999.99
+	private static final BigDecimal MAX_DECIMAL = new BigDecimal("99999.99");
+
+	// returns the first problem found, or null if the project can be inserted
+	public String validate(Project project) {
+		String error = firstError(
+				checkName("projectName", project.getProjectName()),
+				checkDecimal("estimatedHours", project.getEstimatedHours()),
+				checkDecimal("actualHours", project.getActualHours()),
+				checkDifficulty(project.getDifficulty()));
+
+		for(Material material : project.getMaterials()) {
+			if(Objects.nonNull(error)) {
+				return error;
+			}
+			error = firstError(
+					checkName("materialName", material.getMaterialName()),
+					checkNumRequired(material.getNumRequired()),
+					checkDecimal("cost", material.getCost()));
+		}
+
+		for(Step step : project.getSteps()) {
+			if(Objects.nonNull(error)) {
+				return error;
+			}
+			error = Objects.isNull(step.getStepText()) || step.getStepText().isBlank() ? "stepText is required." : null;
+		}
+
+		// categories given by ID are checked by the foreign key when they are linked
+		for(Category category : project.getCategories()) {
+			if(Objects.nonNull(error)) {
+				return error;
+			}
+			error = Objects.isNull(category.getCategoryId()) ? checkName("categoryName", category.getCategoryName()) : null;
+		}
+
+		return error;
+	}
+
+	private String firstError(String... errors) {
+		for(String error : errors) {
+			if(Objects.nonNull(error)) {
+				return error;
+			}
+		}
+		return null;
+	}
+
+	private String checkDifficulty(Integer difficulty) {
+		if(Objects.nonNull(difficulty) && (difficulty < MIN_DIFFICULTY || difficulty > MAX_DIFFICULTY)) {
+			return "difficulty must be between " + MIN_DIFFICULTY + " and " + MAX_DIFFICULTY + " but was " + difficulty + ".";
+		}
+		return null;
+	}
+
+	private String checkNumRequired(Integer numRequired) {
+		if(Objects.nonNull(numRequired) && numRequired < 0) {
+			return "numRequired must not be negative but was " + numRequired + ".";
+		}
+		return null;
+	}
+
+	private String checkName(String field, String value) {
+		if(Objects.isNull(value) || value.isBlank()) {
+			return field + " is required.";
+		}
+
+		if(value.length() > MAX_NAME_LENGTH) {
+			return field + " must be at most " + MAX_NAME_LENGTH + " characters but was " + value.length() + ".";
+		}
+		return null;
+	}
+
+	private String checkDecimal(String field, BigDecimal value) {
+		if(Objects.isNull(value)) {
+			return null;
+		}
+
+		if(value.signum() < 0 || value.compareTo(MAX_DECIMAL) > 0) {
+			return field + " must be between 0 and " + MAX_DECIMAL + " but was " + value + ".";
+		}
+
+		if(value.stripTrailingZeros().scale() > 2) {
+			return field + " must have at most two decimal places but was " + value + ".";
+		}
+		return null;
+	}
+}
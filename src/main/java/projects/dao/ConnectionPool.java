@@ -0,0 +1,628 @@
+package projects.dao;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import projects.exception.DbException;
+import provided.util.DaoMetrics;
+
+/*
+ * A small bounded pool of physical JDBC connections. Callers get a proxy whose close() hands the physical
+ * connection back to the pool instead of closing it, so the usual try(Connection conn = ...) blocks in the
+ * DAO keep working unchanged. Each physical connection also keeps a bounded LRU cache of prepared statements
+ * keyed by SQL, so a statement the DAO prepares again on a later borrow is reused instead of re-parsed.
+ */
+public class ConnectionPool {
+	private final String url;
+	private final int minIdle;
+	private final int maxSize;
+	private final long acquireTimeoutMillis;
+	private final long idleTimeoutMillis;
+	private final long leakThresholdMillis;
+	private final boolean captureBorrowSites;
+	private final int validationTimeoutSeconds;
+	private final int statementCacheSize;
+
+	// idle connections are kept most-recently-used first so the warmest connection is handed out next
+	private final LinkedBlockingDeque<PhysicalConnection> idle = new LinkedBlockingDeque<>();
+	private final Map<PhysicalConnection, Borrow> borrowed = new ConcurrentHashMap<>();
+	private final Semaphore permits;
+	private final ScheduledExecutorService housekeeper;
+
+	private final AtomicInteger totalConnections = new AtomicInteger();
+	private final AtomicLong borrowCount = new AtomicLong();
+	private final AtomicLong createdCount = new AtomicLong();
+	private final AtomicLong destroyedCount = new AtomicLong();
+	private final AtomicLong timeoutCount = new AtomicLong();
+	private final AtomicLong validationFailureCount = new AtomicLong();
+	private final AtomicLong leakCount = new AtomicLong();
+	private final AtomicLong statementCacheHits = new AtomicLong();
+	private final AtomicLong statementCacheMisses = new AtomicLong();
+	private final AtomicLong statementCacheEvictions = new AtomicLong();
+	private volatile boolean shutdown;
+
+	public ConnectionPool(String url, int minIdle, int maxSize, long acquireTimeoutMillis, long idleTimeoutMillis,
+			long leakThresholdMillis, boolean captureBorrowSites, int validationTimeoutSeconds, int statementCacheSize) {
+		if(maxSize < 1 || minIdle < 0 || minIdle > maxSize) {
+			throw new IllegalArgumentException("Invalid pool size: minIdle=" + minIdle + ", maxSize=" + maxSize);
+		}
+
+		this.url = url;
+		this.minIdle = minIdle;
+		this.maxSize = maxSize;
+		this.acquireTimeoutMillis = acquireTimeoutMillis;
+		this.idleTimeoutMillis = idleTimeoutMillis;
+		this.leakThresholdMillis = leakThresholdMillis;
+		this.captureBorrowSites = captureBorrowSites && leakThresholdMillis > 0;
+		this.validationTimeoutSeconds = validationTimeoutSeconds;
+		this.statementCacheSize = statementCacheSize;
+		this.permits = new Semaphore(maxSize, true);
+
+		// a single daemon thread evicts stale idle connections and reports leaked ones
+		this.housekeeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "projects-connection-pool");
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		// a leak threshold of 0 or less turns leak detection off
+		long checkInterval = leakThresholdMillis > 0 ? Math.min(idleTimeoutMillis, leakThresholdMillis) : idleTimeoutMillis;
+		long period = Math.max(1000, checkInterval / 2);
+		housekeeper.scheduleWithFixedDelay(this::houseKeep, period, period, TimeUnit.MILLISECONDS);
+
+		fillToMinIdle();
+	}
+
+	// borrows a connection, waiting up to the acquire timeout for one to be returned if the pool is exhausted
+	public Connection getConnection() {
+		if(shutdown) {
+			throw new DbException("Connection pool has been shut down.");
+		}
+
+		try {
+			if(!permits.tryAcquire(acquireTimeoutMillis, TimeUnit.MILLISECONDS)) {
+				timeoutCount.incrementAndGet();
+				throw new DbException("Timed out after " + acquireTimeoutMillis + "ms waiting for a database connection.");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new DbException(e);
+		}
+
+		try {
+			return borrowReserved();
+		} catch (RuntimeException e) {
+			permits.release();
+			throw e;
+		}
+	}
+
+	/*
+	 * borrows count connections as one reservation: the permits for all of them are taken together, so a caller that needs several
+	 * connections at once never holds some of them while it waits for the rest. The fair semaphore also keeps such a caller from being
+	 * overtaken indefinitely by single borrows
+	 */
+	public List<Connection> getConnections(int count) {
+		if(count < 1 || count > maxSize) {
+			throw new IllegalArgumentException("Can't borrow " + count + " connections from a pool of " + maxSize + ".");
+		}
+
+		if(shutdown) {
+			throw new DbException("Connection pool has been shut down.");
+		}
+
+		try {
+			if(!permits.tryAcquire(count, acquireTimeoutMillis, TimeUnit.MILLISECONDS)) {
+				timeoutCount.incrementAndGet();
+				throw new DbException("Timed out after " + acquireTimeoutMillis + "ms waiting for " + count + " database connections.");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new DbException(e);
+		}
+
+		List<Connection> connections = new ArrayList<>(count);
+
+		try {
+			while(connections.size() < count) {
+				connections.add(borrowReserved());
+			}
+			return connections;
+		} catch (RuntimeException e) {
+			// the connections already borrowed give back their own permits when they are closed
+			permits.release(count - connections.size());
+
+			for(Connection conn : connections) {
+				try {
+					conn.close();
+				} catch (SQLException suppressed) {
+					e.addSuppressed(suppressed);
+				}
+			}
+			throw e;
+		}
+	}
+
+	// hands out a connection for a permit the caller already holds
+	private Connection borrowReserved() {
+		PhysicalConnection physical = takeValidIdle();
+
+		if(physical == null) {
+			physical = create();
+		}
+
+		borrowCount.incrementAndGet();
+		Borrow borrow = new Borrow(physical);
+		borrowed.put(physical, borrow);
+		return borrow.proxy;
+	}
+
+	// validates idle connections on borrow, discarding any the server has dropped
+	private PhysicalConnection takeValidIdle() {
+		PhysicalConnection physical;
+
+		while((physical = idle.pollFirst()) != null) {
+			try {
+				if(physical.connection.isValid(validationTimeoutSeconds)) {
+					return physical;
+				}
+			} catch (SQLException e) {
+				// treated the same as a failed validation
+			}
+			validationFailureCount.incrementAndGet();
+			destroy(physical);
+		}
+
+		return null;
+	}
+
+	private PhysicalConnection create() {
+		try {
+			Connection conn = DriverManager.getConnection(url);
+			totalConnections.incrementAndGet();
+			createdCount.incrementAndGet();
+			return new PhysicalConnection(conn);
+		} catch (SQLException e) {
+			throw new DbException(e);
+		}
+	}
+
+	private void destroy(PhysicalConnection physical) {
+		totalConnections.decrementAndGet();
+		destroyedCount.incrementAndGet();
+
+		try {
+			physical.connection.close();
+		} catch (SQLException e) {
+			// nothing useful can be done with a connection that fails to close
+		}
+	}
+
+	// resets the connection state left behind by the DAO and puts it back at the head of the idle queue
+	private void release(Borrow borrow) {
+		PhysicalConnection physical = borrow.physical;
+		borrowed.remove(physical);
+
+		try {
+			Connection conn = physical.connection;
+
+			if(shutdown || conn.isClosed()) {
+				destroy(physical);
+				return;
+			}
+
+			if(!conn.getAutoCommit()) {
+				conn.rollback();
+				conn.setAutoCommit(true);
+			}
+
+			physical.statements.closeAbandoned();
+
+			physical.lastUsed = System.currentTimeMillis();
+			idle.offerFirst(physical);
+		} catch (SQLException e) {
+			destroy(physical);
+		} finally {
+			permits.release();
+		}
+	}
+
+	/*
+	 * opens connections until minIdle of them are idle, so the first borrows don't pay for connecting. Each one is created under a free
+	 * permit, so filling never takes the pool past maxSize or competes with waiting borrowers. A failure to connect stops the fill
+	 * quietly: the next borrow reports it, and the housekeeper tries again
+	 */
+	private void fillToMinIdle() {
+		while(!shutdown && idle.size() < minIdle && permits.tryAcquire()) {
+			try {
+				PhysicalConnection physical = create();
+				idle.offerLast(physical);
+
+				// shutdown may have emptied the idle queue just before the new connection went in
+				if(shutdown && idle.remove(physical)) {
+					destroy(physical);
+				}
+			} catch (DbException e) {
+				return;
+			} finally {
+				permits.release();
+			}
+		}
+	}
+
+	private void houseKeep() {
+		long now = System.currentTimeMillis();
+
+		// idle eviction walks from the coldest end and never drops below the minimum idle count
+		Iterator<PhysicalConnection> coldest = idle.descendingIterator();
+
+		while(coldest.hasNext() && idle.size() > minIdle) {
+			PhysicalConnection physical = coldest.next();
+
+			if(now - physical.lastUsed > idleTimeoutMillis && idle.remove(physical)) {
+				destroy(physical);
+			}
+		}
+
+		// connections dropped by validation or closed by the server are replaced here rather than on the next borrow
+		fillToMinIdle();
+
+		if(leakThresholdMillis <= 0) {
+			return;
+		}
+
+		// leak detection reports each long-held connection once, with the stack trace of the borrower when borrow sites are captured
+		for(Borrow borrow : borrowed.values()) {
+			if(!borrow.leakReported && now - borrow.borrowedAt > leakThresholdMillis) {
+				borrow.leakReported = true;
+				leakCount.incrementAndGet();
+				System.err.println("Possible connection leak: connection held for " + (now - borrow.borrowedAt) + "ms");
+
+				if(borrow.borrowSite != null) {
+					borrow.borrowSite.printStackTrace();
+				} else {
+					System.err.println("Run with -Dprojects.pool.leakStackTraces=true to see where it was borrowed.");
+				}
+			}
+		}
+	}
+
+	// closes every idle connection; borrowed connections are closed as they are returned
+	public void shutdown() {
+		shutdown = true;
+		housekeeper.shutdownNow();
+
+		PhysicalConnection physical;
+
+		while((physical = idle.pollFirst()) != null) {
+			destroy(physical);
+		}
+	}
+
+	public PoolStats getStats() {
+		// @formatter:off
+		return new PoolStats(
+				totalConnections.get(),
+				idle.size(),
+				borrowed.size(),
+				maxSize,
+				permits.getQueueLength(),
+				borrowCount.get(),
+				createdCount.get(),
+				destroyedCount.get(),
+				timeoutCount.get(),
+				validationFailureCount.get(),
+				leakCount.get(),
+				statementCacheHits.get(),
+				statementCacheMisses.get(),
+				statementCacheEvictions.get());
+		// @formatter:on
+	}
+
+	// point-in-time view of the pool for monitoring
+	public record PoolStats(int total, int idle, int active, int maxSize, int waiting, long borrows, long created,
+			long destroyed, long timeouts, long validationFailures, long leaks, long statementCacheHits,
+			long statementCacheMisses, long statementCacheEvictions) {
+	}
+
+	// invokes a statement method, recording the time of execute calls in the statement execute histogram
+	private static Object invokeTimed(Statement statement, Method method, Object[] args) throws Throwable {
+		long start = method.getName().startsWith("execute") ? DaoMetrics.start() : 0;
+
+		try {
+			return method.invoke(statement, args);
+		} catch (InvocationTargetException e) {
+			throw e.getCause();
+		} finally {
+			DaoMetrics.recordSince(DaoMetrics.STATEMENT_EXECUTE, start);
+		}
+	}
+
+	private static Statement timedStatement(Statement statement, Class<?> type, Borrow borrow) {
+		InvocationHandler handler = (proxy, method, args) -> {
+			switch(method.getName()) {
+			case "getConnection":
+				return borrow.proxy;
+
+			case "equals":
+				return proxy == args[0];
+
+			case "hashCode":
+				return System.identityHashCode(proxy);
+
+			default:
+				return invokeTimed(statement, method, args);
+			}
+		};
+
+		return (Statement)Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type}, handler);
+	}
+
+	private class PhysicalConnection {
+		private final Connection connection;
+		private final StatementCache statements = new StatementCache(this);
+		private volatile long lastUsed = System.currentTimeMillis();
+
+		private PhysicalConnection(Connection connection) {
+			this.connection = connection;
+		}
+	}
+
+	/*
+	 * LRU cache of the prepared statements of one physical connection. A cached statement is handed out to one caller at a
+	 * time; if the same SQL is prepared again while it is in use, an ordinary uncached statement is returned instead
+	 */
+	private class StatementCache {
+		private final PhysicalConnection physical;
+		private final LinkedHashMap<String, CachedStatement> statements = new LinkedHashMap<>(16, 0.75f, true);
+
+		private StatementCache(PhysicalConnection physical) {
+			this.physical = physical;
+		}
+
+		private synchronized PreparedStatement prepare(Borrow borrow, String sql, int autoGeneratedKeys) throws SQLException {
+			String key = autoGeneratedKeys + ":" + sql;
+			CachedStatement cached = statements.get(key);
+
+			if(cached != null && cached.inUse) {
+				statementCacheMisses.incrementAndGet();
+				return physical.connection.prepareStatement(sql, autoGeneratedKeys);
+			}
+
+			if(cached == null) {
+				statementCacheMisses.incrementAndGet();
+				cached = new CachedStatement(key, physical.connection.prepareStatement(sql, autoGeneratedKeys));
+				statements.put(key, cached);
+				evictOverflow();
+			} else {
+				statementCacheHits.incrementAndGet();
+			}
+
+			cached.inUse = true;
+			return cached.checkout(borrow);
+		}
+
+		// the least recently used idle statements are closed once the cache grows past its limit
+		private void evictOverflow() {
+			Iterator<CachedStatement> eldest = statements.values().iterator();
+
+			while(statements.size() > statementCacheSize && eldest.hasNext()) {
+				CachedStatement cached = eldest.next();
+
+				if(!cached.inUse) {
+					eldest.remove();
+					statementCacheEvictions.incrementAndGet();
+					cached.closeQuietly();
+				}
+			}
+		}
+
+		// the next caller gets the statement as a fresh prepareStatement would return it: no open result, parameters or changed settings
+		private synchronized void checkin(CachedStatement cached) {
+			try {
+				PreparedStatement statement = cached.statement;
+				ResultSet resultSet = statement.getResultSet();
+
+				// a streaming result left open would block every other statement on the connection
+				if(resultSet != null) {
+					resultSet.close();
+				}
+
+				statement.clearParameters();
+				statement.clearBatch();
+				statement.clearWarnings();
+
+				if(statement.getFetchSize() != cached.fetchSize) {
+					statement.setFetchSize(cached.fetchSize);
+				}
+
+				if(statement.getMaxRows() != cached.maxRows) {
+					statement.setMaxRows(cached.maxRows);
+				}
+
+				if(statement.getQueryTimeout() != cached.queryTimeout) {
+					statement.setQueryTimeout(cached.queryTimeout);
+				}
+				cached.inUse = false;
+				evictOverflow();
+			} catch (SQLException e) {
+				statements.remove(cached.key);
+				cached.closeQuietly();
+			}
+		}
+
+		// statements the caller never closed are dropped when the connection comes back to the pool
+		private synchronized void closeAbandoned() {
+			Iterator<CachedStatement> all = statements.values().iterator();
+
+			while(all.hasNext()) {
+				CachedStatement cached = all.next();
+
+				if(cached.inUse) {
+					all.remove();
+					cached.closeQuietly();
+				}
+			}
+		}
+
+		private class CachedStatement {
+			private final String key;
+			private final PreparedStatement statement;
+			private final int fetchSize;
+			private final int maxRows;
+			private final int queryTimeout;
+			private boolean inUse;
+
+			private CachedStatement(String key, PreparedStatement statement) throws SQLException {
+				this.key = key;
+				this.statement = statement;
+				this.fetchSize = statement.getFetchSize();
+				this.maxRows = statement.getMaxRows();
+				this.queryTimeout = statement.getQueryTimeout();
+			}
+
+			// each checkout gets its own proxy so a stale reference can't touch the statement after it has been closed
+			private PreparedStatement checkout(Borrow borrow) {
+				InvocationHandler handler = new InvocationHandler() {
+					private boolean closed;
+
+					@Override
+					public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+						switch(method.getName()) {
+						case "close":
+							if(!closed) {
+								closed = true;
+								checkin(CachedStatement.this);
+							}
+							return null;
+
+						case "isClosed":
+							return closed || statement.isClosed();
+
+						case "getConnection":
+							return borrow.proxy;
+
+						case "equals":
+							return proxy == args[0];
+
+						case "hashCode":
+							return System.identityHashCode(proxy);
+
+						case "toString":
+							return "Cached" + statement;
+
+						default:
+							if(closed) {
+								throw new SQLException("Statement has already been closed.");
+							}
+						}
+
+						return invokeTimed(statement, method, args);
+					}
+				};
+
+				return (PreparedStatement)Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+						new Class<?>[] {PreparedStatement.class}, handler);
+			}
+
+			private void closeQuietly() {
+				try {
+					statement.close();
+				} catch (SQLException e) {
+					// the statement is being discarded either way
+				}
+			}
+		}
+	}
+
+	// one checkout of a physical connection; the proxy stops working once it has been closed
+	private class Borrow implements InvocationHandler {
+		private final PhysicalConnection physical;
+		private final long borrowedAt = System.currentTimeMillis();
+		// filling in a stack trace on every borrow is costly, so it is only done when asked for
+		private final Throwable borrowSite = captureBorrowSites ? new Throwable("Connection borrowed here") : null;
+		private final Connection proxy;
+		private volatile boolean leakReported;
+		private boolean closed;
+
+		private Borrow(PhysicalConnection physical) {
+			this.physical = physical;
+			this.proxy = (Connection)Proxy.newProxyInstance(Connection.class.getClassLoader(),
+					new Class<?>[] {Connection.class}, this);
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			switch(method.getName()) {
+			case "close":
+				if(!closed) {
+					closed = true;
+					release(this);
+				}
+				return null;
+
+			case "isClosed":
+				return closed || physical.connection.isClosed();
+
+			case "equals":
+				return proxy == args[0];
+
+			case "hashCode":
+				return System.identityHashCode(proxy);
+
+			case "toString":
+				return "Pooled" + physical.connection;
+
+			default:
+				break;
+			}
+
+			// once returned, the physical connection may belong to another borrower, so a stale proxy must not reach it
+			if(closed) {
+				throw new SQLException("Connection has already been returned to the pool.");
+			}
+
+			// only the plain and generated-keys forms are cached; other variants change statement behavior, and DaoBase uses one to skip the cache
+			if("prepareStatement".equals(method.getName()) && statementCacheSize > 0
+					&& (args.length == 1 || (args.length == 2 && args[1] instanceof Integer))) {
+				int autoGeneratedKeys = args.length == 2 ? (Integer)args[1] : Statement.NO_GENERATED_KEYS;
+				return physical.statements.prepare(this, (String)args[0], autoGeneratedKeys);
+			}
+
+			Object result;
+
+			try {
+				result = method.invoke(physical.connection, args);
+			} catch (InvocationTargetException e) {
+				throw e.getCause();
+			}
+
+			// statements that aren't cached are wrapped only while metrics are on, so their execute calls are timed too
+			if(result instanceof Statement && DaoMetrics.isEnabled()) {
+				return timedStatement((Statement)result, method.getReturnType(), this);
+			}
+			return result;
+		}
+	}
+}
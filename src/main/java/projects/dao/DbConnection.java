@@ -1,31 +1,68 @@
 package projects.dao;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
-import java.sql.SQLException;
+import java.util.List;
 
-import projects.exception.DbException;
+import projects.dao.ConnectionPool.PoolStats;
+import provided.util.DaoMetrics;
 
 public class DbConnection {
-	
-	private static String HOST = "localhost";
-	private static String PASSWORD = "projects";
-	private static int PORT = 3306;
-	private static String SCHEMA = "projects";
-	private static String USER = "projects";
-	
+
+	// connection settings default to the local projects schema and can be overridden with -Dprojects.db.host=... etc. (used by the benchmarks)
+	private static String HOST = System.getProperty("projects.db.host", "localhost");
+	private static String PASSWORD = System.getProperty("projects.db.password", "projects");
+	private static int PORT = Integer.getInteger("projects.db.port", 3306);
+	private static String SCHEMA = System.getProperty("projects.db.schema", "projects");
+	private static String USER = System.getProperty("projects.db.user", "projects");
+
+	// pool sizing and timeouts, shared by every DAO call
+	private static int POOL_MIN_IDLE = 2;
+	private static int POOL_MAX_SIZE = 10;
+	private static long POOL_ACQUIRE_TIMEOUT_MILLIS = 5_000;
+	private static long POOL_IDLE_TIMEOUT_MILLIS = 300_000;
+	private static long POOL_LEAK_THRESHOLD_MILLIS = 60_000;
+	// capturing where each connection was borrowed costs a stack trace per borrow, so it is off unless -Dprojects.pool.leakStackTraces=true
+	private static boolean POOL_LEAK_STACK_TRACES = Boolean.getBoolean("projects.pool.leakStackTraces");
+	private static int POOL_VALIDATION_TIMEOUT_SECONDS = 2;
+
+	// prepared statements cached per pooled connection (0 turns the cache off) and whether MySQL prepares them server-side
+	private static int STATEMENT_CACHE_SIZE = 32;
+	private static boolean USE_SERVER_PREPARED_STATEMENTS = false;
+
+	//builds the URL string once using the format method and the static variables established above. allowMultiQueries lets the DAO send several statements in one round trip
+	// and rewriteBatchedStatements turns JDBC insert batches into multi-row INSERTs
+	private static final String URL = String.format("jdbc:mysql://%s:%d/%s?user=%s&password=%s&useSSL=false&allowMultiQueries=true&rewriteBatchedStatements=true&useServerPrepStmts=%b", HOST, PORT, SCHEMA, USER, PASSWORD, USE_SERVER_PREPARED_STATEMENTS);
+
+	private static final ConnectionPool POOL = new ConnectionPool(URL, POOL_MIN_IDLE, POOL_MAX_SIZE,
+			POOL_ACQUIRE_TIMEOUT_MILLIS, POOL_IDLE_TIMEOUT_MILLIS, POOL_LEAK_THRESHOLD_MILLIS,
+			POOL_LEAK_STACK_TRACES, POOL_VALIDATION_TIMEOUT_SECONDS, STATEMENT_CACHE_SIZE);
+
+	// borrows a warm connection from the pool; closing it returns it to the pool. Throws a DbException if none can be obtained
 	public static Connection getConnection() {
-		//builds the URL string using the format method and the static variables established above
-		String url = String.format("jdbc:mysql://%s:%d/%s?user=%s&password=%s&useSSL=false", HOST, PORT, SCHEMA, USER, PASSWORD);
+		long start = DaoMetrics.start();
+		Connection conn = POOL.getConnection();
 		
-		//try catch statement which throws an error if theres a runtime exception
-		try {
-			Connection conn = DriverManager.getConnection(url);
-			System.out.println("Successfully obtained connection!");
-			return conn;
-		} catch (SQLException e) {
-			throw new DbException(e);
-		}
+		DaoMetrics.recordSince(DaoMetrics.CONNECTION_ACQUIRE, start);
+		return conn;
+	}
+
+	// borrows several connections in one reservation, for queries that run side by side; each one is returned by closing it
+	public static List<Connection> getConnections(int count) {
+		long start = DaoMetrics.start();
+		List<Connection> connections = POOL.getConnections(count);
+		
+		DaoMetrics.recordSince(DaoMetrics.CONNECTION_ACQUIRE, start);
+		return connections;
+	}
+
+	// snapshot of the pool counters for monitoring
+	public static PoolStats getPoolStats() {
+		return POOL.getStats();
+	}
+
+	// closes all idle physical connections, used when the application exits
+	public static void shutdown() {
+		POOL.shutdown();
 	}
 
 }
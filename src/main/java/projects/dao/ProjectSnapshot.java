@@ -0,0 +1,551 @@
+package projects.dao;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import projects.entity.Category;
+import projects.entity.Material;
+import projects.entity.Project;
+import projects.entity.Step;
+import projects.exception.DbException;
+
+/*
+ * a read-only copy of the catalog in one binary file, memory-mapped so a read decodes only the bytes of the projects it returns and
+ * the first read after startup doesn't wait for a database. The layout is
+ *
+ *   header      magic, format version
+ *   categories  count, then (category_id, name) for every category, ordered by name
+ *   projects    one record per project in project_id order: the project columns, then its materials, steps (in step order) and
+ *               categories, each list preceded by its length
+ *   index       (project_id, record offset) per project ordered by project_id, for binary search, then the index positions
+ *               ordered by project name, for fetchAllProjects
+ *   footer      index offset, project count, creation time, change sequence, magic
+ *
+ * Strings are a byte length (-1 for null) and UTF-8 bytes, decimals a scale byte (-128 for null) and the unscaled long, and a null
+ * Integer column is Integer.MIN_VALUE. The footer is written last, so the file is written in one pass and a truncated file is
+ * recognised. write() builds the file under a temporary name and moves it into place, so a snapshot being read is never half written;
+ * on Linux an open snapshot keeps reading the old file until it is reopened.
+ *
+ * The change sequence is the last project_change the snapshot includes, so it can be brought up to date with the changes logged after
+ * it (see ProjectsService.refreshSnapshot) instead of being rewritten from the database.
+ *
+ * A mapping is limited to 2 GB. Closing the snapshot closes the channel, but the mapping is only released when the buffer is garbage
+ * collected
+ */
+public class ProjectSnapshot implements Closeable {
+	private static final int MAGIC = 0x50524A53;
+	private static final int FORMAT_VERSION = 2;
+	private static final int FOOTER_SIZE = Long.BYTES + Integer.BYTES + Long.BYTES + Long.BYTES + Integer.BYTES;
+	private static final int INDEX_ENTRY_SIZE = Integer.BYTES + Long.BYTES;
+	private static final int NULL_INT = Integer.MIN_VALUE;
+	private static final byte NULL_SCALE = Byte.MIN_VALUE;
+	private static final int BUFFER_SIZE = 64 * 1024;
+	// the largest file a single MappedByteBuffer can map
+	private static final long MAX_SIZE = Integer.MAX_VALUE;
+
+	private final Path path;
+	private final FileChannel channel;
+	private final MappedByteBuffer buffer;
+	private final int projectCount;
+	private final int indexOffset;
+	private final int nameOrderOffset;
+	private final long createdAt;
+	private final long changeSeq;
+
+	private ProjectSnapshot(Path path, FileChannel channel, MappedByteBuffer buffer) {
+		this.path = path;
+		this.channel = channel;
+		this.buffer = buffer;
+
+		int footer = buffer.capacity() - FOOTER_SIZE;
+
+		if(footer < 2 * Integer.BYTES || buffer.getInt(0) != MAGIC || buffer.getInt(buffer.capacity() - Integer.BYTES) != MAGIC) {
+			throw new DbException(path + " is not a complete project snapshot.");
+		}
+
+		if(buffer.getInt(Integer.BYTES) != FORMAT_VERSION) {
+			throw new DbException(path + " has snapshot format " + buffer.getInt(Integer.BYTES) + ", expected " + FORMAT_VERSION + ".");
+		}
+
+		this.indexOffset = (int)buffer.getLong(footer);
+		this.projectCount = buffer.getInt(footer + Long.BYTES);
+		this.createdAt = buffer.getLong(footer + Long.BYTES + Integer.BYTES);
+		this.changeSeq = buffer.getLong(footer + Long.BYTES + Integer.BYTES + Long.BYTES);
+		this.nameOrderOffset = indexOffset + projectCount * INDEX_ENTRY_SIZE;
+	}
+
+	// maps an existing snapshot file. Throws a DbException if the file isn't a complete snapshot
+	public static ProjectSnapshot open(Path path) throws IOException {
+		FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+
+		try {
+			if(channel.size() > Integer.MAX_VALUE) {
+				throw new DbException(path + " is larger than the 2 GB a snapshot can map.");
+			}
+			return new ProjectSnapshot(path, channel, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		} catch(IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	public Path getPath() {
+		return path;
+	}
+
+	// when the snapshot was written, in epoch milliseconds
+	public long getCreatedAt() {
+		return createdAt;
+	}
+
+	// the last change in the project_change log that the snapshot includes
+	public long getChangeSeq() {
+		return changeSeq;
+	}
+
+	public int getProjectCount() {
+		return projectCount;
+	}
+
+	// binary search of the project_id index, then one record decoded. Each call returns new objects, so callers may change them
+	public Optional<Project> fetchProjectById(int projectId) {
+		int low = 0;
+		int high = projectCount - 1;
+
+		while(low <= high) {
+			int middle = (low + high) >>> 1;
+			int middleId = buffer.getInt(indexOffset + middle * INDEX_ENTRY_SIZE);
+
+			if(middleId < projectId) {
+				low = middle + 1;
+			} else if(middleId > projectId) {
+				high = middle - 1;
+			} else {
+				return Optional.of(readProject(recordOffset(middle), true));
+			}
+		}
+		return Optional.empty();
+	}
+
+	// the project rows without their children, ordered by name like ProjectsDao.fetchAllProjects
+	public List<Project> fetchAllProjects() {
+		return readInNameOrder(false);
+	}
+
+	// every project with its children, ordered by name like ProjectsDao.fetchAllProjectsWithChildren
+	public List<Project> fetchAllProjectsWithChildren() {
+		return readInNameOrder(true);
+	}
+
+	private List<Project> readInNameOrder(boolean withChildren) {
+		List<Project> projects = new ArrayList<>(projectCount);
+
+		for(int index = 0; index < projectCount; index++) {
+			projects.add(readProject(recordOffset(buffer.getInt(nameOrderOffset + index * Integer.BYTES)), withChildren));
+		}
+		return projects;
+	}
+
+	// IDs that aren't in the snapshot are skipped
+	public List<Project> fetchProjectsByIds(Collection<Integer> projectIds) {
+		List<Project> projects = new ArrayList<>(projectIds.size());
+
+		for(Integer projectId : projectIds) {
+			if(Objects.nonNull(projectId)) {
+				fetchProjectById(projectId).ifPresent(projects::add);
+			}
+		}
+		return projects;
+	}
+
+	// every project with its children, in project_id order, decoded as the stream is consumed
+	public Stream<Project> streamAllProjectGraphs() {
+		return IntStream.range(0, projectCount).mapToObj(index -> readProject(recordOffset(index), true));
+	}
+
+	public List<Category> fetchAllCategories() {
+		Cursor cursor = new Cursor(2 * Integer.BYTES);
+		int count = cursor.readInt();
+		List<Category> categories = new ArrayList<>(count);
+
+		for(int index = 0; index < count; index++) {
+			categories.add(cursor.readCategory());
+		}
+		return categories;
+	}
+
+	private int recordOffset(int index) {
+		return (int)buffer.getLong(indexOffset + index * INDEX_ENTRY_SIZE + Integer.BYTES);
+	}
+
+	private Project readProject(int offset, boolean withChildren) {
+		Cursor cursor = new Cursor(offset);
+		Project project = new Project();
+
+		project.setProjectId(cursor.readInt());
+		project.setVersion(cursor.readInteger());
+		project.setProjectName(cursor.readString());
+		project.setEstimatedHours(cursor.readDecimal());
+		project.setActualHours(cursor.readDecimal());
+		project.setDifficulty(cursor.readInteger());
+		project.setNotes(cursor.readString());
+
+		if(!withChildren) {
+			return project;
+		}
+
+		int numMaterials = cursor.readInt();
+		List<Material> materials = project.getMaterials();
+
+		for(int index = 0; index < numMaterials; index++) {
+			Material material = new Material();
+			material.setProjectId(project.getProjectId());
+			material.setMaterialId(cursor.readInt());
+			material.setMaterialName(cursor.readString());
+			material.setNumRequired(cursor.readInteger());
+			material.setCost(cursor.readDecimal());
+			materials.add(material);
+		}
+
+		int numSteps = cursor.readInt();
+		List<Step> steps = project.getSteps();
+
+		for(int index = 0; index < numSteps; index++) {
+			Step step = new Step();
+			step.setProjectId(project.getProjectId());
+			step.setStepId(cursor.readInt());
+			step.setStepOrder(cursor.readInteger());
+			step.setStepText(cursor.readString());
+			steps.add(step);
+		}
+
+		int numCategories = cursor.readInt();
+		List<Category> categories = project.getCategories();
+
+		for(int index = 0; index < numCategories; index++) {
+			categories.add(cursor.readCategory());
+		}
+
+		return project;
+	}
+
+	// reads fields in sequence from an offset, using absolute gets so any number of threads can read the shared buffer at once
+	private class Cursor {
+		private int position;
+
+		private Cursor(int position) {
+			this.position = position;
+		}
+
+		private int readInt() {
+			int value = buffer.getInt(position);
+			position += Integer.BYTES;
+			return value;
+		}
+
+		private Integer readInteger() {
+			int value = readInt();
+			return value == NULL_INT ? null : value;
+		}
+
+		private String readString() {
+			int length = readInt();
+
+			if(length < 0) {
+				return null;
+			}
+
+			byte[] bytes = new byte[length];
+			buffer.get(position, bytes);
+			position += length;
+			return new String(bytes, StandardCharsets.UTF_8);
+		}
+
+		private BigDecimal readDecimal() {
+			byte scale = buffer.get(position++);
+
+			if(scale == NULL_SCALE) {
+				return null;
+			}
+
+			long unscaled = buffer.getLong(position);
+			position += Long.BYTES;
+			return BigDecimal.valueOf(unscaled, scale);
+		}
+
+		private Category readCategory() {
+			Category category = new Category();
+			category.setCategoryId(readInt());
+			category.setCategoryName(readString());
+			return category;
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	/*
+	 * writes a new snapshot to the path with this snapshot's projects, less those whose ID is in changedIds, merged with the changed
+	 * projects, which need not be sorted. A changed ID without a project in changed is a deleted project. The path may be this
+	 * snapshot's own, which stays readable until it is closed. Returns the number of projects written
+	 */
+	public int writeWithChanges(Path path, List<Category> categories, Set<Integer> changedIds, List<Project> changed, long changeSeq)
+			throws IOException {
+		List<Project> sorted = new ArrayList<>(changed);
+		sorted.sort(Comparator.comparing(Project::getProjectId));
+
+		Iterator<Project> merged = new Iterator<>() {
+			private final Iterator<Project> kept = streamAllProjectGraphs().filter(project -> !changedIds.contains(project.getProjectId()))
+					.iterator();
+			private final Iterator<Project> added = sorted.iterator();
+			private Project nextKept = nextOrNull(kept);
+			private Project nextAdded = nextOrNull(added);
+
+			@Override
+			public boolean hasNext() {
+				return Objects.nonNull(nextKept) || Objects.nonNull(nextAdded);
+			}
+
+			@Override
+			public Project next() {
+				Project project;
+
+				if(Objects.isNull(nextAdded) || (Objects.nonNull(nextKept) && nextKept.getProjectId() < nextAdded.getProjectId())) {
+					project = nextKept;
+					nextKept = nextOrNull(kept);
+				} else {
+					project = nextAdded;
+					nextAdded = nextOrNull(added);
+				}
+				return project;
+			}
+		};
+
+		return write(path, categories, StreamSupport.stream(Spliterators.spliteratorUnknownSize(merged, Spliterator.ORDERED), false),
+				changeSeq);
+	}
+
+	private static Project nextOrNull(Iterator<Project> it) {
+		return it.hasNext() ? it.next() : null;
+	}
+
+	/*
+	 * writes the categories and the projects, which must arrive in project_id order with their children (as from
+	 * ProjectsDao.streamAllProjectGraphs), to a new snapshot at the path. changeSeq is the last logged change the data includes. Only
+	 * the index entries and project names are kept in memory while writing. Returns the number of projects written
+	 */
+	public static int write(Path path, List<Category> categories, Stream<Project> projects, long changeSeq) throws IOException {
+		return write(path, categories, projects, changeSeq, MAX_SIZE);
+	}
+
+	// the size limit is a parameter so the check can be exercised without writing 2 GB
+	static int write(Path path, List<Category> categories, Stream<Project> projects, long changeSeq, long maxSize) throws IOException {
+		Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+		int count = 0;
+
+		try(FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+				StandardOpenOption.WRITE);
+				BoundedOutputStream bounded = new BoundedOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE),
+						maxSize);
+				DataOutputStream out = new DataOutputStream(bounded)) {
+			out.writeInt(MAGIC);
+			out.writeInt(FORMAT_VERSION);
+
+			out.writeInt(categories.size());
+			for(Category category : categories) {
+				writeCategory(out, category);
+			}
+
+			int[] ids = new int[1024];
+			long[] offsets = new long[1024];
+			List<String> names = new ArrayList<>();
+			int lastId = Integer.MIN_VALUE;
+
+			for(Iterator<Project> it = projects.iterator(); it.hasNext();) {
+				Project project = it.next();
+
+				if(project.getProjectId() <= lastId) {
+					throw new DbException("Projects must be written in ascending project_id order.");
+				}
+
+				if(count == ids.length) {
+					ids = Arrays.copyOf(ids, count * 2);
+					offsets = Arrays.copyOf(offsets, count * 2);
+				}
+
+				lastId = project.getProjectId();
+				ids[count] = lastId;
+				offsets[count] = bounded.position();
+				names.add(project.getProjectName());
+				count++;
+
+				writeProject(out, project);
+			}
+
+			long indexOffset = bounded.position();
+
+			for(int index = 0; index < count; index++) {
+				out.writeInt(ids[index]);
+				out.writeLong(offsets[index]);
+			}
+
+			// ignoring case, as the default collation does; equal names stay in project_id order
+			Integer[] nameOrder = new Integer[count];
+			Arrays.setAll(nameOrder, index -> index);
+			Arrays.sort(nameOrder, (left, right) -> {
+				int compare = String.CASE_INSENSITIVE_ORDER.compare(names.get(left), names.get(right));
+				return compare != 0 ? compare : Integer.compare(left, right);
+			});
+
+			for(Integer position : nameOrder) {
+				out.writeInt(position);
+			}
+
+			out.writeLong(indexOffset);
+			out.writeInt(count);
+			out.writeLong(System.currentTimeMillis());
+			out.writeLong(changeSeq);
+			out.writeInt(MAGIC);
+		} catch(IOException | RuntimeException e) {
+			Files.deleteIfExists(temp);
+			throw e;
+		}
+
+		Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		return count;
+	}
+
+	private static void writeProject(DataOutputStream out, Project project) throws IOException {
+		out.writeInt(project.getProjectId());
+		writeInteger(out, project.getVersion());
+		writeString(out, project.getProjectName());
+		writeDecimal(out, project.getEstimatedHours());
+		writeDecimal(out, project.getActualHours());
+		writeInteger(out, project.getDifficulty());
+		writeString(out, project.getNotes());
+
+		out.writeInt(project.getMaterials().size());
+		for(Material material : project.getMaterials()) {
+			out.writeInt(material.getMaterialId());
+			writeString(out, material.getMaterialName());
+			writeInteger(out, material.getNumRequired());
+			writeDecimal(out, material.getCost());
+		}
+
+		out.writeInt(project.getSteps().size());
+		for(Step step : project.getSteps()) {
+			out.writeInt(step.getStepId());
+			writeInteger(out, step.getStepOrder());
+			writeString(out, step.getStepText());
+		}
+
+		out.writeInt(project.getCategories().size());
+		for(Category category : project.getCategories()) {
+			writeCategory(out, category);
+		}
+	}
+
+	private static void writeCategory(DataOutputStream out, Category category) throws IOException {
+		out.writeInt(category.getCategoryId());
+		writeString(out, category.getCategoryName());
+	}
+
+	private static void writeInteger(DataOutputStream out, Integer value) throws IOException {
+		out.writeInt(Objects.isNull(value) ? NULL_INT : value);
+	}
+
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		if(Objects.isNull(value)) {
+			out.writeInt(-1);
+			return;
+		}
+
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	// DECIMAL(7,2) columns always fit; anything wider than a long would be corrupted, so it is refused
+	private static void writeDecimal(DataOutputStream out, BigDecimal value) throws IOException {
+		if(Objects.isNull(value)) {
+			out.writeByte(NULL_SCALE);
+			return;
+		}
+
+		BigInteger unscaled = value.unscaledValue();
+
+		if(unscaled.bitLength() > 63 || value.scale() <= NULL_SCALE || value.scale() > Byte.MAX_VALUE) {
+			throw new DbException("Decimal " + value + " doesn't fit in a snapshot.");
+		}
+
+		out.writeByte(value.scale());
+		out.writeLong(unscaled.longValue());
+	}
+
+	/*
+	 * counts the bytes written in a long, since DataOutputStream.size() stops at Integer.MAX_VALUE, and fails before the file would
+	 * grow past the size a snapshot can map rather than after
+	 */
+	private static class BoundedOutputStream extends FilterOutputStream {
+		private final long maxSize;
+		private long position;
+
+		private BoundedOutputStream(OutputStream out, long maxSize) {
+			super(out);
+			this.maxSize = maxSize;
+		}
+
+		private long position() {
+			return position;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			reserve(1);
+			out.write(b);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			reserve(len);
+			out.write(b, off, len);
+		}
+
+		private void reserve(int len) {
+			if(position + len > maxSize) {
+				throw new DbException("The snapshot would be larger than the " + maxSize + " bytes a snapshot can map.");
+			}
+			position += len;
+		}
+	}
+}
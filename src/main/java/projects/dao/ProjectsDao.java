@@ -1,22 +1,47 @@
 package projects.dao;
 
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
 import java.util.Collection;
-import java.util.LinkedList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import projects.entity.Category;
+import projects.entity.ImportCheckpoint;
 import projects.entity.Material;
 import projects.entity.Project;
+import projects.entity.ProjectChange;
+import projects.entity.ProjectChangeBatch;
+import projects.entity.ProjectFilter;
+import projects.entity.ProjectPage;
+import projects.entity.PurgeResult;
 import projects.entity.Step;
 import projects.exception.DbException;
-import java.util.Optional;
 import provided.util.DaoBase;
+import provided.util.DaoMetrics;
+import provided.util.Histogram;
+import provided.util.IntIntMap;
+import provided.util.MappingStrategy;
 
 public class ProjectsDao extends DaoBase {
 	// static variables are all associated with a table in our database
@@ -25,18 +50,229 @@ public class ProjectsDao extends DaoBase {
 	private static final String PROJECT_TABLE = "project";
 	private static final String PROJECT_CATEGORY_TABLE = "project_category";
 	private static final String STEP_TABLE = "step";
+	private static final String CHANGE_TABLE = "project_change";
+	private static final String CHANGE_SEQUENCE_TABLE = "change_sequence";
+	private static final String CHANGE_CONSUMER_TABLE = "change_consumer";
+	private static final String IMPORT_CHECKPOINT_TABLE = "import_checkpoint";
+	
+	/*
+	 * a change log consumer that hasn't saved its position for this long no longer holds back purgeChanges. If it comes back, its next
+	 * poll reports the log as truncated
+	 */
+	private static final int CHANGE_CONSUMER_TIMEOUT_HOURS = 24;
+	
+	// upper bound on the number of IDs bound into a single IN (...) list
+	private static final int MAX_IDS_PER_QUERY = 1000;
+	
+	/*
+	 * IN lists are padded up to one of these lengths by repeating their last ID, so ID queries have only a few statement texts and
+	 * don't push the constant statements out of the pooled connections' statement caches
+	 */
+	private static final int[] IN_LIST_SIZES = {8, 64, 512, MAX_IDS_PER_QUERY};
+	
+	// spacing between consecutive step_order values, so a step can be inserted or moved between two others by updating only its own row
+	private static final int STEP_ORDER_GAP = 1024;
+	
+	// SQL is built once here so the statement text is identical on every call and the pooled connections can reuse their prepared statements
+	// @formatter:off
+	private static final String INSERT_PROJECT_SQL = ""
+			+ "INSERT INTO " + PROJECT_TABLE + " "
+			+ "(project_name, estimated_hours, actual_hours, difficulty, notes) "
+			+ "VALUES "
+			+ "(?, ?, ?, ?, ?)";
+	private static final String INSERT_MATERIAL_SQL = ""
+			+ "INSERT INTO " + MATERIAL_TABLE + " "
+			+ "(project_id, material_name, num_required, cost) "
+			+ "VALUES "
+			+ "(?, ?, ?, ?)";
+	private static final String INSERT_STEP_SQL = ""
+			+ "INSERT INTO " + STEP_TABLE + " "
+			+ "(project_id, step_text, step_order) "
+			+ "VALUES "
+			+ "(?, ?, ?)";
+	private static final String INSERT_PROJECT_CATEGORY_SQL = ""
+			+ "INSERT INTO " + PROJECT_CATEGORY_TABLE + " "
+			+ "(project_id, category_id) "
+			+ "VALUES "
+			+ "(?, ?)";
+	private static final String FETCH_ALL_PROJECTS_SQL = "SELECT * FROM " + PROJECT_TABLE + " ORDER BY project_name";
+	private static final String FETCH_FIRST_PAGE_SQL = ""
+			+ "SELECT * FROM " + PROJECT_TABLE + " "
+			+ "ORDER BY project_name, project_id "
+			+ "LIMIT ?";
+	private static final String FETCH_NEXT_PAGE_SQL = ""
+			+ "SELECT * FROM " + PROJECT_TABLE + " "
+			+ "WHERE project_name > ? OR (project_name = ? AND project_id > ?) "
+			+ "ORDER BY project_name, project_id "
+			+ "LIMIT ?";
+	// the project row and its materials, steps and categories are selected by one multi-statement query so the whole graph comes back in a single round trip
+	private static final String FETCH_PROJECT_GRAPH_SQL = ""
+			+ "SELECT * FROM " + PROJECT_TABLE + " WHERE project_id = ?; "
+			+ "SELECT * FROM " + MATERIAL_TABLE + " WHERE project_id = ?; "
+			+ "SELECT * FROM " + STEP_TABLE + " WHERE project_id = ? ORDER BY step_order, step_id; "
+			+ "SELECT c.* FROM " + CATEGORY_TABLE + " c "
+			+ "JOIN " + PROJECT_CATEGORY_TABLE + " pc USING (category_id) "
+			+ "WHERE project_id = ?";
+	// the same graph as single-table queries, so fetchProjectByIdParallel can run them on separate connections
+	private static final String FETCH_PROJECT_SQL = "SELECT * FROM " + PROJECT_TABLE + " WHERE project_id = ?";
+	private static final String FETCH_MATERIALS_SQL = "SELECT * FROM " + MATERIAL_TABLE + " WHERE project_id = ?";
+	private static final String FETCH_STEPS_SQL = "SELECT * FROM " + STEP_TABLE + " WHERE project_id = ? ORDER BY step_order, step_id";
+	private static final String FETCH_CATEGORIES_SQL = ""
+			+ "SELECT c.* FROM " + CATEGORY_TABLE + " c "
+			+ "JOIN " + PROJECT_CATEGORY_TABLE + " pc USING (category_id) "
+			+ "WHERE project_id = ?";
+	private static final String START_SNAPSHOT_SQL = ""
+			+ "SET TRANSACTION ISOLATION LEVEL REPEATABLE READ; "
+			+ "START TRANSACTION WITH CONSISTENT SNAPSHOT, READ ONLY";
+	private static final String FETCH_ALL_PROJECT_GRAPHS_SQL = ""
+			+ "SELECT * FROM " + PROJECT_TABLE + " ORDER BY project_name; "
+			+ "SELECT * FROM " + MATERIAL_TABLE + "; "
+			+ "SELECT * FROM " + STEP_TABLE + " ORDER BY project_id, step_order, step_id; "
+			+ "SELECT pc.project_id, c.* FROM " + CATEGORY_TABLE + " c "
+			+ "JOIN " + PROJECT_CATEGORY_TABLE + " pc USING (category_id)";
+	// the export reads each table in project_id order, which the primary key and the project_id indexes deliver without a sort
+	private static final String EXPORT_PROJECTS_SQL = "SELECT * FROM " + PROJECT_TABLE + " ORDER BY project_id";
+	private static final String EXPORT_MATERIALS_SQL = "SELECT * FROM " + MATERIAL_TABLE + " ORDER BY project_id, material_id";
+	private static final String EXPORT_STEPS_SQL = "SELECT * FROM " + STEP_TABLE + " ORDER BY project_id, step_order, step_id";
+	private static final String EXPORT_CATEGORIES_SQL = ""
+			+ "SELECT pc.project_id, c.* FROM " + PROJECT_CATEGORY_TABLE + " pc "
+			+ "JOIN " + CATEGORY_TABLE + " c USING (category_id) "
+			+ "ORDER BY pc.project_id, pc.category_id";
+	// every update increments version, so a writer holding an older version can tell its copy is stale
+	private static final String MODIFY_PROJECT_SQL = ""
+			+ "UPDATE " + PROJECT_TABLE + " SET "
+			+ "project_name = ?, "
+			+ "estimated_hours = ?, "
+			+ "actual_hours = ?, "
+			+ "difficulty = ?, "
+			+ "notes = ?, "
+			+ "version = version + 1 "
+			+ "WHERE project_id = ?";
+	private static final String MODIFY_PROJECT_IF_VERSION_SQL = MODIFY_PROJECT_SQL + " AND version = ?";
+	private static final String FETCH_PROJECT_VERSION_SQL = "SELECT version FROM " + PROJECT_TABLE + " WHERE project_id = ?";
+	private static final String DELETE_PROJECT_SQL = "DELETE FROM " + PROJECT_TABLE + " WHERE project_id = ?";
+	private static final String LOCK_PROJECT_SQL = "SELECT project_id FROM " + PROJECT_TABLE + " WHERE project_id = ? FOR UPDATE";
+	private static final String MODIFY_MATERIAL_SQL = ""
+			+ "UPDATE " + MATERIAL_TABLE + " SET "
+			+ "material_name = ?, "
+			+ "num_required = ?, "
+			+ "cost = ? "
+			+ "WHERE material_id = ? AND project_id = ?";
+	private static final String DELETE_MATERIAL_SQL = "DELETE FROM " + MATERIAL_TABLE + " WHERE material_id = ? AND project_id = ?";
+	private static final String MODIFY_STEP_SQL = "UPDATE " + STEP_TABLE + " SET step_text = ? WHERE step_id = ? AND project_id = ?";
+	private static final String MOVE_STEP_SQL = "UPDATE " + STEP_TABLE + " SET step_order = ? WHERE step_id = ? AND project_id = ?";
+	private static final String DELETE_STEP_SQL = "DELETE FROM " + STEP_TABLE + " WHERE step_id = ? AND project_id = ?";
+	private static final String FETCH_STEP_ORDER_SQL = "SELECT step_order FROM " + STEP_TABLE + " WHERE step_id = ? AND project_id = ?";
+	// the MIN and MAX lookups below are single seeks on the step (project_id, step_order) index
+	private static final String FETCH_LAST_STEP_ORDER_SQL = "SELECT MAX(step_order) FROM " + STEP_TABLE + " WHERE project_id = ?";
+	private static final String FETCH_FIRST_STEP_ORDER_SQL = "SELECT MIN(step_order) FROM " + STEP_TABLE + " WHERE project_id = ? AND step_id <> ?";
+	private static final String FETCH_NEXT_STEP_ORDER_SQL = ""
+			+ "SELECT MIN(step_order) FROM " + STEP_TABLE + " "
+			+ "WHERE project_id = ? AND step_order > ? AND step_id <> ?";
+	private static final String RENUMBER_STEPS_SQL = ""
+			+ "UPDATE " + STEP_TABLE + " s "
+			+ "JOIN (SELECT step_id, ROW_NUMBER() OVER (ORDER BY step_order, step_id) * " + STEP_ORDER_GAP + " AS new_order "
+			+ "FROM " + STEP_TABLE + " WHERE project_id = ?) r USING (step_id) "
+			+ "SET s.step_order = r.new_order";
+	private static final String FETCH_ALL_CATEGORIES_SQL = "SELECT * FROM " + CATEGORY_TABLE + " ORDER BY category_name";
+	private static final String INSERT_CATEGORY_SQL = "INSERT INTO " + CATEGORY_TABLE + " (category_name) VALUES (?)";
+	private static final String MODIFY_CATEGORY_SQL = "UPDATE " + CATEGORY_TABLE + " SET category_name = ? WHERE category_id = ?";
+	private static final String DELETE_CATEGORY_SQL = "DELETE FROM " + CATEGORY_TABLE + " WHERE category_id = ?";
+	private static final String ADD_CATEGORY_TO_PROJECT_SQL = ""
+			+ "INSERT INTO " + PROJECT_CATEGORY_TABLE + " "
+			+ "(project_id, category_id) "
+			+ "VALUES "
+			+ "(?, ?) "
+			+ "ON DUPLICATE KEY UPDATE category_id = category_id";
+	private static final String REMOVE_CATEGORY_FROM_PROJECT_SQL = "DELETE FROM " + PROJECT_CATEGORY_TABLE + " WHERE project_id = ? AND category_id = ?";
+	private static final String FETCH_CATEGORY_PROJECT_IDS_SQL = "SELECT project_id FROM " + PROJECT_CATEGORY_TABLE + " WHERE category_id = ?";
+	private static final String ALLOCATE_CHANGE_SEQS_SQL = ""
+			+ "SELECT last_seq FROM " + CHANGE_SEQUENCE_TABLE + " FOR UPDATE; "
+			+ "UPDATE " + CHANGE_SEQUENCE_TABLE + " SET last_seq = last_seq + ?";
+	private static final String INSERT_CHANGE_SQL = ""
+			+ "INSERT INTO " + CHANGE_TABLE + " "
+			+ "(change_seq, entity_type, entity_id, operation) "
+			+ "VALUES "
+			+ "(?, ?, ?, ?)";
+	private static final String FETCH_IMPORT_CHECKPOINT_SQL = "SELECT * FROM " + IMPORT_CHECKPOINT_TABLE + " WHERE checkpoint_name = ?";
+	private static final String SAVE_IMPORT_CHECKPOINT_SQL = ""
+			+ "INSERT INTO " + IMPORT_CHECKPOINT_TABLE + " "
+			+ "(checkpoint_name, source, records) "
+			+ "VALUES "
+			+ "(?, ?, ?) "
+			+ "ON DUPLICATE KEY UPDATE source = VALUES(source), records = VALUES(records)";
+	private static final String DELETE_IMPORT_CHECKPOINT_SQL = "DELETE FROM " + IMPORT_CHECKPOINT_TABLE + " WHERE checkpoint_name = ?";
+	private static final String FETCH_CHANGES_SQL = ""
+			+ "SELECT * FROM " + CHANGE_TABLE + " "
+			+ "WHERE change_seq > ? "
+			+ "ORDER BY change_seq "
+			+ "LIMIT ?; "
+			+ "SELECT purged_seq FROM " + CHANGE_SEQUENCE_TABLE;
+	private static final String FETCH_LAST_CHANGE_SEQ_SQL = "SELECT last_seq FROM " + CHANGE_SEQUENCE_TABLE;
+	private static final String SAVE_CHANGE_POSITION_SQL = ""
+			+ "INSERT INTO " + CHANGE_CONSUMER_TABLE + " "
+			+ "(consumer_name, change_seq) "
+			+ "VALUES "
+			+ "(?, ?) "
+			+ "ON DUPLICATE KEY UPDATE change_seq = VALUES(change_seq), seen_at = CURRENT_TIMESTAMP(6)";
+	private static final String PURGE_CHANGES_SQL = ""
+			+ "DELETE FROM " + CHANGE_CONSUMER_TABLE + " WHERE seen_at < CURRENT_TIMESTAMP(6) - INTERVAL ? HOUR; "
+			+ "SELECT COALESCE((SELECT MIN(change_seq) FROM " + CHANGE_CONSUMER_TABLE + "), last_seq) FROM " + CHANGE_SEQUENCE_TABLE;
+	private static final String DELETE_CHANGES_BEFORE_SQL = ""
+			+ "DELETE FROM " + CHANGE_TABLE + " WHERE change_seq < ?; "
+			+ "UPDATE " + CHANGE_SEQUENCE_TABLE + " SET purged_seq = GREATEST(purged_seq, ? - 1)";
+	// @formatter:on
+	
+	// time spent in each public DAO method, recorded only while DaoMetrics is enabled
+	private static final Histogram INSERT_PROJECT_TIME = DaoMetrics.histogram("ProjectsDao.insertProject");
+	private static final Histogram INSERT_PROJECTS_TIME = DaoMetrics.histogram("ProjectsDao.insertProjects");
+	private static final Histogram INSERT_PROJECTS_WITH_CHECKPOINT_TIME = DaoMetrics.histogram("ProjectsDao.insertProjectsWithCheckpoint");
+	private static final Histogram FETCH_IMPORT_CHECKPOINT_TIME = DaoMetrics.histogram("ProjectsDao.fetchImportCheckpoint");
+	private static final Histogram DELETE_IMPORT_CHECKPOINT_TIME = DaoMetrics.histogram("ProjectsDao.deleteImportCheckpoint");
+	private static final Histogram FETCH_ALL_PROJECTS_TIME = DaoMetrics.histogram("ProjectsDao.fetchAllProjects");
+	private static final Histogram STREAM_ALL_PROJECTS_TIME = DaoMetrics.histogram("ProjectsDao.streamAllProjects");
+	private static final Histogram FETCH_PROJECT_PAGE_TIME = DaoMetrics.histogram("ProjectsDao.fetchProjectPage");
+	private static final Histogram FETCH_PROJECT_BY_ID_TIME = DaoMetrics.histogram("ProjectsDao.fetchProjectById");
+	private static final Histogram FETCH_PROJECT_BY_ID_PARALLEL_TIME = DaoMetrics.histogram("ProjectsDao.fetchProjectByIdParallel");
+	private static final Histogram FETCH_PROJECTS_BY_IDS_TIME = DaoMetrics.histogram("ProjectsDao.fetchProjectsByIds");
+	private static final Histogram FETCH_ALL_PROJECTS_WITH_CHILDREN_TIME = DaoMetrics.histogram("ProjectsDao.fetchAllProjectsWithChildren");
+	private static final Histogram STREAM_ALL_PROJECT_GRAPHS_TIME = DaoMetrics.histogram("ProjectsDao.streamAllProjectGraphs");
+	private static final Histogram MODIFY_PROJECT_DETAILS_TIME = DaoMetrics.histogram("ProjectsDao.modifyProjectDetails");
+	private static final Histogram MODIFY_CHANGED_PROJECT_DETAILS_TIME = DaoMetrics.histogram("ProjectsDao.modifyChangedProjectDetails");
+	private static final Histogram FETCH_PROJECT_VERSION_TIME = DaoMetrics.histogram("ProjectsDao.fetchProjectVersion");
+	private static final Histogram DELETE_PROJECT_TIME = DaoMetrics.histogram("ProjectsDao.deleteProject");
+	private static final Histogram DELETE_PROJECTS_TIME = DaoMetrics.histogram("ProjectsDao.deleteProjects");
+	private static final Histogram INSERT_MATERIAL_TIME = DaoMetrics.histogram("ProjectsDao.insertMaterial");
+	private static final Histogram MODIFY_MATERIAL_TIME = DaoMetrics.histogram("ProjectsDao.modifyMaterial");
+	private static final Histogram DELETE_MATERIAL_TIME = DaoMetrics.histogram("ProjectsDao.deleteMaterial");
+	private static final Histogram INSERT_STEP_TIME = DaoMetrics.histogram("ProjectsDao.insertStep");
+	private static final Histogram INSERT_STEP_AFTER_TIME = DaoMetrics.histogram("ProjectsDao.insertStepAfter");
+	private static final Histogram MODIFY_STEP_TIME = DaoMetrics.histogram("ProjectsDao.modifyStep");
+	private static final Histogram MOVE_STEP_TIME = DaoMetrics.histogram("ProjectsDao.moveStep");
+	private static final Histogram DELETE_STEP_TIME = DaoMetrics.histogram("ProjectsDao.deleteStep");
+	private static final Histogram FETCH_ALL_CATEGORIES_TIME = DaoMetrics.histogram("ProjectsDao.fetchAllCategories");
+	private static final Histogram INSERT_CATEGORY_TIME = DaoMetrics.histogram("ProjectsDao.insertCategory");
+	private static final Histogram MODIFY_CATEGORY_TIME = DaoMetrics.histogram("ProjectsDao.modifyCategory");
+	private static final Histogram DELETE_CATEGORY_TIME = DaoMetrics.histogram("ProjectsDao.deleteCategory");
+	private static final Histogram ADD_CATEGORY_TO_PROJECT_TIME = DaoMetrics.histogram("ProjectsDao.addCategoryToProject");
+	private static final Histogram REMOVE_CATEGORY_FROM_PROJECT_TIME = DaoMetrics.histogram("ProjectsDao.removeCategoryFromProject");
+	private static final Histogram FETCH_CHANGES_SINCE_TIME = DaoMetrics.histogram("ProjectsDao.fetchChangesSince");
+	private static final Histogram FETCH_LAST_CHANGE_SEQ_TIME = DaoMetrics.histogram("ProjectsDao.fetchLastChangeSeq");
+	private static final Histogram SAVE_CHANGE_POSITION_TIME = DaoMetrics.histogram("ProjectsDao.saveChangePosition");
+	private static final Histogram PURGE_CHANGES_TIME = DaoMetrics.histogram("ProjectsDao.purgeChanges");
+	
+	// rows are mapped through generated constructor/setter lambdas unless another strategy is requested
+	public ProjectsDao() {
+		this(MappingStrategy.GENERATED);
+	}
+	
+	public ProjectsDao(MappingStrategy mappingStrategy) {
+		super(mappingStrategy);
+	}
 	
 	
 	public Project insertProject(Project project) {
-		//first part of the method writes our SQL statement
-		
-		//@formatter:off
-		String sql = ""
-				+ "INSERT INTO " + PROJECT_TABLE + " "
-				+ "(project_name, estimated_hours, actual_hours, difficulty, notes) "
-				+ "VALUES "
-				+ "(?, ?, ?, ?, ?)";
-		//@formatter:on
+		long start = DaoMetrics.start();
 		
 		//first (outer) try/catch block runs the connection and throws a SQL Exception if there was a connection error
 		try(Connection conn = DbConnection.getConnection()){
@@ -44,7 +280,7 @@ public class ProjectsDao extends DaoBase {
 			startTransaction(conn);
 			
 			// second (inner) try/catch is our Prepared Statement which validates the inputs and protects against SQL injection attacks
-			try(PreparedStatement stmt = conn.prepareStatement(sql)){
+			try(PreparedStatement stmt = prepareInsert(conn, INSERT_PROJECT_SQL)){
 				// this block checks each parameter
 				setParameter(stmt, 1, project.getProjectName(), String.class);
 				setParameter(stmt, 2, project.getEstimatedHours(), BigDecimal.class);
@@ -52,14 +288,15 @@ public class ProjectsDao extends DaoBase {
 				setParameter(stmt, 4, project.getDifficulty(), Integer.class);
 				setParameter(stmt, 5, project.getNotes(), String.class);
 				
-				//below saves the update & assigns an ID to project ID
-				stmt.executeUpdate();
-				Integer projectId = getLastInsertId(conn, PROJECT_TABLE);
+				//below saves the update & assigns the generated key to project ID
+				Integer projectId = executeInsert(stmt);
+				recordChanges(conn, ProjectChange.PROJECT, ProjectChange.UPSERT, projectId);
 				
 				//commits changes to the database
 				commitTransaction(conn);
 				
 				project.setProjectId(projectId);
+				project.setVersion(0);
 				return project;
 			}
 			catch(Exception e) {
@@ -69,21 +306,267 @@ public class ProjectsDao extends DaoBase {
 			}
 		} catch (SQLException e) {
 			throw new DbException(e);
+		} finally {
+			DaoMetrics.recordSince(INSERT_PROJECT_TIME, start);
 		}
 	}
 
+	/*
+	 * inserts many project graphs (materials, steps and category links included) using JDBC batches. Projects are written in
+	 * chunks of chunkSize, each chunk in its own transaction, and the generated IDs are read back from the batch so no extra
+	 * query is needed. If a chunk fails it is rolled back and a DbException is thrown; chunks before it stay committed
+	 */
+	public List<Project> insertProjects(Collection<Project> projects, int chunkSize) {
+		if(chunkSize < 1) {
+			throw new DbException("Chunk size must be at least 1 but was " + chunkSize + ".");
+		}
+		
+		List<Project> all = new ArrayList<>(projects);
+		
+		long start = DaoMetrics.start();
+		
+		try(Connection conn = DbConnection.getConnection()){
+			for(int from = 0; from < all.size(); from += chunkSize) {
+				List<Project> chunk = all.subList(from, Math.min(from + chunkSize, all.size()));
+				
+				startTransaction(conn);
+				
+				try {
+					insertChunk(conn, chunk);
+					commitTransaction(conn);
+				}
+				catch(Exception e) {
+					rollbackTransaction(conn);
+					throw new DbException(e);
+				}
+			}
+			
+			return all;
+		} catch (SQLException e) {
+			throw new DbException(e);
+		} finally {
+			DaoMetrics.recordSince(INSERT_PROJECTS_TIME, start);
+		}
+	}
+	
+	/*
+	 * inserts the projects in one transaction together with the import checkpoint, which is created or moved on to the checkpoint's
+	 * record count. Projects and checkpoint commit or roll back together, so a crash can't leave the checkpoint behind projects that
+	 * were written, or ahead of ones that weren't. The projects may be empty, to move the checkpoint past records that were all rejected
+	 */
+	public List<Project> insertProjects(Collection<Project> projects, ImportCheckpoint checkpoint) {
+		List<Project> all = new ArrayList<>(projects);
+		
+		long start = DaoMetrics.start();
+		
+		try(Connection conn = DbConnection.getConnection()){
+			startTransaction(conn);
+			
+			try {
+				// the checkpoint is written first because the chunk ends by logging its changes, which must be the transaction's last lock
+				try(PreparedStatement stmt = prepareStatement(conn, SAVE_IMPORT_CHECKPOINT_SQL)){
+					setParameter(stmt, 1, checkpoint.getCheckpointName(), String.class);
+					setParameter(stmt, 2, checkpoint.getSource(), String.class);
+					setParameter(stmt, 3, checkpoint.getRecords(), Long.class);
+					executeUpdate(stmt);
+				}
+				
+				if(!all.isEmpty()) {
+					insertChunk(conn, all);
+				}
+				
+				commitTransaction(conn);
+				return all;
+			}
+			catch(Exception e) {
+				rollbackTransaction(conn);
+				throw new DbException(e);
+			}
+		} catch (SQLException e) {
+			throw new DbException(e);
+		} finally {
+			DaoMetrics.recordSince(INSERT_PROJECTS_WITH_CHECKPOINT_TIME, start);
+		}
+	}
+	
+	// writes one chunk of project graphs with batched inserts in the caller's transaction and logs their change
+	private void insertChunk(Connection conn, List<Project> chunk) throws SQLException {
+		// projects first, so their generated IDs can be copied to the child rows
+		try(PreparedStatement stmt = prepareInsert(conn, INSERT_PROJECT_SQL)){
+			for(Project project : chunk) {
+				setParameter(stmt, 1, project.getProjectName(), String.class);
+				setParameter(stmt, 2, project.getEstimatedHours(), BigDecimal.class);
+				setParameter(stmt, 3, project.getActualHours(), BigDecimal.class);
+				setParameter(stmt, 4, project.getDifficulty(), Integer.class);
+				setParameter(stmt, 5, project.getNotes(), String.class);
+				stmt.addBatch();
+			}
+			
+			List<Integer> projectIds = executeBatchInsert(stmt, chunk.size());
+			
+			for(int index = 0; index < chunk.size(); index++) {
+				chunk.get(index).setProjectId(projectIds.get(index));
+				chunk.get(index).setVersion(0);
+			}
+		}
+		
+		List<Material> materials = new ArrayList<>();
+		
+		try(PreparedStatement stmt = prepareInsert(conn, INSERT_MATERIAL_SQL)){
+			for(Project project : chunk) {
+				for(Material material : project.getMaterials()) {
+					material.setProjectId(project.getProjectId());
+					setParameter(stmt, 1, material.getProjectId(), Integer.class);
+					setParameter(stmt, 2, material.getMaterialName(), String.class);
+					setParameter(stmt, 3, material.getNumRequired(), Integer.class);
+					setParameter(stmt, 4, material.getCost(), BigDecimal.class);
+					stmt.addBatch();
+					materials.add(material);
+				}
+			}
+			
+			List<Integer> materialIds = executeBatchInsert(stmt, materials.size());
+			
+			for(int index = 0; index < materials.size(); index++) {
+				materials.get(index).setMaterialId(materialIds.get(index));
+			}
+		}
+		
+		List<Step> steps = new ArrayList<>();
+		
+		try(PreparedStatement stmt = prepareInsert(conn, INSERT_STEP_SQL)){
+			for(Project project : chunk) {
+				int position = 0;
+				
+				for(Step step : project.getSteps()) {
+					position++;
+					step.setProjectId(project.getProjectId());
+					
+					// steps without an explicit order are numbered by their position in the list, leaving gaps for later inserts and moves
+					if(Objects.isNull(step.getStepOrder())) {
+						step.setStepOrder(position * STEP_ORDER_GAP);
+					}
+					
+					setParameter(stmt, 1, step.getProjectId(), Integer.class);
+					setParameter(stmt, 2, step.getStepText(), String.class);
+					setParameter(stmt, 3, step.getStepOrder(), Integer.class);
+					stmt.addBatch();
+					steps.add(step);
+				}
+			}
+			
+			List<Integer> stepIds = executeBatchInsert(stmt, steps.size());
+			
+			for(int index = 0; index < steps.size(); index++) {
+				steps.get(index).setStepId(stepIds.get(index));
+			}
+		}
+		
+		int[] categoryIds = insertNewCategories(conn, chunk);
+		
+		// categories with an ID must already exist; only the project_category links are written
+		try(PreparedStatement stmt = prepareStatement(conn, INSERT_PROJECT_CATEGORY_SQL)){
+			for(Project project : chunk) {
+				for(Category category : project.getCategories()) {
+					setParameter(stmt, 1, project.getProjectId(), Integer.class);
+					setParameter(stmt, 2, category.getCategoryId(), Integer.class);
+					stmt.addBatch();
+				}
+			}
+			
+			executeBatch(stmt);
+		}
+		
+		recordChanges(conn, ProjectChange.CATEGORY, ProjectChange.UPSERT, categoryIds);
+		recordChanges(conn, ProjectChange.PROJECT, ProjectChange.UPSERT, chunk.stream().mapToInt(Project::getProjectId).toArray());
+	}
+	
+	/*
+	 * creates the chunk's categories that have a name but no ID, once per name, in the caller's transaction so they are rolled back with
+	 * the chunk if it fails. Every category with that name is given the new ID. Returns the IDs created
+	 */
+	private int[] insertNewCategories(Connection conn, List<Project> chunk) throws SQLException {
+		Map<String, List<Category>> byName = new LinkedHashMap<>();
+		
+		for(Project project : chunk) {
+			for(Category category : project.getCategories()) {
+				if(Objects.isNull(category.getCategoryId())) {
+					if(Objects.isNull(category.getCategoryName())) {
+						throw new DbException("A category of project " + project.getProjectName() + " has neither an ID nor a name.");
+					}
+					byName.computeIfAbsent(category.getCategoryName(), name -> new ArrayList<>()).add(category);
+				}
+			}
+		}
+		
+		if(byName.isEmpty()) {
+			return new int[0];
+		}
+		
+		try(PreparedStatement stmt = prepareInsert(conn, INSERT_CATEGORY_SQL)){
+			for(String categoryName : byName.keySet()) {
+				setParameter(stmt, 1, categoryName, String.class);
+				stmt.addBatch();
+			}
+			
+			List<Integer> categoryIds = executeBatchInsert(stmt, byName.size());
+			int index = 0;
+			
+			for(List<Category> categories : byName.values()) {
+				Integer categoryId = categoryIds.get(index++);
+				categories.forEach(category -> category.setCategoryId(categoryId));
+			}
+			return categoryIds.stream().mapToInt(Integer::intValue).toArray();
+		}
+	}
+	
+	// how far an earlier run of the named import got, if it committed anything
+	public Optional<ImportCheckpoint> fetchImportCheckpoint(String checkpointName) {
+		long start = DaoMetrics.start();
+		
+		try(Connection conn = DbConnection.getConnection()){
+			try(PreparedStatement stmt = prepareStatement(conn, FETCH_IMPORT_CHECKPOINT_SQL)){
+				setParameter(stmt, 1, checkpointName, String.class);
+				
+				try(ResultSet rs = executeQuery(stmt)){
+					return rs.next() ? Optional.of(extract(rs, ImportCheckpoint.class)) : Optional.empty();
+				}
+			}
+		} catch (SQLException e) {
+			throw new DbException(e);
+		} finally {
+			DaoMetrics.recordSince(FETCH_IMPORT_CHECKPOINT_TIME, start);
+		}
+	}
+	
+	// forgets an import checkpoint, so the next import with that name starts from the first record. Returns false if there was none
+	public boolean deleteImportCheckpoint(String checkpointName) {
+		long start = DaoMetrics.start();
+		
+		try(Connection conn = DbConnection.getConnection()){
+			try(PreparedStatement stmt = prepareStatement(conn, DELETE_IMPORT_CHECKPOINT_SQL)){
+				setParameter(stmt, 1, checkpointName, String.class);
+				return executeUpdate(stmt) == 1;
+			}
+		} catch (SQLException e) {
+			throw new DbException(e);
+		} finally {
+			DaoMetrics.recordSince(DELETE_IMPORT_CHECKPOINT_TIME, start);
+		}
+	}
+	
 	// creates a transaction with DB to show all projects & IDs stored in the project schema
 	public List<Project> fetchAllProjects() {
-		String sql = "SELECT * FROM " + PROJECT_TABLE + " ORDER BY project_name";
+		long start = DaoMetrics.start();
 		
 		// opens the connection
 		try(Connection conn = DbConnection.getConnection()){
 			startTransaction(conn);
 			
 			// prepared statement to validate & protect against SQL injection attacks
-			try(PreparedStatement stmt = conn.prepareStatement(sql)){
-				try(ResultSet rs = stmt.executeQuery()){
-					List<Project> projects = new LinkedList<>();
+			try(PreparedStatement stmt = prepareStatement(conn, FETCH_ALL_PROJECTS_SQL)){
+				try(ResultSet rs = executeQuery(stmt)){
+					List<Project> projects = new ArrayList<>();
 					
 					// loops through result set and adds each project to the projects list
 					while(rs.next()) {
@@ -97,13 +580,146 @@ public class ProjectsDao extends DaoBase {
 			
 		} catch (SQLException e) {
 			throw new DbException(e);
+		} finally {
+			DaoMetrics.recordSince(FETCH_ALL_PROJECTS_TIME, start);
+		}
+	}
+
+	/*
+	 * fetches one page of projects ordered by (project_name, project_id) using keyset pagination. The page token encodes the
+	 * name and ID of the last project on the previous page, so each page is an index range seek from that key rather than an
+	 * OFFSET scan. A null token starts from the first page
+	 */
+	public ProjectPage fetchProjectPage(String pageToken, int pageSize) {
+		if(pageSize < 1) {
+			throw new DbException("Page size must be at least 1 but was " + pageSize + ".");
+		}
+		
+		Project after = Objects.isNull(pageToken) ? null : decodePageToken(pageToken);
+		
+		long start = DaoMetrics.start();
+		
+		try(Connection conn = DbConnection.getConnection()){
+			try(PreparedStatement stmt = prepareStatement(conn, Objects.isNull(after) ? FETCH_FIRST_PAGE_SQL : FETCH_NEXT_PAGE_SQL)){
+				int parameterIndex = 1;
+				
+				if(Objects.nonNull(after)) {
+					setParameter(stmt, parameterIndex++, after.getProjectName(), String.class);
+					setParameter(stmt, parameterIndex++, after.getProjectName(), String.class);
+					setParameter(stmt, parameterIndex++, after.getProjectId(), Integer.class);
+				}
+				
+				// one extra row is requested to find out whether there is a following page
+				setParameter(stmt, parameterIndex, pageSize + 1, Integer.class);
+				
+				try(ResultSet rs = executeQuery(stmt)){
+					List<Project> projects = new ArrayList<>(pageSize);
+					boolean hasMore = false;
+					
+					while(rs.next()) {
+						if(projects.size() == pageSize) {
+							hasMore = true;
+							break;
+						}
+						projects.add(extract(rs, Project.class));
+					}
+					
+					String nextPageToken = hasMore ? encodePageToken(projects.get(projects.size() - 1)) : null;
+					return new ProjectPage(projects, nextPageToken);
+				}
+			}
+		} catch (SQLException e) {
+			throw new DbException(e);
+		} finally {
+			DaoMetrics.recordSince(FETCH_PROJECT_PAGE_TIME, start);
+		}
+	}
+	
+	// the page token is the last project's ID and name, base64 encoded so callers treat it as opaque
+	private String encodePageToken(Project last) {
+		String key = last.getProjectId() + ":" + last.getProjectName();
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(key.getBytes(StandardCharsets.UTF_8));
+	}
+	
+	private Project decodePageToken(String pageToken) {
+		try {
+			String key = new String(Base64.getUrlDecoder().decode(pageToken), StandardCharsets.UTF_8);
+			int separator = key.indexOf(':');
+			
+			Project after = new Project();
+			after.setProjectId(Integer.parseInt(key.substring(0, separator)));
+			after.setProjectName(key.substring(separator + 1));
+			return after;
+		} catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+			throw new DbException("Invalid page token: " + pageToken, e);
+		}
+	}
+
+	/*
+	 * streams every project, ordered by name, without holding the table in memory. MySQL sends the rows one at a time
+	 * (fetch size Integer.MIN_VALUE on a forward-only, read-only statement), so the stream holds a pooled connection
+	 * until it is closed and must be used in a try-with-resources block
+	 */
+	public Stream<Project> streamAllProjects() {
+		long start = DaoMetrics.start();
+		Connection conn = DbConnection.getConnection();
+		
+		try {
+			PreparedStatement stmt = prepareStatement(conn, FETCH_ALL_PROJECTS_SQL, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+			stmt.setFetchSize(Integer.MIN_VALUE);
+			ResultSet rs = executeQuery(stmt);
+			
+			// only the time to open the stream is recorded, since the caller controls how fast it is consumed
+			DaoMetrics.recordSince(STREAM_ALL_PROJECTS_TIME, start);
+			return streamRows(rs, Project.class).onClose(() -> closeAll(rs, stmt, conn));
+		} catch (Exception e) {
+			closeAll(conn);
+			throw new DbException(e);
+		}
+	}
+	
+	// wraps an open result set in a sequential stream that extracts one row per element
+	private <T> Stream<T> streamRows(ResultSet rs, Class<T> classType) {
+		Spliterator<T> rows = new Spliterators.AbstractSpliterator<T>(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+			@Override
+			public boolean tryAdvance(Consumer<? super T> action) {
+				try {
+					if(!rs.next()) {
+						return false;
+					}
+					action.accept(extract(rs, classType));
+					return true;
+				} catch (SQLException e) {
+					throw new DbException(e);
+				}
+			}
+		};
+		
+		return StreamSupport.stream(rows, false);
+	}
+	
+	// closes the result set, statement and connection behind a stream, in that order, reporting the first failure
+	private void closeAll(AutoCloseable... resources) {
+		DbException failure = null;
+		
+		for(AutoCloseable resource : resources) {
+			try {
+				resource.close();
+			} catch (Exception e) {
+				if(Objects.isNull(failure)) {
+					failure = new DbException(e);
+				}
+			}
+		}
+		
+		if(Objects.nonNull(failure)) {
+			throw failure;
 		}
 	}
 
 	// strats a transaction with the DB to retrieve all information on a selected project
 	public Optional<Project> fetchProjectById(Integer projectId) {
-		// initial query uses the project id to identify the project selected
-		String sql = "SELECT * FROM " + PROJECT_TABLE +" WHERE project_id = ?";
+		long start = DaoMetrics.start();
 		
 		// opens connection with DB
 		try(Connection conn = DbConnection.getConnection()){
@@ -112,24 +728,29 @@ public class ProjectsDao extends DaoBase {
 			try {
 				Project project = null;
 				
-				// prepared statement used to validate the input from the user
-				try(PreparedStatement stmt = conn.prepareStatement(sql)){
-					setParameter(stmt, 1, projectId, Integer.class);
+				// prepared statement used to validate the input from the user, the same ID is bound once for each of the four queries
+				try(PreparedStatement stmt = prepareStatement(conn, FETCH_PROJECT_GRAPH_SQL)){
+					for(int parameterIndex = 1; parameterIndex <= 4; parameterIndex++) {
+						setParameter(stmt, parameterIndex, projectId, Integer.class);
+					}
 					
-					// try with resource statement to grab the Project results and assign them to a Project variable (established earlier
-					try(ResultSet rs = stmt.executeQuery()){
+					execute(stmt);
+					
+					// the first result set holds the project row, if there is one
+					try(ResultSet rs = stmt.getResultSet()){
 						if(rs.next()) {
 							project = extract(rs, Project.class);
 						}
 					}
+					
+					// the remaining result sets are read in order straight into the project's Material, Step & Category lists
+					if(Objects.nonNull(project)) {
+						fetchNextResults(stmt, Material.class, project.getMaterials());
+						fetchNextResults(stmt, Step.class, project.getSteps());
+						fetchNextResults(stmt, Category.class, project.getCategories());
+					}
 				}
 				
-				// checks to make sure the Project object isn't null and adds the values from Material, Step & Categories schema
-				if(Objects.nonNull(project)) {
-					project.getMaterials().addAll(fetchMaterialsForProject(conn, projectId));
-					project.getSteps().addAll(fetchStepsForProject(conn, projectId));
-					project.getCategories().addAll(fetchCategoriesForProject(conn, projectId));
-				}
 				// commits the transaction
 				commitTransaction(conn);
 				// returns retrieved info to Service layer
@@ -142,104 +763,169 @@ public class ProjectsDao extends DaoBase {
 			}
 		} catch (SQLException e) {
 			throw new DbException(e);
+		} finally {
+			DaoMetrics.recordSince(FETCH_PROJECT_BY_ID_TIME, start);
 		}
 	}
 
-	// method grabbing info from Category schema related to the project that was selected by user, works the same as the Project, Steps and Materials fetch methods
-	private List<Category> fetchCategoriesForProject(Connection conn, Integer projectId) throws SQLException {
-		// Query includes a Join statement as it needs to include the category id reference fromt he Project Category table
-		
-		// @formatter:off
-		String sql = ""
-				+ "SELECT c.* FROM " + CATEGORY_TABLE + " c "
-				+ "JOIN " + PROJECT_CATEGORY_TABLE + " pc USING (category_id) "
-				+ "WHERE project_id = ?";
-		// @formatter:on
-		
-		try(PreparedStatement stmt = conn.prepareStatement(sql)){
-			setParameter(stmt, 1, projectId, Integer.class);
+	/*
+	 * loads the same project graph as fetchProjectById, but the materials and steps are read on two more pooled connections by the
+	 * executor while this thread reads the project row and categories, so the call takes about as long as the slowest child query.
+	 * Each connection runs a read-only REPEATABLE READ transaction and all three snapshots are opened back to back before any rows
+	 * are read. MySQL can't share one read view between sessions, so a write that commits in the few microseconds between those
+	 * START TRANSACTION statements may be seen by some of the queries and not others.
+	 * The three connections are borrowed as one reservation, so concurrent calls wait for a free set rather than each holding part of
+	 * one. Against a local server the single round trip of fetchProjectById was as fast or faster for every child list size measured
+	 * (up to 20,000 rows), so this is only worth trying when the database is remote and the child lists are very long
+	 */
+	public Optional<Project> fetchProjectByIdParallel(Integer projectId, Executor executor) {
+		long start = DaoMetrics.start();
+		List<Connection> connections = new ArrayList<>(3);
+		
+		try {
+			connections.addAll(DbConnection.getConnections(3));
 			
-			try(ResultSet rs = stmt.executeQuery()){
-				List<Category> categories = new LinkedList<>();
+			try {
+				for(Connection conn : connections) {
+					startTransaction(conn);
+					
+					try(PreparedStatement stmt = prepareStatement(conn, START_SNAPSHOT_SQL)){
+						execute(stmt);
+					}
+				}
 				
-				while(rs.next()) {
-					categories.add(extract(rs, Category.class));
+				CompletableFuture<List<Material>> materials = CompletableFuture.supplyAsync(
+						() -> fetchChildren(connections.get(1), FETCH_MATERIALS_SQL, projectId, Material.class), executor);
+				CompletableFuture<List<Step>> steps = CompletableFuture.supplyAsync(
+						() -> fetchChildren(connections.get(2), FETCH_STEPS_SQL, projectId, Step.class), executor);
+				Project project;
+				
+				try {
+					project = fetchChildren(connections.get(0), FETCH_PROJECT_SQL, projectId, Project.class).stream().findFirst().orElse(null);
+					
+					if(Objects.nonNull(project)) {
+						project.getCategories().addAll(fetchChildren(connections.get(0), FETCH_CATEGORIES_SQL, projectId, Category.class));
+					}
+				} finally {
+					// the other connections can't be released while their queries are still running
+					CompletableFuture.allOf(materials, steps).handle((ignored, failure) -> null).join();
+				}
+				
+				if(Objects.nonNull(project)) {
+					project.getMaterials().addAll(materials.join());
+					project.getSteps().addAll(steps.join());
+				}
+				
+				for(Connection conn : connections) {
+					commitTransaction(conn);
 				}
-			return categories;
+				return Optional.ofNullable(project);
 			}
-			
+			catch(Exception e) {
+				for(Connection conn : connections) {
+					rollbackTransaction(conn);
+				}
+				throw e instanceof CompletionException && Objects.nonNull(e.getCause()) ? new DbException(e.getCause()) : new DbException(e);
+			}
+		} catch (SQLException e) {
+			throw new DbException(e);
+		} finally {
+			closeAll(connections.toArray(new AutoCloseable[0]));
+			DaoMetrics.recordSince(FETCH_PROJECT_BY_ID_PARALLEL_TIME, start);
 		}
-
 	}
-
-
-	private List<Step> fetchStepsForProject(Connection conn, Integer projectId) throws SQLException {
-		String sql = "SELECT * FROM " + STEP_TABLE + " s WHERE s.project_id = ?";
-		
-		try(PreparedStatement stmt = conn.prepareStatement(sql)){
+	
+	// runs a single-parameter query for one project and extracts every row. SQL errors are rethrown unchecked so this can run in a CompletableFuture
+	private <T> List<T> fetchChildren(Connection conn, String sql, Integer projectId, Class<T> classType) {
+		try(PreparedStatement stmt = prepareStatement(conn, sql)){
 			setParameter(stmt, 1, projectId, Integer.class);
 			
-			try(ResultSet rs = stmt.executeQuery()){
-				List<Step> steps = new LinkedList<>();
+			try(ResultSet rs = executeQuery(stmt)){
+				List<T> rows = new ArrayList<>();
 				
 				while(rs.next()) {
-					steps.add(extract(rs, Step.class));
+					rows.add(extract(rs, classType));
 				}
-			return steps;
+				return rows;
 			}
-			
+		} catch (SQLException e) {
+			throw new DbException(e);
 		}
-		
 	}
 
-
-	private List<Material> fetchMaterialsForProject(Connection conn, Integer projectId) throws SQLException {
-		String sql = "SELECT * FROM " + MATERIAL_TABLE + " m WHERE m.project_id = ?";
+	// moves a multi-statement query on to its next result set and extracts every row in it
+	private <T> List<T> fetchNextResults(PreparedStatement stmt, Class<T> classType) throws SQLException {
+		return fetchNextResults(stmt, classType, new ArrayList<>());
+	}
+	
+	// as above, adding the rows to the given list so they don't have to be copied out of a temporary one
+	private <T> List<T> fetchNextResults(PreparedStatement stmt, Class<T> classType, List<T> rows) throws SQLException {
+		if(!stmt.getMoreResults()) {
+			throw new SQLException("Expected a result set for " + classType.getSimpleName() + " rows.");
+		}
 		
-		try(PreparedStatement stmt = conn.prepareStatement(sql)){
-			setParameter(stmt, 1, projectId, Integer.class);
-			
-			try(ResultSet rs = stmt.executeQuery()){
-				List<Material> materials = new LinkedList<>();
-				
-				while(rs.next()) {
-					materials.add(extract(rs, Material.class));
-				}
-			return materials;
+		try(ResultSet rs = stmt.getResultSet()){
+			while(rs.next()) {
+				rows.add(extract(rs, classType));
 			}
-			
+			return rows;
 		}
 	}
 	
-	//performs the update SQL transaction with SQL statement modified by the user input and returns true or false if the update was done successfully
-	public boolean modifyProjectDetails(Project project) {
-		// @formatter:off
-		String sql =""
-				+"UPDATE " + PROJECT_TABLE + " SET "
-				+"project_name = ?, "
-				+"estimated_hours = ?, "
-				+"actual_hours = ?, "
-				+"difficulty = ?, "
-				+"notes = ? "
-				+"WHERE project_id = ?";
-		// @formatter:on
+	// loads fully-populated projects for the given IDs, in the order requested. Missing IDs are skipped and each chunk of IDs costs a single round trip
+	public List<Project> fetchProjectsByIds(Collection<Integer> projectIds) {
+		int[] ids = distinctIds(projectIds);
+		int numIds = ids.length;
+		List<Project> projects = new ArrayList<>(numIds);
+		IntIntMap indexById = new IntIntMap(numIds);
+		
+		long start = DaoMetrics.start();
 		
 		try(Connection conn = DbConnection.getConnection()){
 			startTransaction(conn);
 			
-			// prepared statement is used to validate all inputs can be used as parameters in the SQL statement
-			try(PreparedStatement stmt = conn.prepareStatement(sql)){
-				setParameter(stmt, 1, project.getProjectName(), String.class);
-				setParameter(stmt, 2, project.getEstimatedHours(), BigDecimal.class);
-				setParameter(stmt, 3, project.getActualHours(), BigDecimal.class);
-				setParameter(stmt, 4, project.getDifficulty(), Integer.class);
-				setParameter(stmt, 5, project.getNotes(), String.class);
-				setParameter(stmt, 6, project.getProjectId(), Integer.class);
+			try {
+				for(int from = 0; from < numIds; from += MAX_IDS_PER_QUERY) {
+					int to = Math.min(from + MAX_IDS_PER_QUERY, numIds);
+					int inListSize = inListSize(to - from);
+					String in = "(" + String.join(", ", Collections.nCopies(inListSize, "?")) + ")";
+					
+					// @formatter:off
+					String sql = ""
+							+ "SELECT * FROM " + PROJECT_TABLE + " WHERE project_id IN " + in + "; "
+							+ "SELECT * FROM " + MATERIAL_TABLE + " WHERE project_id IN " + in + "; "
+							+ "SELECT * FROM " + STEP_TABLE + " WHERE project_id IN " + in + " ORDER BY project_id, step_order, step_id; "
+							+ "SELECT pc.project_id, c.* FROM " + CATEGORY_TABLE + " c "
+							+ "JOIN " + PROJECT_CATEGORY_TABLE + " pc USING (category_id) "
+							+ "WHERE pc.project_id IN " + in;
+					// @formatter:on
+					
+					try(PreparedStatement stmt = prepareStatement(conn, sql)){
+						// the chunk's IDs are bound once for each of the four IN lists
+						int parameterIndex = 1;
+						
+						for(int query = 0; query < 4; query++) {
+							parameterIndex = setInList(stmt, parameterIndex, ids, from, to, inListSize);
+						}
+						
+						execute(stmt);
+						fetchProjectGraphs(stmt, projects, indexById);
+					}
+				}
 				
-				boolean updated = stmt.executeUpdate() == 1;
 				commitTransaction(conn);
 				
-				return updated;
+				// the projects come back in database order, so they are put back in the order requested
+				List<Project> ordered = new ArrayList<>(projects.size());
+				
+				for(int index = 0; index < numIds; index++) {
+					int position = indexById.get(ids[index]);
+					
+					if(position != IntIntMap.MISSING) {
+						ordered.add(projects.get(position));
+					}
+				}
+				return ordered;
 			}
 			catch(Exception e) {
 				rollbackTransaction(conn);
@@ -247,31 +933,1269 @@ public class ProjectsDao extends DaoBase {
 			}
 		} catch (SQLException e) {
 			throw new DbException(e);
+		} finally {
+			DaoMetrics.recordSince(FETCH_PROJECTS_BY_IDS_TIME, start);
 		}
 	}
 	
-	//performs the delete SQL transaction with SQL statement whose ID is based on user input. Returns true or false if the delete was done successfully
-	public boolean deleteProject(Integer projectId) {
-		String sql = "DELETE FROM " + PROJECT_TABLE + " WHERE project_id = ?";
+	// loads every project with its materials, steps and categories using four queries sent in a single round trip, ordered by project name
+	public List<Project> fetchAllProjectsWithChildren() {
+		long start = DaoMetrics.start();
 		
 		try(Connection conn = DbConnection.getConnection()){
 			startTransaction(conn);
 			
-			try(PreparedStatement stmt = conn.prepareStatement(sql)){
-				setParameter(stmt, 1, projectId, Integer.class);
+			try(PreparedStatement stmt = prepareStatement(conn, FETCH_ALL_PROJECT_GRAPHS_SQL)){
+				List<Project> projects = new ArrayList<>();
 				
-				boolean deleted = stmt.executeUpdate() == 1;
+				execute(stmt);
+				fetchProjectGraphs(stmt, projects, new IntIntMap());
 				
 				commitTransaction(conn);
-				return deleted;
+				return projects;
 			}
 			catch(Exception e) {
 				rollbackTransaction(conn);
 				throw new DbException(e);
 			}
-			
 		} catch (SQLException e) {
 			throw new DbException(e);
+		} finally {
+			DaoMetrics.recordSince(FETCH_ALL_PROJECTS_WITH_CHILDREN_TIME, start);
+		}
+	}
+	
+	/*
+	 * streams every project with its materials, steps and categories, ordered by project ID, in constant memory however large the
+	 * catalog is. The four tables are read by four streaming queries sorted by project_id, and the child rows are merged onto each
+	 * project as the project rows go by, so the whole catalog takes four queries rather than one per project. MySQL allows one streaming
+	 * result set per connection, so each query runs on its own pooled connection; the snapshots are opened back to back as in
+	 * fetchProjectByIdParallel, and child rows whose project isn't in the project snapshot are skipped. The four connections are
+	 * borrowed together and held until the stream is closed, so it must be used in a try-with-resources block
+	 */
+	public Stream<Project> streamAllProjectGraphs() {
+		long start = DaoMetrics.start();
+		List<AutoCloseable> resources = new ArrayList<>();
+		
+		try {
+			// borrowed as one reservation, since they are held for the whole export
+			List<Connection> connections = DbConnection.getConnections(4);
+			resources.addAll(connections);
+			
+			for(Connection conn : connections) {
+				startTransaction(conn);
+				
+				try(PreparedStatement stmt = prepareStatement(conn, START_SNAPSHOT_SQL)){
+					execute(stmt);
+				}
+			}
+			
+			ResultSet projects = streamQuery(connections.get(0), EXPORT_PROJECTS_SQL, resources);
+			ProjectIdCursor<Material> materials = new ProjectIdCursor<>(streamQuery(connections.get(1), EXPORT_MATERIALS_SQL, resources), Material.class);
+			ProjectIdCursor<Step> steps = new ProjectIdCursor<>(streamQuery(connections.get(2), EXPORT_STEPS_SQL, resources), Step.class);
+			ProjectIdCursor<Category> categories = new ProjectIdCursor<>(streamQuery(connections.get(3), EXPORT_CATEGORIES_SQL, resources), Category.class);
+			
+			Spliterator<Project> graphs = new Spliterators.AbstractSpliterator<Project>(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+				@Override
+				public boolean tryAdvance(Consumer<? super Project> action) {
+					try {
+						if(!projects.next()) {
+							return false;
+						}
+						
+						Project project = extract(projects, Project.class);
+						int projectId = project.getProjectId();
+						
+						materials.moveTo(projectId, project.getMaterials());
+						steps.moveTo(projectId, project.getSteps());
+						categories.moveTo(projectId, project.getCategories());
+						
+						action.accept(project);
+						return true;
+					} catch (SQLException e) {
+						throw new DbException(e);
+					}
+				}
+			};
+			
+			// as with streamAllProjects, only the time to open the stream is recorded
+			DaoMetrics.recordSince(STREAM_ALL_PROJECT_GRAPHS_TIME, start);
+			
+			// result sets first, then statements, then the connections, whose release rolls back the read-only snapshots
+			Collections.reverse(resources);
+			AutoCloseable[] closeOrder = resources.toArray(new AutoCloseable[0]);
+			return StreamSupport.stream(graphs, false).onClose(() -> closeAll(closeOrder));
+		} catch (Exception e) {
+			Collections.reverse(resources);
+			
+			try {
+				closeAll(resources.toArray(new AutoCloseable[0]));
+			} catch (DbException suppressed) {
+				e.addSuppressed(suppressed);
+			}
+			throw e instanceof DbException ? (DbException)e : new DbException(e);
+		}
+	}
+	
+	// opens a forward-only query whose rows MySQL sends one at a time, adding the statement and result set to the resources to close
+	private ResultSet streamQuery(Connection conn, String sql, List<AutoCloseable> resources) throws SQLException {
+		PreparedStatement stmt = prepareStatement(conn, sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+		resources.add(stmt);
+		stmt.setFetchSize(Integer.MIN_VALUE);
+		
+		ResultSet rs = executeQuery(stmt);
+		resources.add(rs);
+		return rs;
+	}
+	
+	// a streamed child table sorted by project_id, read one row ahead so its rows can be merged onto the project being exported
+	private class ProjectIdCursor<T> {
+		private final ResultSet rs;
+		private final Class<T> classType;
+		// project_id of the row under the cursor, Integer.MAX_VALUE once the rows run out
+		private int projectId;
+		
+		private ProjectIdCursor(ResultSet rs, Class<T> classType) throws SQLException {
+			this.rs = rs;
+			this.classType = classType;
+			advance();
+		}
+		
+		// adds the rows of the given project; rows of lower project IDs belong to projects the export didn't see and are skipped
+		private void moveTo(int projectId, List<T> rows) throws SQLException {
+			while(this.projectId < projectId) {
+				advance();
+			}
+			
+			while(this.projectId == projectId) {
+				rows.add(extract(rs, classType));
+				advance();
+			}
+		}
+		
+		private void advance() throws SQLException {
+			projectId = rs.next() ? rs.getInt("project_id") : Integer.MAX_VALUE;
+		}
+	}
+	
+	// the smallest padded IN list length that holds the given number of IDs
+	private int inListSize(int numIds) {
+		for(int size : IN_LIST_SIZES) {
+			if(numIds <= size) {
+				return size;
+			}
+		}
+		throw new IllegalArgumentException("At most " + MAX_IDS_PER_QUERY + " IDs fit in one IN list but there were " + numIds + ".");
+	}
+	
+	// binds ids[from, to) to an IN list of inListSize parameters, repeating the last ID in the padding, and returns the next parameter index
+	private int setInList(PreparedStatement stmt, int parameterIndex, int[] ids, int from, int to, int inListSize) throws SQLException {
+		for(int index = 0; index < inListSize; index++) {
+			setParameter(stmt, parameterIndex++, ids[Math.min(from + index, to - 1)], Integer.class);
+		}
+		return parameterIndex;
+	}
+	
+	// copies the IDs into an int array, dropping nulls and duplicates and keeping the first occurrence of each
+	private int[] distinctIds(Collection<Integer> projectIds) {
+		IntIntMap seen = new IntIntMap(projectIds.size());
+		int[] ids = new int[projectIds.size()];
+		int numIds = 0;
+		
+		for(Integer projectId : projectIds) {
+			if(Objects.nonNull(projectId) && seen.putIfAbsent(projectId, numIds) == IntIntMap.MISSING) {
+				ids[numIds++] = projectId;
+			}
+		}
+		return Arrays.copyOf(ids, numIds);
+	}
+	
+	/*
+	 * reads the four result sets of a project graph query (projects, materials, steps, then categories prefixed with their project_id)
+	 * and stitches the children onto their parent projects in memory. Projects are appended to the list and their positions recorded
+	 * by ID in indexById. The child rows are counted per project first, so each child list is allocated once at its final size
+	 */
+	private void fetchProjectGraphs(PreparedStatement stmt, List<Project> projects, IntIntMap indexById) throws SQLException {
+		int first = projects.size();
+		
+		try(ResultSet rs = stmt.getResultSet()){
+			while(rs.next()) {
+				Project project = extract(rs, Project.class);
+				indexById.put(project.getProjectId(), projects.size());
+				projects.add(project);
+			}
+		}
+		
+		List<Material> materials = fetchNextResults(stmt, Material.class);
+		List<Step> steps = fetchNextResults(stmt, Step.class);
+		List<Category> categories = new ArrayList<>();
+		int[] categoryOwners = new int[16];
+		
+		if(!stmt.getMoreResults()) {
+			throw new SQLException("Expected a result set for Category rows.");
+		}
+		
+		try(ResultSet rs = stmt.getResultSet()){
+			while(rs.next()) {
+				if(categories.size() == categoryOwners.length) {
+					categoryOwners = Arrays.copyOf(categoryOwners, categoryOwners.length * 2);
+				}
+				
+				categoryOwners[categories.size()] = indexById.get(rs.getInt(1));
+				categories.add(extract(rs, Category.class));
+			}
+		}
+		
+		// each child's project position is looked up once and used both to count the children and to add them
+		int[] materialOwners = ownerPositions(materials, Material::getProjectId, indexById);
+		int[] stepOwners = ownerPositions(steps, Step::getProjectId, indexById);
+		
+		int numProjects = projects.size() - first;
+		int[] numMaterials = countPerOwner(materialOwners, materials.size(), first, numProjects);
+		int[] numSteps = countPerOwner(stepOwners, steps.size(), first, numProjects);
+		int[] numCategories = countPerOwner(categoryOwners, categories.size(), first, numProjects);
+		
+		for(int index = 0; index < numProjects; index++) {
+			projects.get(first + index).ensureChildCapacity(numMaterials[index], numSteps[index], numCategories[index]);
+		}
+		
+		for(int index = 0; index < materials.size(); index++) {
+			projects.get(materialOwners[index]).getMaterials().add(materials.get(index));
+		}
+		
+		for(int index = 0; index < steps.size(); index++) {
+			projects.get(stepOwners[index]).getSteps().add(steps.get(index));
+		}
+		
+		for(int index = 0; index < categories.size(); index++) {
+			projects.get(categoryOwners[index]).getCategories().add(categories.get(index));
+		}
+	}
+	
+	// maps each child row to the list position of its project
+	private <T> int[] ownerPositions(List<T> children, ToIntFunction<T> projectId, IntIntMap indexById) {
+		int[] owners = new int[children.size()];
+		
+		for(int index = 0; index < owners.length; index++) {
+			owners[index] = indexById.get(projectId.applyAsInt(children.get(index)));
+		}
+		return owners;
+	}
+	
+	// counts the children of each project read by the current query, indexed from the first project it returned
+	private int[] countPerOwner(int[] owners, int numChildren, int first, int numProjects) {
+		int[] counts = new int[numProjects];
+		
+		for(int index = 0; index < numChildren; index++) {
+			counts[owners[index] - first]++;
+		}
+		return counts;
+	}
+	
+	/*
+	 * performs the update SQL transaction with SQL statement modified by the user input and returns true or false if the update was done successfully.
+	 * If the project carries a version, the row is only updated while it still has that version (compare-and-set), so false also means someone else
+	 * changed it first. A project without a version overwrites the row unconditionally. On success the project is given its new version
+	 */
+	public boolean modifyProjectDetails(Project project) {
+		boolean checkVersion = Objects.nonNull(project.getVersion());
+		
+		long start = DaoMetrics.start();
+		
+		try(Connection conn = DbConnection.getConnection()){
+			startTransaction(conn);
+			
+			// prepared statement is used to validate all inputs can be used as parameters in the SQL statement
+			try(PreparedStatement stmt = prepareStatement(conn, checkVersion ? MODIFY_PROJECT_IF_VERSION_SQL : MODIFY_PROJECT_SQL)){
+				setParameter(stmt, 1, project.getProjectName(), String.class);
+				setParameter(stmt, 2, project.getEstimatedHours(), BigDecimal.class);
+				setParameter(stmt, 3, project.getActualHours(), BigDecimal.class);
+				setParameter(stmt, 4, project.getDifficulty(), Integer.class);
+				setParameter(stmt, 5, project.getNotes(), String.class);
+				setParameter(stmt, 6, project.getProjectId(), Integer.class);
+				
+				if(checkVersion) {
+					setParameter(stmt, 7, project.getVersion(), Integer.class);
+				}
+				
+				boolean updated = executeUpdate(stmt) == 1;
+				
+				// the version we matched is known, otherwise it is read back inside the same transaction
+				if(updated) {
+					project.setVersion(checkVersion ? project.getVersion() + 1 : fetchVersion(conn, project.getProjectId()));
+					recordChanges(conn, ProjectChange.PROJECT, ProjectChange.UPSERT, project.getProjectId());
+				}
+				
+				commitTransaction(conn);
+				
+				return updated;
+			}
+			catch(Exception e) {
+				rollbackTransaction(conn);
+				throw new DbException(e);
+			}
+		} catch (SQLException e) {
+			throw new DbException(e);
+		} finally {
+			DaoMetrics.recordSince(MODIFY_PROJECT_DETAILS_TIME, start);
+		}
+	}
+	
+	/*
+	 * writes only the columns whose values differ between original (the project as it was read) and modified. Each changed column is
+	 * compared with its original value in the WHERE clause, so concurrent writers that change different columns never conflict, and
+	 * false is returned only if the project is gone or one of the same columns was changed by someone else. Nothing is sent when no
+	 * column changed. On success modified is given the project's new version
+	 */
+	public boolean modifyChangedProjectDetails(Project original, Project modified) {
+		List<ColumnChange> changes = new ArrayList<>(5);
+		addChange(changes, "project_name", original.getProjectName(), modified.getProjectName(), String.class);
+		addChange(changes, "estimated_hours", original.getEstimatedHours(), modified.getEstimatedHours(), BigDecimal.class);
+		addChange(changes, "actual_hours", original.getActualHours(), modified.getActualHours(), BigDecimal.class);
+		addChange(changes, "difficulty", original.getDifficulty(), modified.getDifficulty(), Integer.class);
+		addChange(changes, "notes", original.getNotes(), modified.getNotes(), String.class);
+		
+		if(changes.isEmpty()) {
+			modified.setVersion(original.getVersion());
+			return true;
+		}
+		
+		// the statement text depends on which columns changed, so it is prepared uncached rather than crowding out the constant statements
+		StringBuilder sql = new StringBuilder("UPDATE " + PROJECT_TABLE + " SET ");
+		
+		for(ColumnChange change : changes) {
+			sql.append(change.column).append(" = ?, ");
+		}
+		
+		sql.append("version = version + 1 WHERE project_id = ?");
+		
+		for(ColumnChange change : changes) {
+			sql.append(" AND ").append(change.column).append(" <=> ?");
+		}
+		
+		long start = DaoMetrics.start();
+		
+		try(Connection conn = DbConnection.getConnection()){
+			startTransaction(conn);
+			
+			try(PreparedStatement stmt = prepareUncachedStatement(conn, sql.toString())){
+				int parameterIndex = 1;
+				
+				for(ColumnChange change : changes) {
+					setParameter(stmt, parameterIndex++, change.after, change.type);
+				}
+				
+				setParameter(stmt, parameterIndex++, original.getProjectId(), Integer.class);
+				
+				for(ColumnChange change : changes) {
+					setParameter(stmt, parameterIndex++, change.before, change.type);
+				}
+				
+				boolean updated = executeUpdate(stmt) == 1;
+				
+				if(updated) {
+					modified.setVersion(fetchVersion(conn, original.getProjectId()));
+					recordChanges(conn, ProjectChange.PROJECT, ProjectChange.UPSERT, original.getProjectId());
+				}
+				
+				commitTransaction(conn);
+				return updated;
+			}
+			catch(Exception e) {
+				rollbackTransaction(conn);
+				throw new DbException(e);
+			}
+		} catch (SQLException e) {
+			throw new DbException(e);
+		} finally {
+			DaoMetrics.recordSince(MODIFY_CHANGED_PROJECT_DETAILS_TIME, start);
+		}
+	}
+	
+	// a column whose value differs between the project as read and as modified
+	private static class ColumnChange {
+		private final String column;
+		private final Object before;
+		private final Object after;
+		private final Class<?> type;
+		
+		private ColumnChange(String column, Object before, Object after, Class<?> type) {
+			this.column = column;
+			this.before = before;
+			this.after = after;
+			this.type = type;
+		}
+	}
+	
+	private void addChange(List<ColumnChange> changes, String column, Object before, Object after, Class<?> type) {
+		if(!Objects.equals(before, after)) {
+			changes.add(new ColumnChange(column, before, after, type));
+		}
+	}
+	
+	// returns the current version of a project, or empty if it does not exist. Used to tell a version conflict from a missing project
+	public Optional<Integer> fetchProjectVersion(Integer projectId) {
+		long start = DaoMetrics.start();
+		
+		try(Connection conn = DbConnection.getConnection()){
+			return Optional.ofNullable(fetchVersion(conn, projectId));
+		} catch (SQLException e) {
+			throw new DbException(e);
+		} finally {
+			DaoMetrics.recordSince(FETCH_PROJECT_VERSION_TIME, start);
+		}
+	}
+	
+	private Integer fetchVersion(Connection conn, Integer projectId) throws SQLException {
+		try(PreparedStatement stmt = prepareStatement(conn, FETCH_PROJECT_VERSION_SQL)){
+			setParameter(stmt, 1, projectId, Integer.class);
+			
+			try(ResultSet rs = executeQuery(stmt)){
+				return rs.next() ? rs.getInt(1) : null;
+			}
+		}
+	}
+	
+	//performs the delete SQL transaction with SQL statement whose ID is based on user input. Returns true or false if the delete was done successfully
+	public boolean deleteProject(Integer projectId) {
+		long start = DaoMetrics.start();
+		
+		try(Connection conn = DbConnection.getConnection()){
+			startTransaction(conn);
+			
+			try(PreparedStatement stmt = prepareStatement(conn, DELETE_PROJECT_SQL)){
+				setParameter(stmt, 1, projectId, Integer.class);
+				
+				boolean deleted = executeUpdate(stmt) == 1;
+				
+				if(deleted) {
+					recordChanges(conn, ProjectChange.PROJECT, ProjectChange.DELETE, projectId);
+				}
+				
+				commitTransaction(conn);
+				return deleted;
+			}
+			catch(Exception e) {
+				rollbackTransaction(conn);
+				throw new DbException(e);
+			}
+			
+		} catch (SQLException e) {
+			throw new DbException(e);
+		} finally {
+			DaoMetrics.recordSince(DELETE_PROJECT_TIME, start);
+		}
+	}
+	
+	/*
+	 * deletes the given projects in chunks of chunkSize (at most MAX_IDS_PER_QUERY), each chunk in its own short transaction so locks
+	 * and undo logs stay small. The materials, steps and category links of a chunk are deleted before its projects, all four statements
+	 * in one round trip, so the rows removed from every table can be counted. If a chunk fails it is rolled back and a DbException is
+	 * thrown; chunks before it stay deleted. IDs that don't exist are ignored
+	 */
+	public PurgeResult deleteProjects(Collection<Integer> projectIds, int chunkSize) {
+		return deleteProjects(distinctIds(projectIds), chunkSize);
+	}
+	
+	/*
+	 * deletes every project matching the filter, in chunks as above. The matching IDs are selected first, so projects that start to
+	 * match while the purge is running are left alone
+	 */
+	public PurgeResult deleteProjects(ProjectFilter filter, int chunkSize) {
+		return deleteProjects(fetchProjectIds(filter), chunkSize);
+	}
+	
+	private PurgeResult deleteProjects(int[] ids, int chunkSize) {
+		if(chunkSize < 1) {
+			throw new DbException("Chunk size must be at least 1 but was " + chunkSize + ".");
+		}
+		
+		int idsPerChunk = Math.min(chunkSize, MAX_IDS_PER_QUERY);
+		int projects = 0;
+		int materials = 0;
+		int steps = 0;
+		int projectCategories = 0;
+		
+		long start = DaoMetrics.start();
+		
+		try(Connection conn = DbConnection.getConnection()){
+			for(int from = 0; from < ids.length; from += idsPerChunk) {
+				int to = Math.min(from + idsPerChunk, ids.length);
+				int inListSize = inListSize(to - from);
+				String in = "(" + String.join(", ", Collections.nCopies(inListSize, "?")) + ")";
+				
+				// @formatter:off
+				String sql = ""
+						+ "SELECT project_id FROM " + PROJECT_TABLE + " WHERE project_id IN " + in + " FOR UPDATE; "
+						+ "DELETE FROM " + PROJECT_CATEGORY_TABLE + " WHERE project_id IN " + in + "; "
+						+ "DELETE FROM " + MATERIAL_TABLE + " WHERE project_id IN " + in + "; "
+						+ "DELETE FROM " + STEP_TABLE + " WHERE project_id IN " + in + "; "
+						+ "DELETE FROM " + PROJECT_TABLE + " WHERE project_id IN " + in;
+				// @formatter:on
+				
+				startTransaction(conn);
+				
+				try(PreparedStatement stmt = prepareStatement(conn, sql)){
+					// the chunk's IDs are bound once for each of the five IN lists
+					int parameterIndex = 1;
+					
+					for(int query = 0; query < 5; query++) {
+						parameterIndex = setInList(stmt, parameterIndex, ids, from, to, inListSize);
+					}
+					
+					execute(stmt);
+					
+					// the locked project rows are the ones the deletes below remove, so only those are logged
+					int[] deletedIds;
+					
+					try(ResultSet rs = stmt.getResultSet()){
+						deletedIds = readIds(rs);
+					}
+					
+					int deletedProjectCategories = nextUpdateCount(stmt);
+					int deletedMaterials = nextUpdateCount(stmt);
+					int deletedSteps = nextUpdateCount(stmt);
+					int deletedProjects = nextUpdateCount(stmt);
+					
+					recordChanges(conn, ProjectChange.PROJECT, ProjectChange.DELETE, deletedIds);
+					
+					commitTransaction(conn);
+					
+					projectCategories += deletedProjectCategories;
+					materials += deletedMaterials;
+					steps += deletedSteps;
+					projects += deletedProjects;
+				}
+				catch(Exception e) {
+					rollbackTransaction(conn);
+					throw new DbException(e);
+				}
+			}
+			
+			return new PurgeResult(projects, materials, steps, projectCategories);
+		} catch (SQLException e) {
+			throw new DbException(e);
+		} finally {
+			DaoMetrics.recordSince(DELETE_PROJECTS_TIME, start);
+		}
+	}
+	
+	// moves a multi-statement update on to its next statement and returns the number of rows it changed
+	private int nextUpdateCount(PreparedStatement stmt) throws SQLException {
+		stmt.getMoreResults();
+		int count = stmt.getUpdateCount();
+		
+		if(count < 0) {
+			throw new SQLException("Expected an update count.");
+		}
+		return count;
+	}
+	
+	// selects the IDs of the projects matching the filter, in ID order so chunked deletes walk the primary key
+	private int[] fetchProjectIds(ProjectFilter filter) {
+		StringBuilder sql = new StringBuilder("SELECT p.project_id FROM " + PROJECT_TABLE + " p");
+		List<Integer> parameters = new ArrayList<>(2);
+		
+		if(Objects.nonNull(filter.getCategoryId())) {
+			sql.append(" JOIN " + PROJECT_CATEGORY_TABLE + " pc ON pc.project_id = p.project_id AND pc.category_id = ?");
+			parameters.add(filter.getCategoryId());
+		}
+		
+		if(Objects.nonNull(filter.getDifficulty())) {
+			sql.append(" WHERE p.difficulty = ?");
+			parameters.add(filter.getDifficulty());
+		}
+		
+		sql.append(" ORDER BY p.project_id");
+		
+		try(Connection conn = DbConnection.getConnection(); PreparedStatement stmt = prepareUncachedStatement(conn, sql.toString())){
+			for(int index = 0; index < parameters.size(); index++) {
+				setParameter(stmt, index + 1, parameters.get(index), Integer.class);
+			}
+			
+			try(ResultSet rs = executeQuery(stmt)){
+				int[] ids = new int[16];
+				int numIds = 0;
+				
+				while(rs.next()) {
+					if(numIds == ids.length) {
+						ids = Arrays.copyOf(ids, ids.length * 2);
+					}
+					ids[numIds++] = rs.getInt(1);
+				}
+				return Arrays.copyOf(ids, numIds);
+			}
+		} catch (SQLException e) {
+			throw new DbException(e);
+		}
+	}
+	
+	// adds a material to the project given by its projectId and assigns the generated material ID
+	public Material insertMaterial(Material material) {
+		long start = DaoMetrics.start();
+		
+		try(Connection conn = DbConnection.getConnection()){
+			startTransaction(conn);
+			
+			try(PreparedStatement stmt = prepareInsert(conn, INSERT_MATERIAL_SQL)){
+				setParameter(stmt, 1, material.getProjectId(), Integer.class);
+				setParameter(stmt, 2, material.getMaterialName(), String.class);
+				setParameter(stmt, 3, material.getNumRequired(), Integer.class);
+				setParameter(stmt, 4, material.getCost(), BigDecimal.class);
+				
+				Integer materialId = executeInsert(stmt);
+				recordChanges(conn, ProjectChange.PROJECT, ProjectChange.UPSERT, material.getProjectId());
+				commitTransaction(conn);
+				
+				material.setMaterialId(materialId);
+				return material;
+			}
+			catch(Exception e) {
+				rollbackTransaction(conn);
+				throw new DbException(e);
+			}
+		} catch (SQLException e) {
+			throw new DbException(e);
+		} finally {
+			DaoMetrics.recordSince(INSERT_MATERIAL_TIME, start);
+		}
+	}
+	
+	// updates a material's name, quantity and cost. Returns false if the material does not exist in the material's project
+	public boolean modifyMaterial(Material material) {
+		long start = DaoMetrics.start();
+		
+		try(Connection conn = DbConnection.getConnection()){
+			startTransaction(conn);
+			
+			try(PreparedStatement stmt = prepareStatement(conn, MODIFY_MATERIAL_SQL)){
+				setParameter(stmt, 1, material.getMaterialName(), String.class);
+				setParameter(stmt, 2, material.getNumRequired(), Integer.class);
+				setParameter(stmt, 3, material.getCost(), BigDecimal.class);
+				setParameter(stmt, 4, material.getMaterialId(), Integer.class);
+				setParameter(stmt, 5, material.getProjectId(), Integer.class);
+				
+				boolean updated = executeUpdate(stmt) == 1;
+				
+				if(updated) {
+					recordChanges(conn, ProjectChange.PROJECT, ProjectChange.UPSERT, material.getProjectId());
+				}
+				commitTransaction(conn);
+				return updated;
+			}
+			catch(Exception e) {
+				rollbackTransaction(conn);
+				throw new DbException(e);
+			}
+		} catch (SQLException e) {
+			throw new DbException(e);
+		} finally {
+			DaoMetrics.recordSince(MODIFY_MATERIAL_TIME, start);
+		}
+	}
+	
+	public boolean deleteMaterial(Integer projectId, Integer materialId) {
+		return deleteChild(DELETE_MATERIAL_TIME, DELETE_MATERIAL_SQL, projectId, materialId);
+	}
+	
+	/*
+	 * appends a step to the end of the project given by its projectId. Its step_order is the last step's plus STEP_ORDER_GAP, so no
+	 * other step is touched and later inserts or moves have room in between
+	 */
+	public Step insertStep(Step step) {
+		return insertStep(step, null, INSERT_STEP_TIME, true);
+	}
+	
+	// inserts a step directly after afterStepId, or first if afterStepId is null, giving it a step_order between its neighbors
+	public Step insertStepAfter(Step step, Integer afterStepId) {
+		return insertStep(step, afterStepId, INSERT_STEP_AFTER_TIME, false);
+	}
+	
+	private Step insertStep(Step step, Integer afterStepId, Histogram histogram, boolean append) {
+		long start = DaoMetrics.start();
+		
+		try(Connection conn = DbConnection.getConnection()){
+			startTransaction(conn);
+			
+			try {
+				lockProject(conn, step.getProjectId());
+				
+				// no step has ID 0, so no step is left out of the neighbor lookups
+				int stepOrder = append ? lastStepOrder(conn, step.getProjectId()) : stepOrderAfter(conn, step.getProjectId(), afterStepId, 0);
+				
+				try(PreparedStatement stmt = prepareInsert(conn, INSERT_STEP_SQL)){
+					setParameter(stmt, 1, step.getProjectId(), Integer.class);
+					setParameter(stmt, 2, step.getStepText(), String.class);
+					setParameter(stmt, 3, stepOrder, Integer.class);
+					
+					Integer stepId = executeInsert(stmt);
+					recordChanges(conn, ProjectChange.PROJECT, ProjectChange.UPSERT, step.getProjectId());
+					commitTransaction(conn);
+					
+					step.setStepId(stepId);
+					step.setStepOrder(stepOrder);
+					return step;
+				}
+			}
+			catch(Exception e) {
+				rollbackTransaction(conn);
+				throw e instanceof DbException dbException ? dbException : new DbException(e);
+			}
+		} catch (SQLException e) {
+			throw new DbException(e);
+		} finally {
+			DaoMetrics.recordSince(histogram, start);
+		}
+	}
+	
+	// updates a step's text. Its position is changed with moveStep. Returns false if the step does not exist in the step's project
+	public boolean modifyStep(Step step) {
+		long start = DaoMetrics.start();
+		
+		try(Connection conn = DbConnection.getConnection()){
+			startTransaction(conn);
+			
+			try(PreparedStatement stmt = prepareStatement(conn, MODIFY_STEP_SQL)){
+				setParameter(stmt, 1, step.getStepText(), String.class);
+				setParameter(stmt, 2, step.getStepId(), Integer.class);
+				setParameter(stmt, 3, step.getProjectId(), Integer.class);
+				
+				boolean updated = executeUpdate(stmt) == 1;
+				
+				if(updated) {
+					recordChanges(conn, ProjectChange.PROJECT, ProjectChange.UPSERT, step.getProjectId());
+				}
+				commitTransaction(conn);
+				return updated;
+			}
+			catch(Exception e) {
+				rollbackTransaction(conn);
+				throw new DbException(e);
+			}
+		} catch (SQLException e) {
+			throw new DbException(e);
+		} finally {
+			DaoMetrics.recordSince(MODIFY_STEP_TIME, start);
+		}
+	}
+	
+	/*
+	 * moves a step directly after afterStepId, or to the front if afterStepId is null. Only the moved step's row is updated: it takes
+	 * the midpoint of its new neighbors' step_order. When two neighbors are adjacent integers the project's steps are renumbered once
+	 * with fresh gaps. Returns false if the step does not exist in the project
+	 */
+	public boolean moveStep(Integer projectId, Integer stepId, Integer afterStepId) {
+		if(Objects.isNull(projectId) || Objects.isNull(stepId)) {
+			throw new IllegalArgumentException("A project ID and a step ID are required to move a step.");
+		}
+		
+		long start = DaoMetrics.start();
+		
+		try(Connection conn = DbConnection.getConnection()){
+			startTransaction(conn);
+			
+			try {
+				lockProject(conn, projectId);
+				
+				if(Objects.isNull(fetchInteger(conn, FETCH_STEP_ORDER_SQL, stepId, projectId))) {
+					commitTransaction(conn);
+					return false;
+				}
+				
+				// moving a step after itself leaves it where it is
+				if(!stepId.equals(afterStepId)) {
+					try(PreparedStatement stmt = prepareStatement(conn, MOVE_STEP_SQL)){
+						setParameter(stmt, 1, stepOrderAfter(conn, projectId, afterStepId, stepId), Integer.class);
+						setParameter(stmt, 2, stepId, Integer.class);
+						setParameter(stmt, 3, projectId, Integer.class);
+						executeUpdate(stmt);
+					}
+					
+					recordChanges(conn, ProjectChange.PROJECT, ProjectChange.UPSERT, projectId);
+				}
+				
+				commitTransaction(conn);
+				return true;
+			}
+			catch(Exception e) {
+				rollbackTransaction(conn);
+				// a missing project or neighbor step is already reported as a DbException
+				throw e instanceof DbException dbException ? dbException : new DbException(e);
+			}
+		} catch (SQLException e) {
+			throw new DbException(e);
+		} finally {
+			DaoMetrics.recordSince(MOVE_STEP_TIME, start);
+		}
+	}
+	
+	// deleting a step leaves a gap in step_order, which later inserts and moves can use; the other steps are not renumbered
+	public boolean deleteStep(Integer projectId, Integer stepId) {
+		return deleteChild(DELETE_STEP_TIME, DELETE_STEP_SQL, projectId, stepId);
+	}
+	
+	// locks the project row until the transaction ends, so concurrent reorders of the same project's steps can't pick the same step_order
+	private void lockProject(Connection conn, Integer projectId) throws SQLException {
+		if(Objects.isNull(fetchInteger(conn, LOCK_PROJECT_SQL, projectId))) {
+			throw new DbException("Project with ID=" + projectId + " does not exist.");
+		}
+	}
+	
+	// the step_order for a step appended after the project's last step
+	private int lastStepOrder(Connection conn, Integer projectId) throws SQLException {
+		Integer last = fetchInteger(conn, FETCH_LAST_STEP_ORDER_SQL, projectId);
+		
+		if(Objects.nonNull(last) && (long)last + STEP_ORDER_GAP > Integer.MAX_VALUE) {
+			renumberSteps(conn, projectId);
+			last = fetchInteger(conn, FETCH_LAST_STEP_ORDER_SQL, projectId);
+		}
+		return (Objects.isNull(last) ? 0 : last) + STEP_ORDER_GAP;
+	}
+	
+	/*
+	 * chooses a step_order that sorts directly after afterStepId (or before every other step when it is null), ignoring the step with ID
+	 * movingStepId. The new value sits halfway between its neighbors, or STEP_ORDER_GAP beyond the end of the list, so no other row moves
+	 */
+	private int stepOrderAfter(Connection conn, Integer projectId, Integer afterStepId, Integer movingStepId) throws SQLException {
+		for(int attempt = 0; attempt < 2; attempt++) {
+			Integer lower = null;
+			Integer upper;
+			
+			if(Objects.nonNull(afterStepId)) {
+				lower = fetchInteger(conn, FETCH_STEP_ORDER_SQL, afterStepId, projectId);
+				
+				if(Objects.isNull(lower)) {
+					throw new DbException("Step with ID=" + afterStepId + " does not exist in project " + projectId + ".");
+				}
+				upper = fetchInteger(conn, FETCH_NEXT_STEP_ORDER_SQL, projectId, lower, movingStepId);
+			} else {
+				upper = fetchInteger(conn, FETCH_FIRST_STEP_ORDER_SQL, projectId, movingStepId);
+			}
+			
+			long stepOrder;
+			
+			if(Objects.isNull(upper)) {
+				stepOrder = (Objects.isNull(lower) ? 0L : lower) + STEP_ORDER_GAP;
+			} else if(Objects.isNull(lower)) {
+				stepOrder = (long)upper - STEP_ORDER_GAP;
+			} else {
+				stepOrder = lower + ((long)upper - lower) / 2;
+			}
+			
+			// the neighbors are adjacent, or the value would overflow, so the gaps are restored and the neighbors looked up again
+			if(stepOrder > Integer.MAX_VALUE || stepOrder < Integer.MIN_VALUE || (Objects.nonNull(lower) && stepOrder == lower)) {
+				renumberSteps(conn, projectId);
+				continue;
+			}
+			return (int)stepOrder;
+		}
+		
+		throw new SQLException("Unable to find a step_order after step " + afterStepId + " in project " + projectId + ".");
+	}
+	
+	// rewrites the project's step_order values as STEP_ORDER_GAP, 2 * STEP_ORDER_GAP, ... keeping their current order
+	private void renumberSteps(Connection conn, Integer projectId) throws SQLException {
+		try(PreparedStatement stmt = prepareStatement(conn, RENUMBER_STEPS_SQL)){
+			setParameter(stmt, 1, projectId, Integer.class);
+			executeUpdate(stmt);
+		}
+	}
+	
+	// all categories ordered by name
+	public List<Category> fetchAllCategories() {
+		long start = DaoMetrics.start();
+		
+		try(Connection conn = DbConnection.getConnection()){
+			try(PreparedStatement stmt = prepareStatement(conn, FETCH_ALL_CATEGORIES_SQL)){
+				try(ResultSet rs = executeQuery(stmt)){
+					List<Category> categories = new ArrayList<>();
+					
+					while(rs.next()) {
+						categories.add(extract(rs, Category.class));
+					}
+					return categories;
+				}
+			}
+		} catch (SQLException e) {
+			throw new DbException(e);
+		} finally {
+			DaoMetrics.recordSince(FETCH_ALL_CATEGORIES_TIME, start);
+		}
+	}
+	
+	public Category insertCategory(Category category) {
+		long start = DaoMetrics.start();
+		
+		try(Connection conn = DbConnection.getConnection()){
+			startTransaction(conn);
+			
+			try(PreparedStatement stmt = prepareInsert(conn, INSERT_CATEGORY_SQL)){
+				setParameter(stmt, 1, category.getCategoryName(), String.class);
+				
+				Integer categoryId = executeInsert(stmt);
+				recordChanges(conn, ProjectChange.CATEGORY, ProjectChange.UPSERT, categoryId);
+				commitTransaction(conn);
+				
+				category.setCategoryId(categoryId);
+				return category;
+			}
+			catch(Exception e) {
+				rollbackTransaction(conn);
+				throw new DbException(e);
+			}
+		} catch (SQLException e) {
+			throw new DbException(e);
+		} finally {
+			DaoMetrics.recordSince(INSERT_CATEGORY_TIME, start);
+		}
+	}
+	
+	public boolean modifyCategory(Category category) {
+		long start = DaoMetrics.start();
+		
+		try(Connection conn = DbConnection.getConnection()){
+			startTransaction(conn);
+			
+			try(PreparedStatement stmt = prepareStatement(conn, MODIFY_CATEGORY_SQL)){
+				setParameter(stmt, 1, category.getCategoryName(), String.class);
+				setParameter(stmt, 2, category.getCategoryId(), Integer.class);
+				
+				boolean updated = executeUpdate(stmt) == 1;
+				
+				// every project showing the old name has changed as well
+				if(updated) {
+					recordChanges(conn, ProjectChange.PROJECT, ProjectChange.UPSERT, fetchCategoryProjectIds(conn, category.getCategoryId()));
+					recordChanges(conn, ProjectChange.CATEGORY, ProjectChange.UPSERT, category.getCategoryId());
+				}
+				commitTransaction(conn);
+				return updated;
+			}
+			catch(Exception e) {
+				rollbackTransaction(conn);
+				throw new DbException(e);
+			}
+		} catch (SQLException e) {
+			throw new DbException(e);
+		} finally {
+			DaoMetrics.recordSince(MODIFY_CATEGORY_TIME, start);
+		}
+	}
+	
+	/*
+	 * deletes a category; its links to projects are removed by ON DELETE CASCADE. The linked projects are read first, in the same
+	 * transaction, so their change can be logged
+	 */
+	public boolean deleteCategory(Integer categoryId) {
+		long start = DaoMetrics.start();
+		
+		try(Connection conn = DbConnection.getConnection()){
+			startTransaction(conn);
+			
+			try(PreparedStatement stmt = prepareStatement(conn, DELETE_CATEGORY_SQL)){
+				int[] projectIds = fetchCategoryProjectIds(conn, categoryId);
+				
+				setParameter(stmt, 1, categoryId, Integer.class);
+				boolean deleted = executeUpdate(stmt) == 1;
+				
+				if(deleted) {
+					recordChanges(conn, ProjectChange.PROJECT, ProjectChange.UPSERT, projectIds);
+					recordChanges(conn, ProjectChange.CATEGORY, ProjectChange.DELETE, categoryId);
+				}
+				commitTransaction(conn);
+				return deleted;
+			}
+			catch(Exception e) {
+				rollbackTransaction(conn);
+				throw new DbException(e);
+			}
+		} catch (SQLException e) {
+			throw new DbException(e);
+		} finally {
+			DaoMetrics.recordSince(DELETE_CATEGORY_TIME, start);
+		}
+	}
+	
+	/*
+	 * links a category to a project; linking them again leaves the one link in place. Returns true once they are linked, since the
+	 * driver reports a found row for the duplicate, and a project or category that doesn't exist fails the foreign key
+	 */
+	public boolean addCategoryToProject(Integer projectId, Integer categoryId) {
+		return executeSingleRowUpdate(ADD_CATEGORY_TO_PROJECT_TIME, ADD_CATEGORY_TO_PROJECT_SQL, projectId, projectId, categoryId);
+	}
+	
+	// removes the link between a category and a project. Returns false if they were not linked
+	public boolean removeCategoryFromProject(Integer projectId, Integer categoryId) {
+		return executeSingleRowUpdate(REMOVE_CATEGORY_FROM_PROJECT_TIME, REMOVE_CATEGORY_FROM_PROJECT_SQL, projectId, projectId, categoryId);
+	}
+	
+	// child rows are deleted by ID within their project, so an ID from another project is never touched
+	private boolean deleteChild(Histogram histogram, String sql, Integer projectId, Integer childId) {
+		return executeSingleRowUpdate(histogram, sql, projectId, childId, projectId);
+	}
+	
+	/*
+	 * runs an update or delete of one project's rows whose parameters are all integers in its own transaction and returns true if it
+	 * changed exactly one row, in which case the project's change is logged
+	 */
+	private boolean executeSingleRowUpdate(Histogram histogram, String sql, Integer projectId, Integer... parameters) {
+		long start = DaoMetrics.start();
+		
+		try(Connection conn = DbConnection.getConnection()){
+			startTransaction(conn);
+			
+			try(PreparedStatement stmt = prepareStatement(conn, sql)){
+				for(int index = 0; index < parameters.length; index++) {
+					setParameter(stmt, index + 1, parameters[index], Integer.class);
+				}
+				
+				boolean updated = executeUpdate(stmt) == 1;
+				
+				if(updated) {
+					recordChanges(conn, ProjectChange.PROJECT, ProjectChange.UPSERT, projectId);
+				}
+				commitTransaction(conn);
+				return updated;
+			}
+			catch(Exception e) {
+				rollbackTransaction(conn);
+				throw new DbException(e);
+			}
+		} catch (SQLException e) {
+			throw new DbException(e);
+		} finally {
+			DaoMetrics.recordSince(histogram, start);
+		}
+	}
+	
+	// the projects linked to a category
+	private int[] fetchCategoryProjectIds(Connection conn, Integer categoryId) throws SQLException {
+		try(PreparedStatement stmt = prepareStatement(conn, FETCH_CATEGORY_PROJECT_IDS_SQL)){
+			setParameter(stmt, 1, categoryId, Integer.class);
+			
+			try(ResultSet rs = executeQuery(stmt)){
+				return readIds(rs);
+			}
+		}
+	}
+	
+	// the first column of every row, as ints
+	private int[] readIds(ResultSet rs) throws SQLException {
+		int[] ids = new int[16];
+		int numIds = 0;
+		
+		while(rs.next()) {
+			if(numIds == ids.length) {
+				ids = Arrays.copyOf(ids, ids.length * 2);
+			}
+			ids[numIds++] = rs.getInt(1);
+		}
+		return Arrays.copyOf(ids, numIds);
+	}
+	
+	/*
+	 * appends a change row per entity to the change log, as the last statements of the caller's transaction. The sequence numbers come
+	 * from the change_sequence row, which stays locked until the caller commits, so writers take them one commit at a time: every lower
+	 * sequence has committed (or rolled back together with its sequence) before a higher one is handed out, and the log has no holes
+	 */
+	private void recordChanges(Connection conn, String entityType, String operation, int... entityIds) throws SQLException {
+		if(entityIds.length == 0) {
+			return;
+		}
+		
+		long lastChangeSeq;
+		
+		try(PreparedStatement stmt = prepareStatement(conn, ALLOCATE_CHANGE_SEQS_SQL)){
+			setParameter(stmt, 1, entityIds.length, Integer.class);
+			execute(stmt);
+			
+			try(ResultSet rs = stmt.getResultSet()){
+				if(!rs.next()) {
+					throw new SQLException("The " + CHANGE_SEQUENCE_TABLE + " table has no row.");
+				}
+				lastChangeSeq = rs.getLong(1);
+			}
+			
+			nextUpdateCount(stmt);
+		}
+		
+		try(PreparedStatement stmt = prepareStatement(conn, INSERT_CHANGE_SQL)){
+			for(int entityId : entityIds) {
+				setParameter(stmt, 1, ++lastChangeSeq, Long.class);
+				setParameter(stmt, 2, entityType, String.class);
+				setParameter(stmt, 3, entityId, Integer.class);
+				setParameter(stmt, 4, operation, String.class);
+				stmt.addBatch();
+			}
+			
+			executeBatch(stmt);
+		}
+	}
+	
+	/*
+	 * reads up to limit changes logged after changeSeq, in sequence order. Poll with 0 to read the log from the start, or with
+	 * fetchLastChangeSeq() to see only changes from now on, then with each batch's last change sequence. Sequences become visible in
+	 * order (see recordChanges), so a poll never skips a change that commits later.
+	 *
+	 * If purgeChanges has already removed changes after changeSeq the batch is empty and truncated, and the consumer must reload
+	 * everything it follows and carry on from fetchLastChangeSeq()
+	 */
+	public ProjectChangeBatch fetchChangesSince(long changeSeq, int limit) {
+		if(limit < 1) {
+			throw new DbException("Limit must be at least 1 but was " + limit + ".");
+		}
+		
+		long start = DaoMetrics.start();
+		
+		try(Connection conn = DbConnection.getConnection()){
+			try(PreparedStatement stmt = prepareStatement(conn, FETCH_CHANGES_SQL)){
+				setParameter(stmt, 1, changeSeq, Long.class);
+				
+				// one extra row is requested to find out whether more changes are waiting
+				setParameter(stmt, 2, limit + 1, Integer.class);
+				execute(stmt);
+				
+				List<ProjectChange> changes = new ArrayList<>(Math.min(limit + 1, 1024));
+				
+				try(ResultSet rs = stmt.getResultSet()){
+					while(rs.next()) {
+						changes.add(extract(rs, ProjectChange.class));
+					}
+				}
+				
+				// the purge position is read after the changes, so a purge that removed any of them shows up here
+				long purgedSeq = fetchNextLong(stmt);
+				
+				if(changeSeq < purgedSeq) {
+					return new ProjectChangeBatch(List.of(), changeSeq, false, true);
+				}
+				
+				boolean hasMore = changes.size() > limit;
+				
+				if(hasMore) {
+					changes.remove(limit);
+				}
+				
+				long lastChangeSeq = changes.isEmpty() ? changeSeq : changes.get(changes.size() - 1).getChangeSeq();
+				return new ProjectChangeBatch(changes, lastChangeSeq, hasMore, false);
+			}
+		} catch (SQLException e) {
+			throw new DbException(e);
+		} finally {
+			DaoMetrics.recordSince(FETCH_CHANGES_SINCE_TIME, start);
+		}
+	}
+	
+	// the sequence number to start polling from to see changes from now on, or 0 if nothing has been logged
+	public long fetchLastChangeSeq() {
+		long start = DaoMetrics.start();
+		
+		try(Connection conn = DbConnection.getConnection()){
+			try(PreparedStatement stmt = prepareStatement(conn, FETCH_LAST_CHANGE_SEQ_SQL)){
+				try(ResultSet rs = executeQuery(stmt)){
+					return rs.next() ? rs.getLong(1) : 0;
+				}
+			}
+		} catch (SQLException e) {
+			throw new DbException(e);
+		} finally {
+			DaoMetrics.recordSince(FETCH_LAST_CHANGE_SEQ_TIME, start);
+		}
+	}
+	
+	/*
+	 * records how far the named consumer has read the change log, so purgeChanges keeps the changes it hasn't seen yet. A consumer
+	 * should save its position whenever it polls; one that stays silent for CHANGE_CONSUMER_TIMEOUT_HOURS is forgotten
+	 */
+	public void saveChangePosition(String consumerName, long changeSeq) {
+		long start = DaoMetrics.start();
+		
+		try(Connection conn = DbConnection.getConnection()){
+			try(PreparedStatement stmt = prepareStatement(conn, SAVE_CHANGE_POSITION_SQL)){
+				setParameter(stmt, 1, consumerName, String.class);
+				setParameter(stmt, 2, changeSeq, Long.class);
+				executeUpdate(stmt);
+			}
+		} catch (SQLException e) {
+			throw new DbException(e);
+		} finally {
+			DaoMetrics.recordSince(SAVE_CHANGE_POSITION_TIME, start);
+		}
+	}
+	
+	/*
+	 * deletes the changes every consumer has read: those before the oldest saved position, or all but the last change if no consumer has
+	 * saved one recently. The last change read stays, so a consumer can still check that the log continues from its position. Returns
+	 * the number of changes deleted
+	 */
+	public int purgeChanges() {
+		long start = DaoMetrics.start();
+		
+		try(Connection conn = DbConnection.getConnection()){
+			startTransaction(conn);
+			
+			try {
+				long oldestChangeSeq;
+				
+				try(PreparedStatement stmt = prepareStatement(conn, PURGE_CHANGES_SQL)){
+					setParameter(stmt, 1, CHANGE_CONSUMER_TIMEOUT_HOURS, Integer.class);
+					execute(stmt);
+					oldestChangeSeq = fetchNextLong(stmt);
+				}
+				
+				int deleted;
+				
+				// purged_seq is raised in the same transaction, so a poll that finds the changes gone also sees that they were purged
+				try(PreparedStatement stmt = prepareStatement(conn, DELETE_CHANGES_BEFORE_SQL)){
+					setParameter(stmt, 1, oldestChangeSeq, Long.class);
+					setParameter(stmt, 2, oldestChangeSeq, Long.class);
+					execute(stmt);
+					deleted = stmt.getUpdateCount();
+					nextUpdateCount(stmt);
+				}
+				
+				commitTransaction(conn);
+				return deleted;
+			}
+			catch(Exception e) {
+				rollbackTransaction(conn);
+				throw new DbException(e);
+			}
+		} catch (SQLException e) {
+			throw new DbException(e);
+		} finally {
+			DaoMetrics.recordSince(PURGE_CHANGES_TIME, start);
+		}
+	}
+	
+	// moves a multi-statement query on to its next result set and returns the first column of its single row
+	private long fetchNextLong(PreparedStatement stmt) throws SQLException {
+		if(!stmt.getMoreResults()) {
+			throw new SQLException("Expected a result set.");
+		}
+		
+		try(ResultSet rs = stmt.getResultSet()){
+			if(!rs.next()) {
+				throw new SQLException("Expected a row.");
+			}
+			return rs.getLong(1);
+		}
+	}
+	
+	// runs a query whose parameters are all integers and returns the first column of its first row, or null if there is no row or the value is NULL
+	private Integer fetchInteger(Connection conn, String sql, Integer... parameters) throws SQLException {
+		try(PreparedStatement stmt = prepareStatement(conn, sql)){
+			for(int index = 0; index < parameters.length; index++) {
+				setParameter(stmt, index + 1, parameters[index], Integer.class);
+			}
+			
+			try(ResultSet rs = executeQuery(stmt)){
+				if(!rs.next()) {
+					return null;
+				}
+				
+				int value = rs.getInt(1);
+				return rs.wasNull() ? null : value;
+			}
 		}
 	}
 
@@ -3,6 +3,8 @@
  */
 package projects.entity;
 
+import java.io.IOException;
+
 /**
  * @author Promineo
  *
@@ -27,6 +29,27 @@ public class Category {
     this.categoryName = categoryName;
   }
 
+  /**
+   * @return A copy of the category.
+   */
+  public Category copy() {
+    Category copy = new Category();
+    copy.categoryId = categoryId;
+    copy.categoryName = categoryName;
+    return copy;
+  }
+
+  /**
+   * Writes the same text as {@link #toString()} to the given output without building a string.
+   * 
+   * @param out The output to write to
+   * @throws IOException if the output cannot be written
+   */
+  public void appendTo(Appendable out) throws IOException {
+    out.append("ID=").append(String.valueOf(categoryId))
+        .append(", categoryName=").append(categoryName);
+  }
+
   @Override
   public String toString() {
     return "ID=" + categoryId + ", categoryName=" + categoryName;
@@ -0,0 +1,60 @@
+/**
+ * 
+ */
+package projects.entity;
+
+/**
+ * How far a named catalog import has got: the number of the last record of the source file whose
+ * projects are committed. It is saved in the same transaction as those projects, so an interrupted
+ * import resumes after exactly the records that were written.
+ * 
+ * @author Promineo
+ *
+ */
+public class ImportCheckpoint {
+  private String checkpointName;
+  private String source;
+  private Long records;
+
+  public ImportCheckpoint() {
+  }
+
+  public ImportCheckpoint(String checkpointName, String source, long records) {
+    this.checkpointName = checkpointName;
+    this.source = source;
+    this.records = records;
+  }
+
+  public String getCheckpointName() {
+    return checkpointName;
+  }
+
+  public void setCheckpointName(String checkpointName) {
+    this.checkpointName = checkpointName;
+  }
+
+  /**
+   * @return The absolute path of the file being imported, so a checkpoint isn't applied to a
+   *         different file by mistake.
+   */
+  public String getSource() {
+    return source;
+  }
+
+  public void setSource(String source) {
+    this.source = source;
+  }
+
+  public Long getRecords() {
+    return records;
+  }
+
+  public void setRecords(Long records) {
+    this.records = records;
+  }
+
+  @Override
+  public String toString() {
+    return "checkpointName=" + checkpointName + ", source=" + source + ", records=" + records;
+  }
+}
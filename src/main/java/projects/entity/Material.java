@@ -3,6 +3,7 @@
  */
 package projects.entity;
 
+import java.io.IOException;
 import java.math.BigDecimal;
 
 /**
@@ -56,6 +57,32 @@ public class Material {
     this.cost = cost;
   }
 
+  /**
+   * @return A copy of the material.
+   */
+  public Material copy() {
+    Material copy = new Material();
+    copy.materialId = materialId;
+    copy.projectId = projectId;
+    copy.materialName = materialName;
+    copy.numRequired = numRequired;
+    copy.cost = cost;
+    return copy;
+  }
+
+  /**
+   * Writes the same text as {@link #toString()} to the given output without building a string.
+   * 
+   * @param out The output to write to
+   * @throws IOException if the output cannot be written
+   */
+  public void appendTo(Appendable out) throws IOException {
+    out.append("ID=").append(String.valueOf(materialId))
+        .append(", materialName=").append(materialName)
+        .append(", numRequired=").append(String.valueOf(numRequired))
+        .append(", cost=").append(String.valueOf(cost));
+  }
+
   @Override
   public String toString() {
     return "ID=" + materialId + ", materialName=" + materialName + ", numRequired=" + numRequired
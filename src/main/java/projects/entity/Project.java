@@ -3,8 +3,10 @@
  */
 package projects.entity;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -18,10 +20,11 @@ public class Project {
   private BigDecimal actualHours;
   private Integer difficulty;
   private String notes;
+  private Integer version;
 
-  private List<Material> materials = new LinkedList<>();
-  private List<Step> steps = new LinkedList<>();
-  private List<Category> categories = new LinkedList<>();
+  private ArrayList<Material> materials = new ArrayList<>();
+  private ArrayList<Step> steps = new ArrayList<>();
+  private ArrayList<Category> categories = new ArrayList<>();
 
   public Integer getProjectId() {
     return projectId;
@@ -71,6 +74,19 @@ public class Project {
     this.notes = notes;
   }
 
+  /**
+   * @return The row version read from the database. It is incremented by every update and checked
+   *         by the DAO so that an update based on a stale copy is rejected instead of overwriting
+   *         someone else's changes.
+   */
+  public Integer getVersion() {
+    return version;
+  }
+
+  public void setVersion(Integer version) {
+    this.version = version;
+  }
+
   public List<Material> getMaterials() {
     return materials;
   }
@@ -83,35 +99,101 @@ public class Project {
     return categories;
   }
 
-  @Override
-  public String toString() {
-    String result = "";
-    
-    result += "\n   ID=" + projectId;
-    result += "\n   name=" + projectName;
-    result += "\n   estimatedHours=" + estimatedHours;
-    result += "\n   actualHours=" + actualHours;
-    result += "\n   difficulty=" + difficulty;
-    result += "\n   notes=" + notes;
-    
-    result += "\n   Materials:";
-    
+  /**
+   * @return A copy of the project with copies of its materials, steps and categories, so changing
+   *         the copy leaves this project as it was.
+   */
+  public Project copy() {
+    Project copy = new Project();
+    copy.projectId = projectId;
+    copy.projectName = projectName;
+    copy.estimatedHours = estimatedHours;
+    copy.actualHours = actualHours;
+    copy.difficulty = difficulty;
+    copy.notes = notes;
+    copy.version = version;
+    copy.ensureChildCapacity(materials.size(), steps.size(), categories.size());
+
     for(Material material : materials) {
-      result += "\n      " + material;
+      copy.materials.add(material.copy());
     }
-    
-    result += "\n   Steps:";
-    
+
     for(Step step : steps) {
-      result += "\n      " + step;
+      copy.steps.add(step.copy());
     }
-    
-    result += "\n   Categories:";
-    
+
     for(Category category : categories) {
-      result += "\n      " + category;
+      copy.categories.add(category.copy());
     }
-    
-    return result;
+
+    return copy;
+  }
+
+  /**
+   * Presizes the child lists so a DAO that already knows how many rows belong to this project can
+   * add them without the lists growing and copying their arrays.
+   * 
+   * @param numMaterials The number of materials about to be added
+   * @param numSteps The number of steps about to be added
+   * @param numCategories The number of categories about to be added
+   */
+  public void ensureChildCapacity(int numMaterials, int numSteps, int numCategories) {
+    materials.ensureCapacity(materials.size() + numMaterials);
+    steps.ensureCapacity(steps.size() + numSteps);
+    categories.ensureCapacity(categories.size() + numCategories);
+  }
+
+  /**
+   * Writes the project and its materials, steps and categories to the given output in a single
+   * pass, in the same format as {@link #toString()}. Nothing is built up in memory, so a project
+   * with thousands of children can be sent straight to a buffered console or file writer.
+   * 
+   * @param out The output to write to
+   * @throws IOException if the output cannot be written
+   */
+  public void appendTo(Appendable out) throws IOException {
+    out.append("\n   ID=").append(String.valueOf(projectId));
+    out.append("\n   name=").append(projectName);
+    out.append("\n   estimatedHours=").append(String.valueOf(estimatedHours));
+    out.append("\n   actualHours=").append(String.valueOf(actualHours));
+    out.append("\n   difficulty=").append(String.valueOf(difficulty));
+    out.append("\n   notes=").append(notes);
+
+    out.append("\n   Materials:");
+
+    for(Material material : materials) {
+      out.append("\n      ");
+      material.appendTo(out);
+    }
+
+    out.append("\n   Steps:");
+
+    for(Step step : steps) {
+      out.append("\n      ");
+      step.appendTo(out);
+    }
+
+    out.append("\n   Categories:");
+
+    for(Category category : categories) {
+      out.append("\n      ");
+      category.appendTo(out);
+    }
+  }
+
+  @Override
+  public String toString() {
+    // sized for a typical line per child so the builder rarely has to grow
+    int children = materials.size() + steps.size() + categories.size();
+    StringBuilder result = new StringBuilder(256 + 64 * children);
+
+    try {
+      appendTo(result);
+    } catch(IOException e) {
+      // a StringBuilder never throws
+      throw new UncheckedIOException(e);
+    }
+
+    return result.toString();
   }
 }
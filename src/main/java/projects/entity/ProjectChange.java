@@ -0,0 +1,88 @@
+/**
+ * 
+ */
+package projects.entity;
+
+import java.time.LocalDateTime;
+
+/**
+ * One row of the change log: a project or category that a write through ProjectsDao inserted,
+ * updated or deleted. Changes to materials, steps and category links are logged as an UPSERT of
+ * their project, and renaming or deleting a category also logs an UPSERT of every project linked
+ * to it, so a consumer that refetches the changed projects is up to date.
+ * 
+ * @author Promineo
+ *
+ */
+public class ProjectChange {
+  public static final String PROJECT = "PROJECT";
+  public static final String CATEGORY = "CATEGORY";
+  public static final String UPSERT = "UPSERT";
+  public static final String DELETE = "DELETE";
+
+  private Long changeSeq;
+  private String entityType;
+  private Integer entityId;
+  private String operation;
+  private LocalDateTime changedAt;
+
+  /**
+   * @return The position of the change in the log. Sequence numbers are handed out one commit at a
+   *         time, so they have no gaps and become visible in order.
+   */
+  public Long getChangeSeq() {
+    return changeSeq;
+  }
+
+  public void setChangeSeq(Long changeSeq) {
+    this.changeSeq = changeSeq;
+  }
+
+  /**
+   * @return {@link #PROJECT} or {@link #CATEGORY}
+   */
+  public String getEntityType() {
+    return entityType;
+  }
+
+  public void setEntityType(String entityType) {
+    this.entityType = entityType;
+  }
+
+  public Integer getEntityId() {
+    return entityId;
+  }
+
+  public void setEntityId(Integer entityId) {
+    this.entityId = entityId;
+  }
+
+  /**
+   * @return {@link #UPSERT} if the entity was inserted or updated, {@link #DELETE} if it was
+   *         deleted
+   */
+  public String getOperation() {
+    return operation;
+  }
+
+  public void setOperation(String operation) {
+    this.operation = operation;
+  }
+
+  public LocalDateTime getChangedAt() {
+    return changedAt;
+  }
+
+  public void setChangedAt(LocalDateTime changedAt) {
+    this.changedAt = changedAt;
+  }
+
+  public boolean isProject() {
+    return PROJECT.equals(entityType);
+  }
+
+  @Override
+  public String toString() {
+    return changeSeq + ": " + operation + " " + entityType + " " + entityId + " at " + changedAt;
+  }
+}
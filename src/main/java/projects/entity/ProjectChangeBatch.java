@@ -0,0 +1,61 @@
+/**
+ * 
+ */
+package projects.entity;
+
+import java.util.List;
+
+/**
+ * One batch of the change log in sequence order, plus the sequence number to poll from next. A
+ * truncated batch means the changes after the position polled from have been purged.
+ * 
+ * @author Promineo
+ *
+ */
+public class ProjectChangeBatch {
+  private final List<ProjectChange> changes;
+  private final long lastChangeSeq;
+  private final boolean hasMore;
+  private final boolean truncated;
+
+  public ProjectChangeBatch(List<ProjectChange> changes, long lastChangeSeq, boolean hasMore,
+      boolean truncated) {
+    this.changes = changes;
+    this.lastChangeSeq = lastChangeSeq;
+    this.hasMore = hasMore;
+    this.truncated = truncated;
+  }
+
+  public List<ProjectChange> getChanges() {
+    return changes;
+  }
+
+  /**
+   * @return The sequence number of the last change in the batch, or the sequence polled from if
+   *         the batch is empty. Pass it to the next poll.
+   */
+  public long getLastChangeSeq() {
+    return lastChangeSeq;
+  }
+
+  /**
+   * @return true if more changes were already waiting after this batch
+   */
+  public boolean hasMore() {
+    return hasMore;
+  }
+
+  /**
+   * @return true if changes after the position polled from were purged, so the batch is empty and
+   *         the consumer has to reload everything it follows and poll on from
+   *         ProjectsDao.fetchLastChangeSeq()
+   */
+  public boolean isTruncated() {
+    return truncated;
+  }
+
+  @Override
+  public String toString() {
+    return "changes=" + changes.size() + ", lastChangeSeq=" + lastChangeSeq + ", hasMore=" + hasMore + ", truncated=" + truncated;
+  }
+}
@@ -0,0 +1,40 @@
+/**
+ * 
+ */
+package projects.entity;
+
+/**
+ * Selects projects for a bulk operation. Each criterion that is set must match, and criteria left
+ * null are ignored, so an empty filter matches every project.
+ * 
+ * @author Promineo
+ *
+ */
+public class ProjectFilter {
+  private Integer difficulty;
+  private Integer categoryId;
+
+  public Integer getDifficulty() {
+    return difficulty;
+  }
+
+  public void setDifficulty(Integer difficulty) {
+    this.difficulty = difficulty;
+  }
+
+  /**
+   * @return The ID of a category the project must be linked to
+   */
+  public Integer getCategoryId() {
+    return categoryId;
+  }
+
+  public void setCategoryId(Integer categoryId) {
+    this.categoryId = categoryId;
+  }
+
+  @Override
+  public String toString() {
+    return "difficulty=" + difficulty + ", categoryId=" + categoryId;
+  }
+}
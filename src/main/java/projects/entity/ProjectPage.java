@@ -0,0 +1,42 @@
+/**
+ * 
+ */
+package projects.entity;
+
+import java.util.List;
+
+/**
+ * One page of projects ordered by name, plus the token used to request the following page.
+ * 
+ * @author Promineo
+ *
+ */
+public class ProjectPage {
+  private final List<Project> projects;
+  private final String nextPageToken;
+
+  public ProjectPage(List<Project> projects, String nextPageToken) {
+    this.projects = projects;
+    this.nextPageToken = nextPageToken;
+  }
+
+  public List<Project> getProjects() {
+    return projects;
+  }
+
+  /**
+   * @return The opaque token for the next page, or null if this is the last page.
+   */
+  public String getNextPageToken() {
+    return nextPageToken;
+  }
+
+  public boolean hasNextPage() {
+    return nextPageToken != null;
+  }
+
+  @Override
+  public String toString() {
+    return "projects=" + projects.size() + ", nextPageToken=" + nextPageToken;
+  }
+}
@@ -0,0 +1,50 @@
+/**
+ * 
+ */
+package projects.entity;
+
+/**
+ * The number of rows a bulk delete removed from each table. Child rows are deleted explicitly
+ * before their projects rather than left to ON DELETE CASCADE, so they can be counted.
+ * 
+ * @author Promineo
+ *
+ */
+public class PurgeResult {
+  private final int projects;
+  private final int materials;
+  private final int steps;
+  private final int projectCategories;
+
+  public PurgeResult(int projects, int materials, int steps, int projectCategories) {
+    this.projects = projects;
+    this.materials = materials;
+    this.steps = steps;
+    this.projectCategories = projectCategories;
+  }
+
+  public int getProjects() {
+    return projects;
+  }
+
+  public int getMaterials() {
+    return materials;
+  }
+
+  public int getSteps() {
+    return steps;
+  }
+
+  /**
+   * @return The number of project_category links removed. The categories themselves are kept.
+   */
+  public int getProjectCategories() {
+    return projectCategories;
+  }
+
+  @Override
+  public String toString() {
+    return "projects=" + projects + ", materials=" + materials + ", steps=" + steps
+        + ", projectCategories=" + projectCategories;
+  }
+}
@@ -3,6 +3,8 @@
  */
 package projects.entity;
 
+import java.io.IOException;
+
 /**
  * @author Promineo
  *
@@ -45,6 +47,29 @@ public class Step {
     this.stepOrder = stepOrder;
   }
 
+  /**
+   * @return A copy of the step.
+   */
+  public Step copy() {
+    Step copy = new Step();
+    copy.stepId = stepId;
+    copy.projectId = projectId;
+    copy.stepText = stepText;
+    copy.stepOrder = stepOrder;
+    return copy;
+  }
+
+  /**
+   * Writes the same text as {@link #toString()} to the given output without building a string.
+   * 
+   * @param out The output to write to
+   * @throws IOException if the output cannot be written
+   */
+  public void appendTo(Appendable out) throws IOException {
+    out.append("ID=").append(String.valueOf(stepId))
+        .append(", stepText=").append(stepText);
+  }
+
   @Override
   public String toString() {
     return "ID=" + stepId + ", stepText=" + stepText;
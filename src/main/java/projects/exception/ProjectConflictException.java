@@ -0,0 +1,25 @@
+package projects.exception;
+
+// thrown when an update is rejected because the project was changed by someone else since it was read
+@SuppressWarnings("serial")
+public class ProjectConflictException extends DbException {
+	private final Integer projectId;
+	private final Integer currentVersion;
+
+	public ProjectConflictException(Integer projectId, Integer expectedVersion, Integer currentVersion) {
+		super("Project with ID=" + projectId + " was modified by another user (expected version " + expectedVersion
+				+ " but found " + currentVersion + ").");
+		this.projectId = projectId;
+		this.currentVersion = currentVersion;
+	}
+
+	public Integer getProjectId() {
+		return projectId;
+	}
+
+	// the version now stored in the database, so a caller can reload and retry
+	public Integer getCurrentVersion() {
+		return currentVersion;
+	}
+
+}
@@ -0,0 +1,123 @@
+package projects.service;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import projects.dao.DbConnection;
+import projects.entity.Project;
+import projects.exception.DbException;
+
+/*
+ * non-blocking front end for ProjectsService. Each call runs on a background thread and returns a CompletableFuture, so a caller can fan out
+ * many lookups without tying up its own threads. On Java 21+ every call gets its own virtual thread; on older JVMs the calls share a fixed
+ * pool of platform threads. Either way no more calls run at once than the connection pool has connections, so the rest wait cheaply
+ * instead of timing out in DbConnection.getConnection
+ */
+public class AsyncProjectsService implements AutoCloseable {
+	private final ProjectsService projectsService;
+	private final ExecutorService executor;
+	private final Semaphore limiter;
+
+	public AsyncProjectsService() {
+		this(new ProjectsService());
+	}
+
+	public AsyncProjectsService(ProjectsService projectsService) {
+		this(projectsService, DbConnection.getPoolStats().maxSize());
+	}
+
+	// maxConcurrency is the number of calls allowed to hold a database connection at once
+	public AsyncProjectsService(ProjectsService projectsService, int maxConcurrency) {
+		if(maxConcurrency < 1) {
+			throw new IllegalArgumentException("maxConcurrency must be at least 1.");
+		}
+
+		this.projectsService = projectsService;
+		this.executor = newExecutor(maxConcurrency);
+		this.limiter = new Semaphore(maxConcurrency, true);
+	}
+
+	public CompletableFuture<Project> addProject(Project project) {
+		return submit(() -> projectsService.addProject(project));
+	}
+
+	public CompletableFuture<List<Project>> fetchAllProjects() {
+		return submit(projectsService::fetchAllProjects);
+	}
+
+	// completes exceptionally with a NoSuchElementException if the project does not exist
+	public CompletableFuture<Project> fetchProjectById(Integer projectId) {
+		return submit(() -> projectsService.fetchProjectById(projectId));
+	}
+
+	// completes exceptionally with a DbException if the project does not exist, or a ProjectConflictException if its version is stale
+	public CompletableFuture<Void> modifyProjectDetails(Project project) {
+		return submit(() -> {
+			projectsService.modifyProjectDetails(project);
+			return null;
+		});
+	}
+
+	// writes only the fields that changed; completes exceptionally with a ProjectConflictException if another writer changed one of them first
+	public CompletableFuture<Void> modifyProjectDetails(Project original, Project modified) {
+		return submit(() -> {
+			projectsService.modifyProjectDetails(original, modified);
+			return null;
+		});
+	}
+
+	public CompletableFuture<Void> deleteProject(Integer projectId) {
+		return submit(() -> {
+			projectsService.deleteProject(projectId);
+			return null;
+		});
+	}
+
+	// stops accepting calls. Calls already submitted still run to completion
+	@Override
+	public void close() {
+		executor.shutdown();
+	}
+
+	// runs the call once a permit is free. Failures, including interruption while waiting, complete the future exceptionally
+	private <T> CompletableFuture<T> submit(Supplier<T> call) {
+		return CompletableFuture.supplyAsync(() -> {
+			try {
+				limiter.acquire();
+			} catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new DbException(e);
+			}
+
+			try {
+				return call.get();
+			} finally {
+				limiter.release();
+			}
+		}, executor);
+	}
+
+	/*
+	 * Executors.newVirtualThreadPerTaskExecutor only exists from Java 21 on, so it is looked up reflectively to keep the build on Java 17.
+	 * Without it, a fixed pool the size of the limit is used so waiting calls queue up instead of each holding a platform thread
+	 */
+	private static ExecutorService newExecutor(int maxConcurrency) {
+		try {
+			return (ExecutorService)Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch(ReflectiveOperationException | UnsupportedOperationException e) {
+			AtomicInteger threadNumber = new AtomicInteger();
+
+			return Executors.newFixedThreadPool(maxConcurrency, runnable -> {
+				Thread thread = new Thread(runnable, "projects-async-" + threadNumber.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+	}
+
+}
@@ -0,0 +1,166 @@
+package projects.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import projects.entity.Project;
+
+/*
+ * A bounded, in-process LRU cache of fully-loaded projects keyed by project ID. Entries expire after a fixed time to
+ * live, so changes made outside this application are eventually picked up. The service invalidates entries on every write.
+ *
+ * A reader that misses loads the project from the database and then puts it, which races with writers: a write can commit
+ * and invalidate between the load and the put, and the put would then cache the old graph for the whole TTL. So every
+ * invalidation bumps a generation counter and leaves a tombstone holding it, a reader takes the generation before it loads,
+ * and put drops a project loaded before the newest invalidation of its ID. Tombstones are kept in a map of their own, also
+ * bounded by maxSize, so a burst of invalidations can't push live projects out. When a tombstone is evicted the highest
+ * generation seen (or that of invalidateAll) is kept, and a put older than that is dropped as well, since it may be racing an
+ * invalidation the cache no longer remembers.
+ *
+ * Projects are copied on the way in and on the way out, so a caller that changes the project it was given can't change
+ * what other callers get.
+ */
+public class ProjectCache {
+	private final int maxSize;
+	private final long ttlNanos;
+
+	// an access-ordered LinkedHashMap keeps the least recently used entry first, so eviction is O(1)
+	private final LinkedHashMap<Integer, Entry> entries;
+
+	// the generation of the latest invalidation of each ID, oldest invalidation first
+	private final LinkedHashMap<Integer, Long> tombstones;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+	private final AtomicLong expirations = new AtomicLong();
+	private final AtomicLong stalePuts = new AtomicLong();
+
+	// guarded by this
+	private long generation;
+	private long forgottenGeneration;
+
+	public ProjectCache(int maxSize, long ttlMillis) {
+		if(maxSize < 1 || ttlMillis < 1) {
+			throw new IllegalArgumentException("Invalid cache settings: maxSize=" + maxSize + ", ttlMillis=" + ttlMillis);
+		}
+
+		this.maxSize = maxSize;
+		this.ttlNanos = ttlMillis * 1_000_000;
+		this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Integer, Entry> eldest) {
+				if(size() > ProjectCache.this.maxSize) {
+					evictions.incrementAndGet();
+					return true;
+				}
+				return false;
+			}
+		};
+		this.tombstones = new LinkedHashMap<>() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Integer, Long> eldest) {
+				if(size() > ProjectCache.this.maxSize) {
+					forgottenGeneration = Math.max(forgottenGeneration, eldest.getValue());
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	// returns a copy of the cached project, or null if it isn't cached or has expired
+	public synchronized Project get(Integer projectId) {
+		Entry entry = entries.get(projectId);
+
+		if(entry == null) {
+			misses.incrementAndGet();
+			return null;
+		}
+
+		// the expired entry leaves a tombstone at its generation, so a put loaded before it still counts as stale
+		if(System.nanoTime() - entry.loadedAt > ttlNanos) {
+			entries.remove(projectId);
+			tombstone(projectId, entry.generation);
+			expirations.incrementAndGet();
+			misses.incrementAndGet();
+			return null;
+		}
+
+		hits.incrementAndGet();
+		return entry.project.copy();
+	}
+
+	// the generation to pass to put for a project about to be loaded; take it before the load starts
+	public synchronized long generation() {
+		return generation;
+	}
+
+	/*
+	 * caches a copy of a project loaded when generation() returned loadGeneration. Returns false, caching nothing, if the
+	 * project was invalidated since then or a newer copy is already cached
+	 */
+	public synchronized boolean put(Project project, long loadGeneration) {
+		Entry current = entries.get(project.getProjectId());
+		long newest = tombstones.getOrDefault(project.getProjectId(), forgottenGeneration);
+
+		if(current != null) {
+			newest = Math.max(newest, current.generation);
+		}
+
+		if(loadGeneration < newest) {
+			stalePuts.incrementAndGet();
+			return false;
+		}
+
+		entries.put(project.getProjectId(), new Entry(project.copy(), loadGeneration, System.nanoTime()));
+		return true;
+	}
+
+	public synchronized void invalidate(Integer projectId) {
+		entries.remove(projectId);
+		tombstone(projectId, ++generation);
+	}
+
+	public synchronized void invalidateAll() {
+		entries.clear();
+		tombstones.clear();
+		forgottenGeneration = ++generation;
+	}
+
+	// the tombstone is moved to the newest end, so tombstones are evicted in the order their IDs were last invalidated
+	private void tombstone(Integer projectId, long tombstoneGeneration) {
+		Long previous = tombstones.remove(projectId);
+		tombstones.put(projectId, previous == null ? tombstoneGeneration : Math.max(previous, tombstoneGeneration));
+	}
+
+	public synchronized CacheStats getStats() {
+		return new CacheStats(entries.size(), maxSize, hits.get(), misses.get(), evictions.get(), expirations.get(), stalePuts.get());
+	}
+
+	// point-in-time counters for monitoring the cache
+	public record CacheStats(int size, int maxSize, long hits, long misses, long evictions, long expirations, long stalePuts) {
+		public double hitRate() {
+			long requests = hits + misses;
+			return requests == 0 ? 0.0 : (double)hits / requests;
+		}
+	}
+
+	// a cached project and the generation at which it was loaded
+	private static class Entry {
+		private final Project project;
+		private final long generation;
+		private final long loadedAt;
+
+		private Entry(Project project, long generation, long loadedAt) {
+			this.project = project;
+			this.generation = generation;
+			this.loadedAt = loadedAt;
+		}
+	}
+}
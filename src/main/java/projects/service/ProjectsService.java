@@ -1,45 +1,579 @@
 package projects.service;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Stream;
 
+import projects.dao.ProjectSnapshot;
 import projects.dao.ProjectsDao;
+import projects.entity.Category;
+import projects.entity.ImportCheckpoint;
+import projects.entity.Material;
 import projects.entity.Project;
+import projects.entity.ProjectChange;
+import projects.entity.ProjectChangeBatch;
+import projects.entity.ProjectFilter;
+import projects.entity.ProjectPage;
+import projects.entity.PurgeResult;
+import projects.entity.Step;
 import projects.exception.DbException;
+import projects.exception.ProjectConflictException;
+import projects.service.ProjectCache.CacheStats;
 
 public class ProjectsService {
+	// number of projects written per transaction by addProjects
+	private static final int DEFAULT_INSERT_CHUNK_SIZE = 500;
+	
+	// number of projects removed per transaction by deleteProjects
+	private static final int DEFAULT_DELETE_CHUNK_SIZE = 500;
+	
+	// size and time to live of the cache of projects loaded by fetchProjectById
+	private static final int PROJECT_CACHE_SIZE = 1_000;
+	private static final long PROJECT_CACHE_TTL_MILLIS = 60_000;
+	
+	// number of changes read from the change log per query by fetchChangesSince, refreshSnapshot and syncProjectCache
+	private static final int DEFAULT_CHANGE_BATCH_SIZE = 1_000;
+	
+	// refreshSnapshot rewrites the whole snapshot once more than this share of its projects have changed
+	private static final double SNAPSHOT_REWRITE_RATIO = 0.25;
+	
 	// creates an instance of the projectDao class which is where our SQL statement will be put together and sent off to the database
 	private ProjectsDao projectDao = new ProjectsDao();
 	
+	// read-through cache for fetchProjectById, invalidated by every write below
+	private ProjectCache projectCache = new ProjectCache(PROJECT_CACHE_SIZE, PROJECT_CACHE_TTL_MILLIS);
+	
+	// set in read-only mode, where reads are answered from this memory-mapped copy of the catalog instead of the database
+	private volatile ProjectSnapshot snapshot;
+	
+	// the last logged change syncProjectCache has applied to the cache, or -1 before its first call
+	private long cacheChangeSeq = -1;
+	
+	// the name under which syncProjectCache saves its change log position, unique to this service instance
+	private final String cacheConsumerName = "cache " + UUID.randomUUID();
+	
+	// reads and writes go to the database
+	public ProjectsService() {
+	}
+	
+	/*
+	 * read-only mode: fetchAllProjects, fetchProjectById and the other whole-catalog and by-ID reads are answered from the snapshot
+	 * without a database connection, and everything else throws a DbException. refreshSnapshot() brings the snapshot up to date
+	 */
+	public ProjectsService(ProjectSnapshot snapshot) {
+		this.snapshot = Objects.requireNonNull(snapshot);
+	}
+	
+	public boolean isReadOnly() {
+		return Objects.nonNull(snapshot);
+	}
+	
+	// writes and the reads a snapshot can't answer need the database, which read-only mode doesn't use
+	private void requireDatabase() {
+		if(isReadOnly()) {
+			throw new DbException("The projects service is read-only, serving the snapshot " + snapshot.getPath() + ".");
+		}
+	}
+	
+	/*
+	 * writes every project with its children from the database to a snapshot file and returns the number of projects in it. The change
+	 * sequence is read before the projects, so a change committed in between is in the data and replayed by the next refresh, which is
+	 * harmless, rather than missed. The snapshot's position is saved, so purgeChanges keeps the changes it will need to refresh
+	 */
+	public int writeSnapshot(Path path) throws IOException {
+		long changeSeq = projectDao.fetchLastChangeSeq();
+		int count;
+		
+		try(Stream<Project> projects = projectDao.streamAllProjectGraphs()) {
+			count = ProjectSnapshot.write(path, projectDao.fetchAllCategories(), projects, changeSeq);
+		}
+		
+		projectDao.saveChangePosition(snapshotConsumerName(path), changeSeq);
+		return count;
+	}
+	
+	private String snapshotConsumerName(Path path) {
+		return "snapshot " + path.toAbsolutePath();
+	}
+	
+	/*
+	 * read-only mode: brings the snapshot file up to date, then switches reads to the new file. Reads already under way finish on the
+	 * old mapping. Only the projects named in the change log since the snapshot was written are read from the database and merged into
+	 * the snapshot's own records. When most of the catalog has changed, or the log no longer holds the changes since the snapshot's
+	 * (they were purged, or the database was rebuilt), the snapshot is regenerated from the database instead
+	 */
+	public int refreshSnapshot() throws IOException {
+		ProjectSnapshot current = snapshot;
+		
+		if(Objects.isNull(current)) {
+			throw new DbException("The projects service isn't reading from a snapshot. Use writeSnapshot to create one.");
+		}
+		
+		int count = refreshFromChanges(current);
+		
+		if(count < 0) {
+			count = writeSnapshot(current.getPath());
+		}
+		
+		snapshot = ProjectSnapshot.open(current.getPath());
+		current.close();
+		projectDao.saveChangePosition(snapshotConsumerName(current.getPath()), snapshot.getChangeSeq());
+		return count;
+	}
+	
+	// returns the number of projects in the merged snapshot, or -1 if it has to be regenerated
+	private int refreshFromChanges(ProjectSnapshot current) throws IOException {
+		// the snapshot's own last change must still be in the log; if it isn't, the database was rebuilt and the log says nothing about it
+		if(current.getChangeSeq() > 0) {
+			ProjectChangeBatch last = projectDao.fetchChangesSince(current.getChangeSeq() - 1, 1);
+			
+			if(last.isTruncated() || last.getChanges().isEmpty() || last.getChanges().get(0).getChangeSeq() != current.getChangeSeq()) {
+				return -1;
+			}
+		}
+		
+		int maxChangedProjects = (int)(current.getProjectCount() * SNAPSHOT_REWRITE_RATIO);
+		Set<Integer> changedIds = new HashSet<>();
+		boolean categoriesChanged = false;
+		long changeSeq = current.getChangeSeq();
+		ProjectChangeBatch batch;
+		
+		do {
+			batch = projectDao.fetchChangesSince(changeSeq, DEFAULT_CHANGE_BATCH_SIZE);
+			
+			if(batch.isTruncated()) {
+				return -1;
+			}
+			
+			for(ProjectChange change : batch.getChanges()) {
+				if(change.isProject()) {
+					changedIds.add(change.getEntityId());
+				} else {
+					categoriesChanged = true;
+				}
+			}
+			
+			if(changedIds.size() > maxChangedProjects) {
+				return -1;
+			}
+			changeSeq = batch.getLastChangeSeq();
+		} while(batch.hasMore());
+		
+		// projects are read after the changes, so they may hold later changes too; those are applied again by the next refresh
+		List<Project> changed = changedIds.isEmpty() ? List.of() : projectDao.fetchProjectsByIds(changedIds);
+		List<Category> categories = categoriesChanged ? projectDao.fetchAllCategories() : current.fetchAllCategories();
+		
+		return current.writeWithChanges(current.getPath(), categories, changedIds, changed, changeSeq);
+	}
+	
+	/*
+	 * reads up to limit changes logged after changeSeq; start from fetchLastChangeSeq() and continue from each batch's last sequence. A
+	 * truncated batch means the changes were purged: reload and carry on from fetchLastChangeSeq()
+	 */
+	public ProjectChangeBatch fetchChangesSince(long changeSeq, int limit) {
+		return projectDao.fetchChangesSince(changeSeq, limit);
+	}
+	
+	public ProjectChangeBatch fetchChangesSince(long changeSeq) {
+		return fetchChangesSince(changeSeq, DEFAULT_CHANGE_BATCH_SIZE);
+	}
+	
+	// the sequence number to start polling from to see changes from now on
+	public long fetchLastChangeSeq() {
+		return projectDao.fetchLastChangeSeq();
+	}
+	
+	// records a consumer's position in the change log, so purgeChangeLog keeps the changes it hasn't read
+	public void saveChangePosition(String consumerName, long changeSeq) {
+		projectDao.saveChangePosition(consumerName, changeSeq);
+	}
+	
+	// deletes the logged changes that every consumer with a saved position has read, and returns how many were deleted
+	public int purgeChangeLog() {
+		requireDatabase();
+		return projectDao.purgeChanges();
+	}
+	
+	/*
+	 * drops the cached projects that were changed through another service instance or process since the last call, as recorded in the
+	 * change log; this service's own writes already invalidate the cache. Call it periodically when several instances share the
+	 * database. The first call, and a call that finds the changes since the last one purged, empties the cache and starts following the
+	 * log from its current end. Returns the number of changes read
+	 */
+	public synchronized int syncProjectCache() {
+		requireDatabase();
+		
+		if(cacheChangeSeq < 0) {
+			restartCacheSync();
+			return 0;
+		}
+		
+		int numChanges = 0;
+		ProjectChangeBatch batch;
+		
+		do {
+			batch = projectDao.fetchChangesSince(cacheChangeSeq, DEFAULT_CHANGE_BATCH_SIZE);
+			
+			if(batch.isTruncated()) {
+				restartCacheSync();
+				return numChanges;
+			}
+			
+			// a renamed or deleted category also logs each project linked to it, so only project changes touch the cache
+			for(ProjectChange change : batch.getChanges()) {
+				if(change.isProject()) {
+					projectCache.invalidate(change.getEntityId());
+				}
+			}
+			
+			numChanges += batch.getChanges().size();
+			cacheChangeSeq = batch.getLastChangeSeq();
+		} while(batch.hasMore());
+		
+		projectDao.saveChangePosition(cacheConsumerName, cacheChangeSeq);
+		return numChanges;
+	}
+	
+	// the log position is taken before the cache is emptied, so a change committed in between is read by the next sync, not missed
+	private void restartCacheSync() {
+		cacheChangeSeq = projectDao.fetchLastChangeSeq();
+		projectCache.invalidateAll();
+		projectDao.saveChangePosition(cacheConsumerName, cacheChangeSeq);
+	}
+	
 	// method calls the insertProject method on the projectDao and uses input entered by the user
 	public Project addProject(Project project) {
-		return projectDao.insertProject(project);
+		requireDatabase();
+		Project dbProject = projectDao.insertProject(project);
+		projectCache.invalidate(dbProject.getProjectId());
+		return dbProject;
+	}
+	
+	// inserts many projects with their materials, steps & category links in batched, chunked transactions
+	public List<Project> addProjects(Collection<Project> projects) {
+		return addProjects(projects, DEFAULT_INSERT_CHUNK_SIZE);
+	}
+	
+	public List<Project> addProjects(Collection<Project> projects, int chunkSize) {
+		requireDatabase();
+		List<Project> dbProjects = projectDao.insertProjects(projects, chunkSize);
+		dbProjects.forEach(project -> projectCache.invalidate(project.getProjectId()));
+		return dbProjects;
+	}
+	
+	// inserts the projects and saves the import checkpoint in one transaction, so the checkpoint never disagrees with what was committed
+	public List<Project> addProjects(Collection<Project> projects, ImportCheckpoint checkpoint) {
+		requireDatabase();
+		List<Project> dbProjects = projectDao.insertProjects(projects, checkpoint);
+		dbProjects.forEach(project -> projectCache.invalidate(project.getProjectId()));
+		return dbProjects;
+	}
+	
+	// retrieves the checkpoint saved by an earlier, interrupted import, if there is one
+	public Optional<ImportCheckpoint> fetchImportCheckpoint(String checkpointName) {
+		requireDatabase();
+		return projectDao.fetchImportCheckpoint(checkpointName);
+	}
+	
+	// removes a finished or abandoned import's checkpoint. Returns false if there was none
+	public boolean deleteImportCheckpoint(String checkpointName) {
+		requireDatabase();
+		return projectDao.deleteImportCheckpoint(checkpointName);
 	}
 	
 	// retrieves all project names and IDs from DAO layer and returns it to I/O layer
 	public List<Project> fetchAllProjects() {
-		return projectDao.fetchAllProjects();
+		return isReadOnly() ? snapshot.fetchAllProjects() : projectDao.fetchAllProjects();
+	}
+	
+	// retrieves one page of projects ordered by name. Pass null for the first page, then the page's next page token for each following page
+	public ProjectPage fetchProjectPage(String pageToken, int pageSize) {
+		requireDatabase();
+		return projectDao.fetchProjectPage(pageToken, pageSize);
+	}
+	
+	// streams all projects from the DAO layer without loading them all into memory. The stream holds a database connection and must be closed
+	public Stream<Project> streamAllProjects() {
+		return isReadOnly() ? snapshot.fetchAllProjects().stream() : projectDao.streamAllProjects();
 	}
 	
-	//retrieves a single project based on user input from DAO layer and returns it to I/O layer. Also, validates that the selection can be made.
+	// every project with its children for export, read by four streaming queries; close the stream to release its connections
+	public Stream<Project> streamAllProjectGraphs() {
+		return isReadOnly() ? snapshot.streamAllProjectGraphs() : projectDao.streamAllProjectGraphs();
+	}
+	
+	// retrieves fully-populated projects (materials, steps & categories) for the given IDs in a constant number of queries, skipping IDs that don't exist
+	public List<Project> fetchProjectsByIds(Collection<Integer> projectIds) {
+		return isReadOnly() ? snapshot.fetchProjectsByIds(projectIds) : projectDao.fetchProjectsByIds(projectIds);
+	}
+	
+	// retrieves every project with its materials, steps & categories, used for exports and reports over the whole catalog
+	public List<Project> fetchAllProjectsWithChildren() {
+		return isReadOnly() ? snapshot.fetchAllProjectsWithChildren() : projectDao.fetchAllProjectsWithChildren();
+	}
+	
+	/*
+	 * retrieves a single project based on user input and returns it to I/O layer. Also, validates that the selection can be made.
+	 * Hot projects are served from the cache. Each call returns its own copy, so the caller may change it
+	 */
 	public Project fetchProjectById(Integer projectId) {
-		return projectDao.fetchProjectById(projectId).orElseThrow(() -> new NoSuchElementException("Project with project ID=" + projectId + "does not exist."));
+		// decoding from the mapped snapshot is as fast as a cache hit, so read-only mode skips the cache. No ID finds nothing, as in the database
+		if(isReadOnly()) {
+			Optional<Project> snapshotProject = Objects.isNull(projectId) ? Optional.empty() : snapshot.fetchProjectById(projectId);
+			return snapshotProject.orElseThrow(() -> new NoSuchElementException("Project with project ID=" + projectId + " does not exist."));
+		}
+		
+		Project project = projectCache.get(projectId);
+		
+		if(Objects.isNull(project)) {
+			// taken before the load, so the put is dropped if a write invalidates the project while it is being read
+			long generation = projectCache.generation();
 			
+			// a miss is one round trip on one connection; ProjectsDao.fetchProjectByIdParallel measured no faster against a local server
+			Optional<Project> dbProject = projectDao.fetchProjectById(projectId);
+			project = dbProject.orElseThrow(() -> new NoSuchElementException("Project with project ID=" + projectId + " does not exist."));
+			projectCache.put(project, generation);
+		}
+		
+		return project;
+	}
+	
+	// hit/miss counters for the project cache
+	public CacheStats getProjectCacheStats() {
+		return projectCache.getStats();
 	}
 	
-	//ensures that the the project to be updated exists & passes user input info through to the data layer
+	/*
+	 * ensures that the the project to be updated exists & passes user input info through to the data layer. If the project has a version and
+	 * the stored project has moved past it, a ProjectConflictException is thrown and nothing is written
+	 */
 	public void modifyProjectDetails(Project project) {
-		if(!projectDao.modifyProjectDetails(project)) {
-			throw new DbException("Project with ID=" + project.getProjectId() + " does not exist.");
+		requireDatabase();
+		// the cached copy is dropped once the write has finished, whether or not it succeeded
+		try {
+			if(!projectDao.modifyProjectDetails(project)) {
+				throw updateFailure(project.getProjectId(), project.getVersion());
+			}
+		} finally {
+			projectCache.invalidate(project.getProjectId());
+		}
+	}
+	
+	/*
+	 * partial update: only the fields that differ between original (as fetched) and modified are written, so writers editing different
+	 * fields of the same project don't block or overwrite each other. Throws a ProjectConflictException if another writer changed one of
+	 * the same fields first
+	 */
+	public void modifyProjectDetails(Project original, Project modified) {
+		requireDatabase();
+		try {
+			if(!projectDao.modifyChangedProjectDetails(original, modified)) {
+				throw updateFailure(original.getProjectId(), original.getVersion());
+			}
+		} finally {
+			projectCache.invalidate(original.getProjectId());
+		}
+	}
+	
+	// an update that matched no row either lost a race with another writer or targeted a project that doesn't exist
+	private DbException updateFailure(Integer projectId, Integer expectedVersion) {
+		Optional<Integer> currentVersion = projectDao.fetchProjectVersion(projectId);
+		
+		if(currentVersion.isPresent()) {
+			return new ProjectConflictException(projectId, expectedVersion, currentVersion.get());
 		}
+		return new DbException("Project with ID=" + projectId + " does not exist.");
 	}
 
 	public void deleteProject(Integer projectId) {
-		if(!projectDao.deleteProject(projectId)) {
-			throw new DbException("Project with ID=" + projectId + " does not exist.");
+		requireDatabase();
+		try {
+			if(!projectDao.deleteProject(projectId)) {
+				throw new DbException("Project with ID=" + projectId + " does not exist.");
+			}
+		} finally {
+			projectCache.invalidate(projectId);
 		}
 		
 	}
+	
+	// deletes many projects with their materials, steps & category links in chunked transactions and reports the rows removed from each table
+	public PurgeResult deleteProjects(Collection<Integer> projectIds) {
+		return deleteProjects(projectIds, DEFAULT_DELETE_CHUNK_SIZE);
+	}
+	
+	public PurgeResult deleteProjects(Collection<Integer> projectIds, int chunkSize) {
+		requireDatabase();
+		try {
+			return projectDao.deleteProjects(projectIds, chunkSize);
+		} finally {
+			projectIds.forEach(projectCache::invalidate);
+		}
+	}
+	
+	// deletes every project matching the filter (e.g. a difficulty or a category) in chunked transactions
+	public PurgeResult deleteProjects(ProjectFilter filter) {
+		return deleteProjects(filter, DEFAULT_DELETE_CHUNK_SIZE);
+	}
+	
+	public PurgeResult deleteProjects(ProjectFilter filter, int chunkSize) {
+		requireDatabase();
+		try {
+			return projectDao.deleteProjects(filter, chunkSize);
+		} finally {
+			// the IDs that matched aren't returned, so the whole cache is dropped
+			projectCache.invalidateAll();
+		}
+	}
+	
+	// adds a material to the project given by its projectId
+	public Material addMaterial(Material material) {
+		requireDatabase();
+		try {
+			return projectDao.insertMaterial(material);
+		} finally {
+			projectCache.invalidate(material.getProjectId());
+		}
+	}
+	
+	public void modifyMaterial(Material material) {
+		requireDatabase();
+		try {
+			if(!projectDao.modifyMaterial(material)) {
+				throw new DbException("Material with ID=" + material.getMaterialId() + " does not exist in project " + material.getProjectId() + ".");
+			}
+		} finally {
+			projectCache.invalidate(material.getProjectId());
+		}
+	}
+	
+	public void deleteMaterial(Integer projectId, Integer materialId) {
+		requireDatabase();
+		try {
+			if(!projectDao.deleteMaterial(projectId, materialId)) {
+				throw new DbException("Material with ID=" + materialId + " does not exist in project " + projectId + ".");
+			}
+		} finally {
+			projectCache.invalidate(projectId);
+		}
+	}
+	
+	// appends a step to the end of the project given by its projectId
+	public Step addStep(Step step) {
+		requireDatabase();
+		try {
+			return projectDao.insertStep(step);
+		} finally {
+			projectCache.invalidate(step.getProjectId());
+		}
+	}
+	
+	// inserts a step directly after afterStepId, or first if afterStepId is null, without renumbering the other steps
+	public Step addStepAfter(Step step, Integer afterStepId) {
+		requireDatabase();
+		try {
+			return projectDao.insertStepAfter(step, afterStepId);
+		} finally {
+			projectCache.invalidate(step.getProjectId());
+		}
+	}
+	
+	public void modifyStep(Step step) {
+		requireDatabase();
+		try {
+			if(!projectDao.modifyStep(step)) {
+				throw new DbException("Step with ID=" + step.getStepId() + " does not exist in project " + step.getProjectId() + ".");
+			}
+		} finally {
+			projectCache.invalidate(step.getProjectId());
+		}
+	}
+	
+	// moves a step directly after afterStepId, or to the front if afterStepId is null
+	public void moveStep(Integer projectId, Integer stepId, Integer afterStepId) {
+		requireDatabase();
+		try {
+			if(!projectDao.moveStep(projectId, stepId, afterStepId)) {
+				throw new DbException("Step with ID=" + stepId + " does not exist in project " + projectId + ".");
+			}
+		} finally {
+			projectCache.invalidate(projectId);
+		}
+	}
+	
+	public void deleteStep(Integer projectId, Integer stepId) {
+		requireDatabase();
+		try {
+			if(!projectDao.deleteStep(projectId, stepId)) {
+				throw new DbException("Step with ID=" + stepId + " does not exist in project " + projectId + ".");
+			}
+		} finally {
+			projectCache.invalidate(projectId);
+		}
+	}
+	
+	public List<Category> fetchAllCategories() {
+		return isReadOnly() ? snapshot.fetchAllCategories() : projectDao.fetchAllCategories();
+	}
+	
+	// a new category isn't linked to any project yet, so no cached project changes
+	public Category addCategory(Category category) {
+		requireDatabase();
+		return projectDao.insertCategory(category);
+	}
+	
+	// renaming or deleting a category changes every project linked to it, so the whole cache is dropped
+	public void modifyCategory(Category category) {
+		requireDatabase();
+		try {
+			if(!projectDao.modifyCategory(category)) {
+				throw new DbException("Category with ID=" + category.getCategoryId() + " does not exist.");
+			}
+		} finally {
+			projectCache.invalidateAll();
+		}
+	}
+	
+	public void deleteCategory(Integer categoryId) {
+		requireDatabase();
+		try {
+			if(!projectDao.deleteCategory(categoryId)) {
+				throw new DbException("Category with ID=" + categoryId + " does not exist.");
+			}
+		} finally {
+			projectCache.invalidateAll();
+		}
+	}
+	
+	// links a category to a project; linking it twice has no effect. A project or category that doesn't exist is an error
+	public void addCategoryToProject(Integer projectId, Integer categoryId) {
+		requireDatabase();
+		try {
+			if(!projectDao.addCategoryToProject(projectId, categoryId)) {
+				throw new DbException("Category with ID=" + categoryId + " could not be linked to project " + projectId + ".");
+			}
+		} finally {
+			projectCache.invalidate(projectId);
+		}
+	}
+	
+	public void removeCategoryFromProject(Integer projectId, Integer categoryId) {
+		requireDatabase();
+		try {
+			if(!projectDao.removeCategoryFromProject(projectId, categoryId)) {
+				throw new DbException("Category with ID=" + categoryId + " is not linked to project " + projectId + ".");
+			}
+		} finally {
+			projectCache.invalidate(projectId);
+		}
+	}
 
 }
@@ -3,12 +3,14 @@
  */
 package provided.util;
 
+import java.lang.ref.WeakReference;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.math.BigDecimal;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Time;
@@ -16,7 +18,16 @@ import java.sql.Timestamp;
 import java.sql.Types;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+import provided.util.EntityAccessors.ObjectFactory;
+import provided.util.EntityAccessors.ValueSetter;
 
 /**
  * This class contains utility methods for the DAO class.
@@ -25,6 +36,24 @@ import java.util.Objects;
  *
  */
 public abstract class DaoBase {
+  private final MappingStrategy mappingStrategy;
+
+  /**
+   * Creates a DAO that populates entities with {@link MappingStrategy#REFLECTION}.
+   */
+  protected DaoBase() {
+    this(MappingStrategy.REFLECTION);
+  }
+
+  /**
+   * Creates a DAO that populates entities using the given strategy.
+   * 
+   * @param mappingStrategy The strategy used by {@link #extract(ResultSet, Class)}.
+   */
+  protected DaoBase(MappingStrategy mappingStrategy) {
+    this.mappingStrategy = Objects.requireNonNull(mappingStrategy);
+  }
+
   /**
    * This starts a MySQL transaction. Normally MySQL starts a transaction before every request and
    * commits it after each request. By turning auto-commit off, the transaction is only committed
@@ -45,6 +74,7 @@ public abstract class DaoBase {
    */
   protected void commitTransaction(Connection conn) throws SQLException {
     conn.commit();
+    DaoMetrics.increment(DaoMetrics.COMMITS, 1);
   }
 
   /**
@@ -54,6 +84,7 @@ public abstract class DaoBase {
    * @throws SQLException Thrown if an error occurs rolling back the transaction.
    */
   protected void rollbackTransaction(Connection conn) throws SQLException {
+    DaoMetrics.increment(DaoMetrics.ROLLBACKS, 1);
     conn.rollback();
   }
 
@@ -75,6 +106,8 @@ public abstract class DaoBase {
       Class<?> classType) throws SQLException {
     int sqlType = convertJavaClassToSqlType(classType);
 
+    SlowQueryLog.bound(stmt, parameterIndex, value);
+
     if(Objects.isNull(value)) {
       stmt.setNull(parameterIndex, sqlType);
     }
@@ -92,6 +125,10 @@ public abstract class DaoBase {
           stmt.setInt(parameterIndex, (Integer)value);
           break;
 
+        case Types.BIGINT:
+          stmt.setLong(parameterIndex, (Long)value);
+          break;
+
         case Types.OTHER:
           stmt.setObject(parameterIndex, value);
           break;
@@ -117,6 +154,10 @@ public abstract class DaoBase {
       return Types.INTEGER;
     }
 
+    if(Long.class.equals(classType)) {
+      return Types.BIGINT;
+    }
+
     if(String.class.equals(classType)) {
       return Types.VARCHAR;
     }
@@ -147,7 +188,11 @@ public abstract class DaoBase {
    * @param idName The name of the parent ID field
    * @return The count of the entities attached to the parent plus one
    * @throws SQLException Thrown if an error occurs.
+   * @deprecated The count goes wrong as soon as a child row is deleted, and costs a COUNT(*) per
+   *             insert. Leave gaps between order values instead, as ProjectsDao does for steps, so
+   *             a row can be appended or moved by writing only that row.
    */
+  @Deprecated
   protected Integer getNextSequenceNumber(Connection conn, Integer id, String tableName,
       String idName) throws SQLException {
     String sql = "SELECT COUNT(*) FROM " + tableName + " WHERE " + idName + " = ?";
@@ -166,20 +211,20 @@ public abstract class DaoBase {
   }
 
   /**
-   * This returns the integer primary key value of the last row inserted into the given table. It
-   * allows the ID to be inserted into the entity object after inserting it into the table.
-   * 
-   * The other way of doing this is to call {@link Statement#getGeneratedKeys()}, but this returns a
-   * result set that needs to be parsed for the ID. It's not really any easier than this approach
-   * but should be closer to database-agnostic.
+   * This returns the integer primary key value of the last row inserted on the connection.
    * 
    * @param conn The connection
-   * @param table The name of the table on which to get the last inserted primary key value
+   * @param table The name of the table on which to get the last inserted primary key value. It is
+   *        no longer used: LAST_INSERT_ID() is per connection, not per table.
    * @return The primary key value
    * @throws SQLException Thrown if an error occurs
+   * @deprecated This costs a second round trip after every insert. Prepare the statement with
+   *             {@link #prepareInsert(Connection, String)} and use {@link #executeInsert} or
+   *             {@link #executeBatchInsert} instead.
    */
+  @Deprecated
   protected Integer getLastInsertId(Connection conn, String table) throws SQLException {
-    String sql = String.format("SELECT LAST_INSERT_ID() FROM %s", table);
+    String sql = "SELECT LAST_INSERT_ID()";
 
     try(Statement stmt = conn.createStatement()) {
       try(ResultSet rs = stmt.executeQuery(sql)) {
@@ -192,6 +237,196 @@ public abstract class DaoBase {
     }
   }
 
+  /**
+   * This prepares an INSERT statement that returns the auto-increment keys it generates. The keys
+   * come back with the update count, so no second query is needed to find them.
+   * 
+   * @param conn The connection
+   * @param sql The INSERT statement
+   * @return The prepared statement
+   * @throws SQLException Thrown if an error occurs
+   */
+  protected PreparedStatement prepareInsert(Connection conn, String sql) throws SQLException {
+    PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+
+    SlowQueryLog.prepared(stmt, sql);
+    return stmt;
+  }
+
+  /**
+   * This prepares a statement. Statements prepared here and run with the execute methods below are
+   * recorded in the {@link SlowQueryLog} when they are slow.
+   * 
+   * @param conn The connection
+   * @param sql The SQL statement
+   * @return The prepared statement
+   * @throws SQLException Thrown if an error occurs
+   */
+  protected PreparedStatement prepareStatement(Connection conn, String sql) throws SQLException {
+    PreparedStatement stmt = conn.prepareStatement(sql);
+
+    SlowQueryLog.prepared(stmt, sql);
+    return stmt;
+  }
+
+  /**
+   * This prepares a statement whose SQL is built at run time and is unlikely to be run again soon.
+   * It asks for the default forward-only, read-only result set explicitly: a pool that caches only
+   * plain prepareStatement calls (as the project's ConnectionPool does) then passes it
+   * straight to the driver, so one-off SQL doesn't evict the statements that are reused.
+   * 
+   * @param conn The connection
+   * @param sql The SQL statement
+   * @return The prepared statement
+   * @throws SQLException Thrown if an error occurs
+   */
+  protected PreparedStatement prepareUncachedStatement(Connection conn, String sql)
+      throws SQLException {
+    return prepareStatement(conn, sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+  }
+
+  /**
+   * This prepares a statement with the given result set type and concurrency.
+   * 
+   * @param conn The connection
+   * @param sql The SQL statement
+   * @param resultSetType A ResultSet.TYPE_* constant
+   * @param resultSetConcurrency A ResultSet.CONCUR_* constant
+   * @return The prepared statement
+   * @throws SQLException Thrown if an error occurs
+   */
+  protected PreparedStatement prepareStatement(Connection conn, String sql, int resultSetType,
+      int resultSetConcurrency) throws SQLException {
+    PreparedStatement stmt = conn.prepareStatement(sql, resultSetType, resultSetConcurrency);
+
+    SlowQueryLog.prepared(stmt, sql);
+    return stmt;
+  }
+
+  /**
+   * This executes a query, recording it in the {@link SlowQueryLog} if it is slow.
+   * 
+   * @param stmt The prepared statement with all parameters set
+   * @return The result set
+   * @throws SQLException Thrown if an error occurs
+   */
+  protected ResultSet executeQuery(PreparedStatement stmt) throws SQLException {
+    long start = SlowQueryLog.start();
+    ResultSet rs = stmt.executeQuery();
+
+    SlowQueryLog.queried(stmt, start, rs);
+    return rs;
+  }
+
+  /**
+   * This executes an INSERT, UPDATE or DELETE, recording it in the {@link SlowQueryLog} if it is
+   * slow.
+   * 
+   * @param stmt The prepared statement with all parameters set
+   * @return The number of rows changed
+   * @throws SQLException Thrown if an error occurs
+   */
+  protected int executeUpdate(PreparedStatement stmt) throws SQLException {
+    long start = SlowQueryLog.start();
+    int rows = stmt.executeUpdate();
+
+    SlowQueryLog.executed(stmt, start, rows);
+    return rows;
+  }
+
+  /**
+   * This executes a statement that may return several results, such as a multi-statement query,
+   * recording it in the {@link SlowQueryLog} if it is slow.
+   * 
+   * @param stmt The prepared statement with all parameters set
+   * @return true if the first result is a result set
+   * @throws SQLException Thrown if an error occurs
+   */
+  protected boolean execute(PreparedStatement stmt) throws SQLException {
+    long start = SlowQueryLog.start();
+    boolean resultSet = stmt.execute();
+
+    SlowQueryLog.executed(stmt, start, -1);
+    return resultSet;
+  }
+
+  /**
+   * This executes a batch, recording it in the {@link SlowQueryLog} if it is slow.
+   * 
+   * @param stmt The prepared statement with one or more batched rows
+   * @return The update counts, one per batched row
+   * @throws SQLException Thrown if an error occurs
+   */
+  protected int[] executeBatch(PreparedStatement stmt) throws SQLException {
+    long start = SlowQueryLog.start();
+    int[] counts = stmt.executeBatch();
+    long rows = 0;
+
+    for(int count : counts) {
+      rows += Math.max(count, 0);
+    }
+
+    SlowQueryLog.executed(stmt, start, rows);
+    return counts;
+  }
+
+  /**
+   * This executes a single-row INSERT prepared with {@link #prepareInsert(Connection, String)} and
+   * returns the primary key value generated for the row.
+   * 
+   * @param stmt The prepared statement with all parameters set
+   * @return The primary key value
+   * @throws SQLException Thrown if an error occurs or no key was generated
+   */
+  protected Integer executeInsert(PreparedStatement stmt) throws SQLException {
+    executeUpdate(stmt);
+    return getGeneratedKeys(stmt, 1).get(0);
+  }
+
+  /**
+   * This executes the batch of an INSERT prepared with {@link #prepareInsert(Connection, String)}
+   * and returns the generated primary key values in the order the rows were added to the batch.
+   * 
+   * @param stmt The prepared statement with one or more batched rows
+   * @param rowCount The number of rows in the batch
+   * @return The primary key values
+   * @throws SQLException Thrown if an error occurs or the number of keys does not match
+   */
+  protected List<Integer> executeBatchInsert(PreparedStatement stmt, int rowCount)
+      throws SQLException {
+    if(rowCount == 0) {
+      return List.of();
+    }
+
+    executeBatch(stmt);
+    return getGeneratedKeys(stmt, rowCount);
+  }
+
+  /**
+   * This reads the auto-increment keys generated by the last execution of a statement.
+   * 
+   * @param stmt The statement
+   * @param expected The number of keys expected, one per inserted row
+   * @return The keys
+   * @throws SQLException Thrown if an error occurs or the number of keys does not match
+   */
+  private List<Integer> getGeneratedKeys(Statement stmt, int expected) throws SQLException {
+    List<Integer> keys = new ArrayList<>(expected);
+
+    try(ResultSet rs = stmt.getGeneratedKeys()) {
+      while(rs.next()) {
+        keys.add(rs.getInt(1));
+      }
+    }
+
+    if(keys.size() != expected) {
+      throw new SQLException(
+          "Expected " + expected + " generated keys but received " + keys.size() + ".");
+    }
+
+    return keys;
+  }
+
   /**
    * This extracts an object of the given type from a result set. The object must have a
    * zero-argument constructor. It builds an object from a result set using reflection as follows:
@@ -205,6 +440,15 @@ public abstract class DaoBase {
    * <li>The value is assigned to the field in the object.</li>
    * </ol>
    * 
+   * The reflective work above is only done once. The constructor, fields and column names for a
+   * class are cached, and for each distinct result set shape (the list of column labels) a
+   * {@link RowPlan} is built that maps each field to a column index. The plan is remembered for the
+   * result set currently being read, so extracting the second and later rows only reads columns by
+   * index and assigns the fields.
+   * 
+   * How the object is created and its fields assigned depends on the {@link MappingStrategy} the
+   * DAO was constructed with.
+   * 
    * Example: if a query returns values for a recipe, a Recipe object is returned. So:
    * 
    * <pre>
@@ -231,68 +475,69 @@ public abstract class DaoBase {
    * @return A populated class.
    */
   protected <T> T extract(ResultSet rs, Class<T> classType) {
-    try {
-      /* Obtain the constructor and create an object of the correct type. */
-      Constructor<T> con = classType.getConstructor();
-      T obj = con.newInstance();
-
-      /* Get the list of fields and loop through them. */
-      for(Field field : classType.getDeclaredFields()) {
-        String colName = camelCaseToSnakeCase(field.getName());
-        Class<?> fieldType = field.getType();
-
-        /*
-         * Set the field accessible flag which means that we can populate even private fields
-         * without using the setter.
-         */
-        field.setAccessible(true);
-        Object fieldValue = null;
-
-        try {
-          fieldValue = rs.getObject(colName);
-        }
-        catch(SQLException e) {
-          /*
-           * An exception caught here means that the field name isn't in the result set. Don't take
-           * any action.
-           */
-        }
+    long start = DaoMetrics.start();
 
-        /*
-         * Only set the value in the object if there is a value with the same name in the result
-         * set. This will preserve instance variables (like lists) that are assigned values when the
-         * object is created.
-         */
-        if(Objects.nonNull(fieldValue)) {
-          /*
-           * Convert the following types: Time -> LocalTime, and Timestamp -> LocalDateTime.
-           */
-          if(fieldValue instanceof Time && fieldType.equals(LocalTime.class)) {
-            fieldValue = ((Time)fieldValue).toLocalTime();
-          }
-          else if(fieldValue instanceof Timestamp && fieldType.equals(LocalDateTime.class)) {
-            fieldValue = ((Timestamp)fieldValue).toLocalDateTime();
-          }
-
-          field.set(obj, fieldValue);
-        }
-      }
+    try {
+      T obj = rowPlan(rs, classType, mappingStrategy).map(rs);
 
+      DaoMetrics.recordSince(DaoMetrics.ROW_MAPPING, start);
+      DaoMetrics.increment(DaoMetrics.ROWS_MAPPED, 1);
+      SlowQueryLog.rowExtracted(rs);
       return obj;
-
     }
     catch(Exception e) {
       throw new DaoException("Unable to create object of type " + classType.getName(), e);
     }
   }
 
+  /**
+   * Returns the mapping plan for the given result set and class. The plan used for the previous
+   * row on this thread is reused if it was built for the same result set, class and strategy,
+   * otherwise the plan is looked up (or built) from the result set's column labels.
+   * 
+   * @param <T> The type of object the plan creates.
+   * @param rs The result set being read.
+   * @param classType The class of the object to create.
+   * @param strategy The mapping strategy.
+   * @return The row plan.
+   * @throws SQLException Thrown if the result set metadata cannot be read.
+   */
+  @SuppressWarnings("unchecked")
+  private static <T> RowPlan<T> rowPlan(ResultSet rs, Class<T> classType,
+      MappingStrategy strategy) throws SQLException {
+    CurrentPlan current = CURRENT_PLAN.get();
+
+    if(current.resultSet.get() == rs && current.plan.classMapping.classType == classType
+        && current.plan.strategy == strategy) {
+      return (RowPlan<T>)current.plan;
+    }
+
+    ClassMapping<T> classMapping =
+        (ClassMapping<T>)CLASS_MAPPINGS.computeIfAbsent(classType, ClassMapping::new);
+
+    ResultSetMetaData meta = rs.getMetaData();
+    String[] labels = new String[meta.getColumnCount()];
+    StringBuilder shape = new StringBuilder(strategy.name()).append(':');
+
+    for(int index = 0; index < labels.length; index++) {
+      labels[index] = meta.getColumnLabel(index + 1).toLowerCase(Locale.ROOT);
+      shape.append(labels[index]).append(',');
+    }
+
+    RowPlan<T> plan = classMapping.plans.computeIfAbsent(shape.toString(),
+        key -> new RowPlan<>(classMapping, labels, strategy));
+
+    CURRENT_PLAN.set(new CurrentPlan(rs, plan));
+    return plan;
+  }
+
   /**
    * This converts a camel case value (rowInsertTime) to snake case (row_insert_time).
    * 
    * @param identifier The name in camel case to convert.
    * @return The name converted to snake case.
    */
-  private String camelCaseToSnakeCase(String identifier) {
+  static String camelCaseToSnakeCase(String identifier) {
     StringBuilder nameBuilder = new StringBuilder();
 
     for(char ch : identifier.toCharArray()) {
@@ -307,6 +552,159 @@ public abstract class DaoBase {
     return nameBuilder.toString();
   }
 
+  /** Reflection data for each entity class, computed the first time the class is extracted. */
+  private static final Map<Class<?>, ClassMapping<?>> CLASS_MAPPINGS = new ConcurrentHashMap<>();
+
+  /** The plan used for the most recent extract on this thread and the result set it was built for. */
+  private static final ThreadLocal<CurrentPlan> CURRENT_PLAN =
+      ThreadLocal.withInitial(() -> new CurrentPlan(null, null));
+
+  /**
+   * This holds the reflection data for one entity class: the accessible zero-argument constructor,
+   * the accessible fields and the snake case column name for each field. It also holds the row
+   * plans that have been built for the class, keyed by strategy and result set shape.
+   * 
+   * @param <T> The entity type.
+   */
+  private static class ClassMapping<T> {
+    private final Class<T> classType;
+    private final Constructor<T> constructor;
+    private final Field[] fields;
+    private final String[] columnNames;
+    private final Map<String, RowPlan<T>> plans = new ConcurrentHashMap<>();
+
+    private ClassMapping(Class<T> classType) {
+      try {
+        this.classType = classType;
+        this.constructor = classType.getConstructor();
+        this.fields = classType.getDeclaredFields();
+        this.columnNames = new String[fields.length];
+
+        for(int index = 0; index < fields.length; index++) {
+          fields[index].setAccessible(true);
+          columnNames[index] = camelCaseToSnakeCase(fields[index].getName());
+        }
+      }
+      catch(Exception e) {
+        throw new DaoException("Unable to map class " + classType.getName(), e);
+      }
+    }
+  }
+
+  /**
+   * This is the mapping of one entity class onto one result set shape. Only the fields that have a
+   * matching column are kept, each with the one-based index of its column, the conversion to apply
+   * to the column value and the setter (reflective or generated) that assigns it.
+   * 
+   * @param <T> The entity type.
+   */
+  private static class RowPlan<T> {
+    private final ClassMapping<T> classMapping;
+    private final MappingStrategy strategy;
+    private final ObjectFactory<T> factory;
+    private final int[] columnIndexes;
+    private final Converter[] converters;
+    private final ValueSetter[] setters;
+
+    private RowPlan(ClassMapping<T> classMapping, String[] labels, MappingStrategy strategy) {
+      this.classMapping = classMapping;
+      this.strategy = strategy;
+      this.factory = EntityAccessors.factory(classMapping.constructor, strategy);
+
+      Field[] mappedFields = new Field[classMapping.fields.length];
+      int[] mappedIndexes = new int[mappedFields.length];
+      int count = 0;
+
+      for(int field = 0; field < classMapping.fields.length; field++) {
+        /* Like ResultSet.findColumn(), the first column with a matching label wins. */
+        for(int column = 0; column < labels.length; column++) {
+          if(labels[column].equals(classMapping.columnNames[field])) {
+            mappedFields[count] = classMapping.fields[field];
+            mappedIndexes[count++] = column + 1;
+            break;
+          }
+        }
+      }
+
+      this.columnIndexes = Arrays.copyOf(mappedIndexes, count);
+      this.converters = new Converter[count];
+      this.setters = new ValueSetter[count];
+
+      for(int index = 0; index < count; index++) {
+        converters[index] = Converter.forFieldType(mappedFields[index].getType());
+        setters[index] = EntityAccessors.setter(mappedFields[index], strategy);
+      }
+    }
+
+    /**
+     * Creates an object and populates it from the current row. As before, null column values are
+     * not assigned so that field initializers are preserved.
+     */
+    private T map(ResultSet rs) throws ReflectiveOperationException, SQLException {
+      T obj = factory.create();
+
+      for(int index = 0; index < columnIndexes.length; index++) {
+        Object fieldValue = rs.getObject(columnIndexes[index]);
+
+        if(Objects.nonNull(fieldValue)) {
+          setters[index].set(obj, converters[index].convert(fieldValue));
+        }
+      }
+
+      return obj;
+    }
+  }
+
+  /**
+   * Converts a value returned by the driver into the type of the field: Time -> LocalTime, and
+   * Timestamp -> LocalDateTime. Other values are assigned as they are.
+   */
+  private enum Converter {
+    IDENTITY {
+      @Override
+      Object convert(Object value) {
+        return value;
+      }
+    },
+    LOCAL_TIME {
+      @Override
+      Object convert(Object value) {
+        return value instanceof Time ? ((Time)value).toLocalTime() : value;
+      }
+    },
+    LOCAL_DATE_TIME {
+      @Override
+      Object convert(Object value) {
+        return value instanceof Timestamp ? ((Timestamp)value).toLocalDateTime() : value;
+      }
+    };
+
+    abstract Object convert(Object value);
+
+    static Converter forFieldType(Class<?> fieldType) {
+      if(LocalTime.class.equals(fieldType)) {
+        return LOCAL_TIME;
+      }
+
+      if(LocalDateTime.class.equals(fieldType)) {
+        return LOCAL_DATE_TIME;
+      }
+
+      return IDENTITY;
+    }
+  }
+
+  /** Pairs a row plan with the result set it was last used for. */
+  private static class CurrentPlan {
+    private final WeakReference<ResultSet> resultSet;
+    private final RowPlan<?> plan;
+
+    private CurrentPlan(ResultSet resultSet, RowPlan<?> plan) {
+      this.resultSet = new WeakReference<>(resultSet);
+      this.plan = plan;
+    }
+  }
+
   /**
    * This class declares the exception throw by the {@link DaoBase} class. It is a thin wrapper for
    * {@link RuntimeException}.
@@ -0,0 +1,233 @@
+/**
+ * 
+ */
+package provided.util;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+/**
+ * This is the registry of the timing histograms and counters recorded by the DAO layer:
+ * connection acquire time, statement execute time, time spent mapping rows, the number of rows
+ * mapped, commits and rollbacks, and the overall time of each DAO operation.
+ * 
+ * Recording is off unless the system property projects.metrics.enabled is true or
+ * {@link #setEnabled(boolean)} is called. When it is off, the instrumented code only reads a
+ * volatile flag: {@link #start()} returns zero and the recording methods return immediately.
+ * 
+ * A snapshot can be taken as text or JSON, and the same operations are available over JMX after
+ * {@link #registerMBean()}.
+ * 
+ * @author Promineo
+ *
+ */
+public final class DaoMetrics {
+  /** The JMX object name the metrics are registered under. */
+  public static final String OBJECT_NAME = "projects:type=DaoMetrics";
+
+  private static final Map<String, Histogram> HISTOGRAMS = new ConcurrentSkipListMap<>();
+  private static final Map<String, LongAdder> COUNTERS = new ConcurrentSkipListMap<>();
+
+  private static volatile boolean enabled = Boolean.getBoolean("projects.metrics.enabled");
+
+  /** Time to borrow a connection from the pool. */
+  public static final Histogram CONNECTION_ACQUIRE = histogram("connection.acquire");
+
+  /** Time to execute a statement (executeQuery, executeUpdate, executeBatch and execute). */
+  public static final Histogram STATEMENT_EXECUTE = histogram("statement.execute");
+
+  /** Time to map one row to an entity in {@link DaoBase#extract}. */
+  public static final Histogram ROW_MAPPING = histogram("row.mapping");
+
+  public static final LongAdder ROWS_MAPPED = counter("rows.mapped");
+  public static final LongAdder COMMITS = counter("transaction.commits");
+  public static final LongAdder ROLLBACKS = counter("transaction.rollbacks");
+
+  private DaoMetrics() {}
+
+  public static boolean isEnabled() {
+    return enabled;
+  }
+
+  public static void setEnabled(boolean enabled) {
+    DaoMetrics.enabled = enabled;
+  }
+
+  /**
+   * Returns the histogram with the given name, creating it the first time it is requested.
+   * Callers should keep the histogram in a constant rather than looking it up on every call.
+   * 
+   * @param name The histogram name
+   * @return The histogram
+   */
+  public static Histogram histogram(String name) {
+    return HISTOGRAMS.computeIfAbsent(name, Histogram::new);
+  }
+
+  /**
+   * Returns the counter with the given name, creating it the first time it is requested.
+   * 
+   * @param name The counter name
+   * @return The counter
+   */
+  public static LongAdder counter(String name) {
+    return COUNTERS.computeIfAbsent(name, key -> new LongAdder());
+  }
+
+  /**
+   * @return The current {@link System#nanoTime()} if metrics are enabled, otherwise zero.
+   */
+  public static long start() {
+    return enabled ? System.nanoTime() : 0;
+  }
+
+  /**
+   * Records the time elapsed since a {@link #start()} value, unless metrics were disabled when it
+   * was taken.
+   * 
+   * @param histogram The histogram to record into
+   * @param startNanos The value returned by {@link #start()}
+   */
+  public static void recordSince(Histogram histogram, long startNanos) {
+    if(startNanos != 0) {
+      histogram.recordSince(startNanos);
+    }
+  }
+
+  /**
+   * Adds to a counter if metrics are enabled.
+   * 
+   * @param counter The counter
+   * @param amount The amount to add
+   */
+  public static void increment(LongAdder counter, long amount) {
+    if(enabled) {
+      counter.add(amount);
+    }
+  }
+
+  /**
+   * Clears every histogram and counter.
+   */
+  public static void reset() {
+    HISTOGRAMS.values().forEach(Histogram::reset);
+    COUNTERS.values().forEach(LongAdder::reset);
+  }
+
+  /**
+   * @return The counters and histograms as text, one line each. Times are in microseconds.
+   */
+  public static String snapshotText() {
+    StringBuilder text = new StringBuilder();
+
+    COUNTERS.forEach((name, counter) -> text.append(name).append(' ').append(counter.sum())
+        .append('\n'));
+
+    for(Histogram histogram : HISTOGRAMS.values()) {
+      Histogram.Snapshot snapshot = histogram.snapshot();
+
+      // @formatter:off
+      text.append(snapshot.getName())
+          .append(" count=").append(snapshot.getCount())
+          .append(" mean=").append(micros(Math.round(snapshot.getMean())))
+          .append(" p50=").append(micros(snapshot.getPercentile(50)))
+          .append(" p90=").append(micros(snapshot.getPercentile(90)))
+          .append(" p99=").append(micros(snapshot.getPercentile(99)))
+          .append(" max=").append(micros(snapshot.getMax()))
+          .append(" (us)\n");
+      // @formatter:on
+    }
+
+    return text.toString();
+  }
+
+  /**
+   * @return The counters and histograms as a JSON object. Times are in nanoseconds.
+   */
+  public static String snapshotJson() {
+    StringBuilder json = new StringBuilder("{\"counters\":{");
+    String separator = "";
+
+    for(Map.Entry<String, LongAdder> counter : COUNTERS.entrySet()) {
+      json.append(separator).append('"').append(counter.getKey()).append("\":")
+          .append(counter.getValue().sum());
+      separator = ",";
+    }
+
+    json.append("},\"histograms\":{");
+    separator = "";
+
+    for(Histogram histogram : HISTOGRAMS.values()) {
+      Histogram.Snapshot snapshot = histogram.snapshot();
+
+      // @formatter:off
+      json.append(separator).append('"').append(snapshot.getName()).append("\":{")
+          .append("\"count\":").append(snapshot.getCount())
+          .append(",\"meanNanos\":").append(Math.round(snapshot.getMean()))
+          .append(",\"p50Nanos\":").append(snapshot.getPercentile(50))
+          .append(",\"p90Nanos\":").append(snapshot.getPercentile(90))
+          .append(",\"p99Nanos\":").append(snapshot.getPercentile(99))
+          .append(",\"maxNanos\":").append(snapshot.getMax())
+          .append('}');
+      // @formatter:on
+      separator = ",";
+    }
+
+    return json.append("}}").toString();
+  }
+
+  /**
+   * Registers the metrics with the platform MBean server. Calling this more than once has no
+   * further effect.
+   */
+  public static synchronized void registerMBean() {
+    try {
+      ObjectName name = new ObjectName(OBJECT_NAME);
+
+      if(!ManagementFactory.getPlatformMBeanServer().isRegistered(name)) {
+        ManagementFactory.getPlatformMBeanServer().registerMBean(new StandardMBean(new MBean(), DaoMetricsMBean.class), name);
+      }
+    }
+    catch(Exception e) {
+      throw new DaoBase.DaoException("Unable to register " + OBJECT_NAME, e);
+    }
+  }
+
+  private static String micros(long nanos) {
+    return String.format("%.1f", nanos / 1_000.0);
+  }
+
+  /**
+   * The standard MBean that exposes the metrics over JMX.
+   */
+  private static class MBean implements DaoMetricsMBean {
+    @Override
+    public boolean isEnabled() {
+      return DaoMetrics.isEnabled();
+    }
+
+    @Override
+    public void setEnabled(boolean enabled) {
+      DaoMetrics.setEnabled(enabled);
+    }
+
+    @Override
+    public String getSnapshotText() {
+      return snapshotText();
+    }
+
+    @Override
+    public String getSnapshotJson() {
+      return snapshotJson();
+    }
+
+    @Override
+    public void reset() {
+      DaoMetrics.reset();
+    }
+  }
+}
@@ -0,0 +1,22 @@
+/**
+ * 
+ */
+package provided.util;
+
+/**
+ * The JMX view of {@link DaoMetrics}, registered as {@value DaoMetrics#OBJECT_NAME}.
+ * 
+ * @author Promineo
+ *
+ */
+public interface DaoMetricsMBean {
+  boolean isEnabled();
+
+  void setEnabled(boolean enabled);
+
+  String getSnapshotText();
+
+  String getSnapshotJson();
+
+  void reset();
+}
@@ -0,0 +1,119 @@
+/**
+ *
+ */
+package provided.util;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+
+/**
+ * This builds the functions {@link DaoBase} uses to create entity objects and assign their
+ * fields, either reflectively or as lambdas bound to the constructor and setters with
+ * {@link LambdaMetafactory}.
+ *
+ * @author Promineo
+ *
+ */
+final class EntityAccessors {
+  private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+  private EntityAccessors() {}
+
+  /**
+   * Creates a new instance of an entity.
+   *
+   * @param <T> The entity type.
+   */
+  interface ObjectFactory<T> {
+    T create() throws ReflectiveOperationException;
+  }
+
+  /**
+   * Assigns one value to one property of an entity.
+   */
+  interface ValueSetter {
+    void set(Object target, Object value) throws ReflectiveOperationException;
+  }
+
+  /**
+   * Returns a factory for the given class. With {@link MappingStrategy#GENERATED} the factory is a
+   * lambda that calls the public zero-argument constructor directly. If the constructor cannot be
+   * bound, the reflective factory is returned.
+   *
+   * @param <T> The entity type.
+   * @param constructor The accessible zero-argument constructor.
+   * @param strategy The mapping strategy.
+   * @return The factory.
+   */
+  @SuppressWarnings("unchecked")
+  static <T> ObjectFactory<T> factory(Constructor<T> constructor, MappingStrategy strategy) {
+    if(strategy == MappingStrategy.GENERATED) {
+      Class<T> classType = constructor.getDeclaringClass();
+
+      try {
+        MethodHandle target = LOOKUP.findConstructor(classType, MethodType.methodType(void.class));
+
+        // @formatter:off
+        CallSite site = LambdaMetafactory.metafactory(LOOKUP, "create",
+            MethodType.methodType(ObjectFactory.class),
+            MethodType.methodType(Object.class),
+            target,
+            MethodType.methodType(classType));
+        // @formatter:on
+
+        return (ObjectFactory<T>)site.getTarget().invoke();
+      }
+      catch(Throwable e) {
+        /* Fall through to the reflective factory. */
+      }
+    }
+
+    return constructor::newInstance;
+  }
+
+  /**
+   * Returns a setter for the given field. With {@link MappingStrategy#GENERATED} the setter is a
+   * lambda that calls the public setter method directly (setNumRequired for numRequired). If
+   * there is no such method, or the field is a primitive, the reflective setter is returned.
+   *
+   * @param field The accessible field.
+   * @param strategy The mapping strategy.
+   * @return The setter.
+   */
+  static ValueSetter setter(Field field, MappingStrategy strategy) {
+    Class<?> fieldType = field.getType();
+
+    if(strategy == MappingStrategy.GENERATED && !fieldType.isPrimitive()
+        && !Modifier.isStatic(field.getModifiers())) {
+      Class<?> classType = field.getDeclaringClass();
+      String name = field.getName();
+      String setterName = "set" + Character.toUpperCase(name.charAt(0)) + name.substring(1);
+
+      try {
+        MethodHandle target = LOOKUP.findVirtual(classType, setterName,
+            MethodType.methodType(void.class, fieldType));
+
+        // @formatter:off
+        CallSite site = LambdaMetafactory.metafactory(LOOKUP, "set",
+            MethodType.methodType(ValueSetter.class),
+            MethodType.methodType(void.class, Object.class, Object.class),
+            target,
+            MethodType.methodType(void.class, classType, fieldType));
+        // @formatter:on
+
+        return (ValueSetter)site.getTarget().invoke();
+      }
+      catch(Throwable e) {
+        /* Fall through to the reflective setter. */
+      }
+    }
+
+    return field::set;
+  }
+}
@@ -0,0 +1,171 @@
+/**
+ * 
+ */
+package provided.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * This is a lock-free, fixed-size histogram of non-negative long values (normally durations in
+ * nanoseconds). Like HdrHistogram it uses log-linear buckets: every power of two is split into 16
+ * sub-buckets, so any recorded value is reported to within about 6% while the whole range of a
+ * long fits in 1024 counters. Recording is a few bit operations and an atomic increment, and never
+ * allocates.
+ * 
+ * @author Promineo
+ *
+ */
+public class Histogram {
+  private static final int SUB_BUCKET_BITS = 4;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final int BUCKETS = 64 * SUB_BUCKETS;
+
+  private final String name;
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+  private final AtomicLong count = new AtomicLong();
+  private final AtomicLong sum = new AtomicLong();
+  private final AtomicLong max = new AtomicLong();
+
+  /**
+   * @param name The name the histogram is reported under
+   */
+  public Histogram(String name) {
+    this.name = name;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Records one value. Negative values are recorded as zero.
+   * 
+   * @param value The value to record
+   */
+  public void record(long value) {
+    long recorded = Math.max(0, value);
+
+    counts.incrementAndGet(bucketIndex(recorded));
+    count.incrementAndGet();
+    sum.addAndGet(recorded);
+    max.accumulateAndGet(recorded, Math::max);
+  }
+
+  /**
+   * Records the nanoseconds elapsed since the given {@link System#nanoTime()} value.
+   * 
+   * @param startNanos The start time
+   */
+  public void recordSince(long startNanos) {
+    record(System.nanoTime() - startNanos);
+  }
+
+  /**
+   * Clears all recorded values. Values recorded concurrently with a reset may be partly kept.
+   */
+  public void reset() {
+    for(int index = 0; index < BUCKETS; index++) {
+      counts.set(index, 0);
+    }
+
+    count.set(0);
+    sum.set(0);
+    max.set(0);
+  }
+
+  /**
+   * @return A consistent-enough copy of the histogram for reporting.
+   */
+  public Snapshot snapshot() {
+    long[] copy = new long[BUCKETS];
+    long total = 0;
+
+    for(int index = 0; index < BUCKETS; index++) {
+      copy[index] = counts.get(index);
+      total += copy[index];
+    }
+
+    return new Snapshot(name, copy, total, sum.get(), max.get());
+  }
+
+  private static int bucketIndex(long value) {
+    if(value < SUB_BUCKETS) {
+      return (int)value;
+    }
+
+    int exponent = 63 - Long.numberOfLeadingZeros(value);
+    int subBucket = (int)(value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+    return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+  }
+
+  /** Returns the highest value that falls into the given bucket. */
+  private static long bucketUpperBound(int index) {
+    if(index < SUB_BUCKETS) {
+      return index;
+    }
+
+    int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+    int subBucket = index % SUB_BUCKETS;
+    long lowerBound = (long)(SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS);
+    return lowerBound + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+  }
+
+  /**
+   * A point-in-time copy of a histogram.
+   */
+  public static class Snapshot {
+    private final String name;
+    private final long[] counts;
+    private final long count;
+    private final long sum;
+    private final long max;
+
+    private Snapshot(String name, long[] counts, long count, long sum, long max) {
+      this.name = name;
+      this.counts = counts;
+      this.count = count;
+      this.sum = sum;
+      this.max = max;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public long getCount() {
+      return count;
+    }
+
+    public long getMax() {
+      return max;
+    }
+
+    public double getMean() {
+      return count == 0 ? 0.0 : (double)sum / count;
+    }
+
+    /**
+     * @param percentile The percentile, from 0 to 100
+     * @return The upper bound of the bucket holding the given percentile, capped at the maximum
+     */
+    public long getPercentile(double percentile) {
+      if(count == 0) {
+        return 0;
+      }
+
+      long rank = Math.max(1, (long)Math.ceil(count * percentile / 100.0));
+      long seen = 0;
+
+      for(int index = 0; index < counts.length; index++) {
+        seen += counts[index];
+
+        if(seen >= rank) {
+          return Math.min(bucketUpperBound(index), max);
+        }
+      }
+
+      return max;
+    }
+  }
+}
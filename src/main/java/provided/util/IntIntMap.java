@@ -0,0 +1,174 @@
+/**
+ * 
+ */
+package provided.util;
+
+import java.util.Arrays;
+
+/**
+ * This is an open-addressing hash map from int keys to int values, used by the DAOs to join child
+ * rows to their parents by ID without boxing every key into an {@link Integer}. Keys and values are
+ * held in two parallel arrays and collisions are resolved by linear probing, so a lookup touches
+ * one or two cache lines and never allocates. Used with {@link #putIfAbsent(int, int)} it doubles
+ * as an int set.
+ * 
+ * Keys may be any int value. Values must not be negative, since {@link #MISSING} is returned for
+ * absent keys. Entries cannot be removed.
+ * 
+ * @author Promineo
+ * 
+ */
+public class IntIntMap {
+  /** The value returned by {@link #get(int)} and {@link #putIfAbsent(int, int)} for absent keys. */
+  public static final int MISSING = -1;
+
+  private static final int EMPTY = -1;
+  private static final int MIN_CAPACITY = 8;
+
+  private int[] keys;
+  private int[] values;
+  private int mask;
+  private int size;
+
+  public IntIntMap() {
+    this(MIN_CAPACITY / 2);
+  }
+
+  /**
+   * @param expectedSize The number of entries the map should hold before it has to grow
+   */
+  public IntIntMap(int expectedSize) {
+    allocate(tableSizeFor(Math.max(0, expectedSize)));
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public boolean containsKey(int key) {
+    return get(key) != MISSING;
+  }
+
+  /**
+   * @param key The key to look up
+   * @return The value for the key, or {@link #MISSING} if the key is not in the map
+   */
+  public int get(int key) {
+    int slot = slot(key);
+    return values[slot] == EMPTY ? MISSING : values[slot];
+  }
+
+  /**
+   * Adds or replaces the value for a key.
+   * 
+   * @param key The key
+   * @param value The value, which must not be negative
+   * @return The previous value for the key, or {@link #MISSING} if there was none
+   */
+  public int put(int key, int value) {
+    checkValue(value);
+
+    int slot = slot(key);
+    int previous = values[slot];
+
+    if(previous == EMPTY) {
+      insert(slot, key, value);
+      return MISSING;
+    }
+
+    values[slot] = value;
+    return previous;
+  }
+
+  /**
+   * Adds the value for a key unless the key is already in the map.
+   * 
+   * @param key The key
+   * @param value The value, which must not be negative
+   * @return The existing value for the key, or {@link #MISSING} if the key was added
+   */
+  public int putIfAbsent(int key, int value) {
+    checkValue(value);
+
+    int slot = slot(key);
+
+    if(values[slot] == EMPTY) {
+      insert(slot, key, value);
+      return MISSING;
+    }
+
+    return values[slot];
+  }
+
+  /*
+   * finds the slot holding the key, or the empty slot where it would be inserted. The table is
+   * never more than half full, so the probe always ends
+   */
+  private int slot(int key) {
+    int slot = mix(key) & mask;
+
+    while(values[slot] != EMPTY && keys[slot] != key) {
+      slot = (slot + 1) & mask;
+    }
+
+    return slot;
+  }
+
+  private void insert(int slot, int key, int value) {
+    keys[slot] = key;
+    values[slot] = value;
+
+    if(++size > keys.length / 2) {
+      rehash();
+    }
+  }
+
+  private void rehash() {
+    int[] oldKeys = keys;
+    int[] oldValues = values;
+
+    allocate(oldKeys.length * 2);
+
+    for(int index = 0; index < oldKeys.length; index++) {
+      if(oldValues[index] != EMPTY) {
+        int slot = slot(oldKeys[index]);
+        keys[slot] = oldKeys[index];
+        values[slot] = oldValues[index];
+      }
+    }
+  }
+
+  private void allocate(int capacity) {
+    keys = new int[capacity];
+    values = new int[capacity];
+    Arrays.fill(values, EMPTY);
+    mask = capacity - 1;
+  }
+
+  // the smallest power of two that holds the expected entries at a load factor of one half
+  private static int tableSizeFor(int expectedSize) {
+    int capacity = MIN_CAPACITY;
+
+    while(capacity / 2 < expectedSize) {
+      capacity *= 2;
+    }
+
+    return capacity;
+  }
+
+  // spreads sequential IDs across the table (the finalizer step of MurmurHash3)
+  private static int mix(int key) {
+    int hash = key * 0x85ebca6b;
+    return hash ^ (hash >>> 16);
+  }
+
+  private static void checkValue(int value) {
+    if(value < 0) {
+      throw new IllegalArgumentException("Values must not be negative but was " + value + ".");
+    }
+  }
+}
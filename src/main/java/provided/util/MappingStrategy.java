@@ -0,0 +1,28 @@
+/**
+ *
+ */
+package provided.util;
+
+/**
+ * This selects how {@link DaoBase#extract(java.sql.ResultSet, Class)} populates entity objects. A
+ * DAO chooses its strategy when it is constructed.
+ *
+ * @author Promineo
+ *
+ */
+public enum MappingStrategy {
+  /**
+   * Objects are created through the zero-argument constructor and populated by assigning the
+   * fields reflectively with {@link java.lang.reflect.Field#set(Object, Object)}.
+   */
+  REFLECTION,
+
+  /**
+   * Objects are created and populated through lambdas that the JVM spins at runtime (using
+   * {@link java.lang.invoke.LambdaMetafactory}) that call the zero-argument constructor and the
+   * public setters directly. These are plain interface calls that the JIT can inline. A field
+   * that has no matching public setter, or a class whose constructor cannot be bound, falls back
+   * to the reflective path.
+   */
+  GENERATED
+}
@@ -0,0 +1,296 @@
+/**
+ *
+ */
+package provided.util;
+
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * This is an optional log of slow statements executed through {@link DaoBase}. Any statement whose
+ * execution takes longer than the threshold is recorded with its SQL, the values bound with
+ * {@link DaoBase#setParameter}, the duration, the row count and the DAO method that ran it. Entries
+ * go into a fixed-size ring buffer, so only the most recent slow statements are kept.
+ *
+ * The log is off unless the system property projects.slowlog.thresholdMillis is set or
+ * {@link #enable(long)} is called. While a statement runs only references are kept: the SQL
+ * string, the bound values and a start time. Nothing is copied or formatted unless the statement
+ * turns out to be slow, and formatting only happens when the log is dumped.
+ *
+ * Each statement prepared through DaoBase is tracked on its own, in weak maps kept per thread, so a
+ * statement prepared or run while another one's parameters are being bound doesn't stop the other
+ * one being recorded. For a batch, the values bound for the last row are the ones recorded. For a
+ * query, the row count is the number of rows extracted from its result set so far.
+ *
+ * @author Promineo
+ *
+ */
+public final class SlowQueryLog {
+  private static final int CAPACITY = Integer.getInteger("projects.slowlog.capacity", 256);
+
+  private static final AtomicReferenceArray<Entry> ENTRIES = new AtomicReferenceArray<>(CAPACITY);
+  private static final AtomicLong SEQUENCE = new AtomicLong();
+  private static final ThreadLocal<Map<Statement, Trace>> TRACES =
+      ThreadLocal.withInitial(WeakHashMap::new);
+  private static final ThreadLocal<Map<ResultSet, Entry>> PENDING =
+      ThreadLocal.withInitial(WeakHashMap::new);
+  private static final StackWalker WALKER =
+      StackWalker.getInstance(StackWalker.Option.RETAIN_CLASS_REFERENCE);
+
+  private static volatile boolean enabled;
+  private static volatile long thresholdNanos;
+
+  static {
+    Long thresholdMillis = Long.getLong("projects.slowlog.thresholdMillis");
+
+    if(thresholdMillis != null) {
+      enable(thresholdMillis);
+    }
+  }
+
+  private SlowQueryLog() {}
+
+  /**
+   * Turns the log on.
+   *
+   * @param thresholdMillis Statements that take longer than this are recorded
+   */
+  public static void enable(long thresholdMillis) {
+    thresholdNanos = thresholdMillis * 1_000_000;
+    enabled = true;
+  }
+
+  public static void disable() {
+    enabled = false;
+  }
+
+  public static boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * @return The recorded slow statements, oldest first.
+   */
+  public static List<Entry> entries() {
+    long end = SEQUENCE.get();
+    long begin = Math.max(0, end - CAPACITY);
+    List<Entry> entries = new ArrayList<>();
+
+    for(long sequence = begin; sequence < end; sequence++) {
+      Entry entry = ENTRIES.get((int)(sequence % CAPACITY));
+
+      if(entry != null && entry.sequence == sequence) {
+        entries.add(entry);
+      }
+    }
+
+    return entries;
+  }
+
+  /**
+   * @return The recorded slow statements formatted one per line, oldest first.
+   */
+  public static String dump() {
+    StringBuilder text = new StringBuilder();
+
+    for(Entry entry : entries()) {
+      text.append(entry).append('\n');
+    }
+
+    return text.toString();
+  }
+
+  public static void clear() {
+    for(int index = 0; index < CAPACITY; index++) {
+      ENTRIES.set(index, null);
+    }
+  }
+
+  /** Starts tracking a statement that was just prepared. */
+  static void prepared(Statement stmt, String sql) {
+    if(enabled) {
+      TRACES.get().put(stmt, new Trace(sql));
+    }
+  }
+
+  /** Remembers a bound value if the statement is being tracked. */
+  static void bound(Statement stmt, int parameterIndex, Object value) {
+    if(enabled) {
+      Trace trace = TRACES.get().get(stmt);
+
+      if(trace != null) {
+        trace.bind(parameterIndex, value);
+      }
+    }
+  }
+
+  /** @return The start time of an execution, or zero if the log is off. */
+  static long start() {
+    return enabled ? System.nanoTime() : 0;
+  }
+
+  /**
+   * Records the execution if it was slower than the threshold.
+   *
+   * @param stmt The statement that was executed
+   * @param startNanos The value returned by {@link #start()}
+   * @param rows The update count, or -1 if there is none
+   */
+  static void executed(Statement stmt, long startNanos, long rows) {
+    record(stmt, startNanos, rows);
+  }
+
+  /**
+   * Records the query if it was slower than the threshold. Its row count then grows as rows are
+   * extracted from the result set.
+   *
+   * @param stmt The statement that was executed
+   * @param startNanos The value returned by {@link #start()}
+   * @param rs The result set the query returned
+   */
+  static void queried(Statement stmt, long startNanos, ResultSet rs) {
+    Entry entry = record(stmt, startNanos, 0);
+
+    if(entry != null) {
+      PENDING.get().put(rs, entry);
+    }
+  }
+
+  private static Entry record(Statement stmt, long startNanos, long rows) {
+    if(startNanos == 0) {
+      return null;
+    }
+
+    long duration = System.nanoTime() - startNanos;
+
+    if(duration <= thresholdNanos) {
+      return null;
+    }
+
+    Trace trace = TRACES.get().get(stmt);
+
+    if(trace == null) {
+      return null;
+    }
+
+    long sequence = SEQUENCE.getAndIncrement();
+
+    // @formatter:off
+    Entry entry = new Entry(sequence, Instant.now(), duration, trace.sql,
+        Arrays.copyOf(trace.values, trace.valueCount), Math.max(rows, 0), caller());
+    // @formatter:on
+
+    ENTRIES.set((int)(sequence % CAPACITY), entry);
+    return entry;
+  }
+
+  /** Counts a row extracted from the result set of a slow query. */
+  static void rowExtracted(ResultSet rs) {
+    if(enabled) {
+      Entry pending = PENDING.get().get(rs);
+
+      if(pending != null) {
+        pending.rows++;
+      }
+    }
+  }
+
+  /** Finds the DAO method that ran the statement: the first caller outside this package. */
+  private static String caller() {
+    Optional<StackWalker.StackFrame> frame = WALKER.walk(frames -> frames
+        .filter(candidate -> !candidate.getDeclaringClass().getPackageName()
+            .equals(SlowQueryLog.class.getPackageName()))
+        .findFirst());
+
+    return frame.map(found -> found.getClassName() + "." + found.getMethodName()).orElse("?");
+  }
+
+  /**
+   * One slow statement.
+   */
+  public static class Entry {
+    private final long sequence;
+    private final Instant time;
+    private final long durationNanos;
+    private final String sql;
+    private final Object[] values;
+    private final String caller;
+    private volatile long rows;
+
+    private Entry(long sequence, Instant time, long durationNanos, String sql, Object[] values,
+        long rows, String caller) {
+      this.sequence = sequence;
+      this.time = time;
+      this.durationNanos = durationNanos;
+      this.sql = sql;
+      this.values = values;
+      this.rows = rows;
+      this.caller = caller;
+    }
+
+    public Instant getTime() {
+      return time;
+    }
+
+    public long getDurationNanos() {
+      return durationNanos;
+    }
+
+    public String getSql() {
+      return sql;
+    }
+
+    /**
+     * @return The bound values, indexed from zero (parameter one is at index zero).
+     */
+    public Object[] getValues() {
+      return values.clone();
+    }
+
+    public long getRows() {
+      return rows;
+    }
+
+    public String getCaller() {
+      return caller;
+    }
+
+    @Override
+    public String toString() {
+      return time + " " + (durationNanos / 1_000_000) + "ms rows=" + rows + " " + caller + " ["
+          + sql + "] " + Arrays.toString(values);
+    }
+  }
+
+  /**
+   * The SQL and bound values of one tracked statement. It holds no reference to the statement, so
+   * the weak map entry goes away once the statement is unreachable.
+   */
+  private static class Trace {
+    private final String sql;
+    private Object[] values = new Object[8];
+    private int valueCount;
+
+    private Trace(String sql) {
+      this.sql = sql;
+    }
+
+    private void bind(int parameterIndex, Object value) {
+      if(parameterIndex > values.length) {
+        values = Arrays.copyOf(values, Math.max(parameterIndex, values.length * 2));
+      }
+
+      values[parameterIndex - 1] = value;
+      valueCount = Math.max(valueCount, parameterIndex);
+    }
+  }
+}
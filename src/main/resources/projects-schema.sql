@@ -1,3 +1,7 @@
+DROP TABLE IF EXISTS import_checkpoint;
+DROP TABLE IF EXISTS change_consumer;
+DROP TABLE IF EXISTS change_sequence;
+DROP TABLE IF EXISTS project_change;
 DROP TABLE IF EXISTS step;
 DROP TABLE IF EXISTS material;
 DROP TABLE IF EXISTS project_category;
@@ -11,7 +15,9 @@ CREATE TABLE project (
     actual_hours DECIMAL(7,2),
     difficulty INT,
     notes TEXT,
-    PRIMARY KEY (project_id)
+    version INT NOT NULL DEFAULT 0,
+    PRIMARY KEY (project_id),
+    INDEX project_name_id (project_name, project_id)
 );
 
 CREATE TABLE category (
@@ -44,5 +50,36 @@ CREATE TABLE step (
     step_text TEXT NOT NULL,
     step_order INT NOT NULL,
     PRIMARY KEY (step_id),
+    INDEX step_project_order (project_id, step_order),
     FOREIGN KEY (project_id) REFERENCES project (project_id) ON DELETE CASCADE
-);
\ No newline at end of file
+);
+
+CREATE TABLE project_change (
+	change_seq BIGINT NOT NULL,
+    entity_type VARCHAR(16) NOT NULL,
+    entity_id INT NOT NULL,
+    operation VARCHAR(16) NOT NULL,
+    changed_at TIMESTAMP(6) NOT NULL DEFAULT CURRENT_TIMESTAMP(6),
+    PRIMARY KEY (change_seq)
+);
+
+CREATE TABLE change_sequence (
+	last_seq BIGINT NOT NULL,
+    purged_seq BIGINT NOT NULL
+);
+
+INSERT INTO change_sequence (last_seq, purged_seq) VALUES (0, 0);
+
+CREATE TABLE change_consumer (
+	consumer_name VARCHAR(512) NOT NULL,
+    change_seq BIGINT NOT NULL,
+    seen_at TIMESTAMP(6) NOT NULL DEFAULT CURRENT_TIMESTAMP(6),
+    PRIMARY KEY (consumer_name)
+);
+
+CREATE TABLE import_checkpoint (
+	checkpoint_name VARCHAR(512) NOT NULL,
+    source VARCHAR(1024) NOT NULL,
+    records BIGINT NOT NULL,
+    PRIMARY KEY (checkpoint_name)
+);
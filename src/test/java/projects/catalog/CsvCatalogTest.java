@@ -0,0 +1,101 @@
+package projects.catalog;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import projects.entity.Category;
+import projects.entity.Material;
+import projects.entity.Project;
+import projects.entity.Step;
+
+class CsvCatalogTest {
+
+	@Test
+	void readsBackWhatWasWritten() throws IOException {
+		Project project = new Project();
+		project.setProjectName("Build a shed, \"large\"");
+		project.setEstimatedHours(new BigDecimal("40.50"));
+		project.setDifficulty(4);
+		project.setNotes("line one\nline two");
+
+		Material material = new Material();
+		material.setMaterialName("2x4 board");
+		material.setNumRequired(20);
+		material.setCost(new BigDecimal("3.99"));
+		project.getMaterials().add(material);
+
+		Step step = new Step();
+		step.setStepText("Pour the footings");
+		project.getSteps().add(step);
+
+		Project read = readOne(write(project, "Outdoor"));
+
+		assertEquals(project.getProjectName(), read.getProjectName());
+		assertEquals(project.getEstimatedHours(), read.getEstimatedHours());
+		assertNull(read.getActualHours());
+		assertEquals(project.getDifficulty(), read.getDifficulty());
+		assertEquals(project.getNotes(), read.getNotes());
+		assertEquals("2x4 board", read.getMaterials().get(0).getMaterialName());
+		assertEquals(new BigDecimal("3.99"), read.getMaterials().get(0).getCost());
+		assertEquals("Pour the footings", read.getSteps().get(0).getStepText());
+	}
+
+	@Test
+	void categoryNamesRoundTripEvenWhenTheyLookLikeIds() throws IOException {
+		Project project = new Project();
+		project.setProjectName("p");
+
+		Project read = readOne(write(project, "2024", "#1", "##x", "Outdoor"));
+
+		assertEquals(List.of("2024", "#1", "##x", "Outdoor"), read.getCategories().stream().map(Category::getCategoryName).toList());
+		assertTrue(read.getCategories().stream().allMatch(category -> category.getCategoryId() == null));
+	}
+
+	@Test
+	void readsCategoryIdsWrittenWithAHash() throws IOException {
+		Project read = readOne("project,p\ncategory,#12\ncategory,12\n");
+
+		assertEquals(12, read.getCategories().get(0).getCategoryId());
+		assertEquals("12", read.getCategories().get(1).getCategoryName());
+	}
+
+	@Test
+	void rejectsACategoryIdThatIsNotANumber() throws IOException {
+		CatalogRecord record = new CsvCatalogReader(new BufferedReader(new StringReader("project,p\ncategory,#x\n"))).next();
+
+		assertFalse(record.isValid());
+		assertTrue(record.error().startsWith("Category ID x is not a whole number."));
+	}
+
+	private String write(Project project, String... categoryNames) throws IOException {
+		for(String categoryName : categoryNames) {
+			Category category = new Category();
+			category.setCategoryName(categoryName);
+			project.getCategories().add(category);
+		}
+
+		StringWriter out = new StringWriter();
+		new CsvCatalogWriter(out).write(project);
+		return out.toString();
+	}
+
+	private Project readOne(String csv) throws IOException {
+		CatalogReader reader = new CsvCatalogReader(new BufferedReader(new StringReader(csv)));
+		CatalogRecord record = reader.next();
+
+		assertTrue(record.isValid(), record::error);
+		assertNull(reader.next());
+		return record.project();
+	}
+}
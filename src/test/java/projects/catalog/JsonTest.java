@@ -0,0 +1,86 @@
+package projects.catalog;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import projects.catalog.Json.JsonException;
+
+class JsonTest {
+
+	@Test
+	void parsesObjectsInFieldOrder() {
+		Object value = Json.parse("{\"b\": 1, \"a\": [true, false, null], \"c\": {}}");
+
+		Map<?, ?> object = (Map<?, ?>)value;
+		assertEquals(List.of("b", "a", "c"), List.copyOf(object.keySet()));
+		assertEquals(new BigDecimal("1"), object.get("b"));
+		assertEquals(Arrays.asList(true, false, null), object.get("a"));
+		assertEquals(Map.of(), object.get("c"));
+	}
+
+	@Test
+	void keepsTheScaleOfNumbers() {
+		assertEquals(new BigDecimal("12.50"), Json.parse("12.50"));
+		assertEquals(new BigDecimal("-3"), Json.parse("-3"));
+		assertEquals(new BigDecimal("1E+3"), Json.parse("1e3"));
+	}
+
+	@Test
+	void decodesStringEscapes() {
+		assertEquals("a\"b\\c/d\b\f\n\r\t\u00e9", Json.parse("\"a\\\"b\\\\c\\/d\\b\\f\\n\\r\\t\\u00e9\""));
+	}
+
+	@Test
+	void parsesNull() {
+		assertNull(Json.parse(" null "));
+	}
+
+	@Test
+	void rejectsMalformedInput() {
+		assertError("", "Unexpected end of input at offset 0.");
+		assertError("{\"a\" 1}", "Expected ':' at offset 5.");
+		assertError("[1, 2", "Expected ']' at offset 5.");
+		assertError("{a: 1}", "Expected a field name at offset 1.");
+		assertError("\"abc", "Unterminated string at offset 4.");
+		assertError("\"\\x\"", "Invalid escape '\\x' at offset 3.");
+		assertError("\"\\u12\"", "Incomplete unicode escape at offset 3.");
+		assertError("1.2.3", "Invalid number at offset 0.");
+		assertError("tru", "Unexpected character 't' at offset 0.");
+		assertError("{} x", "Unexpected text after the value at offset 3.");
+	}
+
+	@Test
+	void appendStringRoundTrips() throws IOException {
+		String value = "quote \" backslash \\ line\nbreak tab\t control\u0001 unicode \u00e9";
+		StringBuilder out = new StringBuilder();
+
+		Json.appendString(out, value);
+
+		assertTrue(out.indexOf("\\u0001") > 0);
+		assertEquals(value, Json.parse(out.toString()));
+	}
+
+	@Test
+	void appendStringWritesNull() throws IOException {
+		StringBuilder out = new StringBuilder();
+
+		Json.appendString(out, null);
+
+		assertEquals("null", out.toString());
+	}
+
+	private void assertError(String text, String message) {
+		JsonException e = assertThrows(JsonException.class, () -> Json.parse(text));
+		assertEquals(message, e.getMessage());
+	}
+}
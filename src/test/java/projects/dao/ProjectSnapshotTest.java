@@ -0,0 +1,172 @@
+package projects.dao;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import projects.entity.Category;
+import projects.entity.Material;
+import projects.entity.Project;
+import projects.entity.Step;
+import projects.exception.DbException;
+
+class ProjectSnapshotTest {
+	@TempDir
+	Path dir;
+
+	@Test
+	void readsBackWhatWasWritten() throws IOException {
+		Path path = dir.resolve("projects.snapshot");
+		List<Project> projects = List.of(project(3, "shed"), project(5, "Birdhouse"), project(9, "arbor"));
+
+		assertEquals(3, ProjectSnapshot.write(path, List.of(category(1, "Outdoor"), category(2, "Wood")), projects.stream(), 42));
+
+		try(ProjectSnapshot snapshot = ProjectSnapshot.open(path)) {
+			assertEquals(3, snapshot.getProjectCount());
+			assertEquals(42, snapshot.getChangeSeq());
+			assertEquals("[Outdoor, Wood]", snapshot.fetchAllCategories().stream().map(Category::getCategoryName).toList().toString());
+
+			for(Project project : projects) {
+				Project read = snapshot.fetchProjectById(project.getProjectId()).orElseThrow();
+				assertEquals(project.toString(), read.toString());
+				assertEquals(project.getVersion(), read.getVersion());
+				assertEquals(project.getEstimatedHours(), read.getEstimatedHours());
+			}
+
+			assertFalse(snapshot.fetchProjectById(4).isPresent());
+			assertFalse(snapshot.fetchProjectById(10).isPresent());
+		}
+	}
+
+	@Test
+	void listsProjectsByNameIgnoringCase() throws IOException {
+		Path path = dir.resolve("projects.snapshot");
+		ProjectSnapshot.write(path, List.of(), Stream.of(project(1, "shed"), project(2, "Birdhouse"), project(3, "arbor")), 0);
+
+		try(ProjectSnapshot snapshot = ProjectSnapshot.open(path)) {
+			List<Project> projects = snapshot.fetchAllProjects();
+
+			assertEquals(List.of("arbor", "Birdhouse", "shed"), projects.stream().map(Project::getProjectName).toList());
+			assertTrue(projects.get(0).getMaterials().isEmpty());
+			assertEquals(List.of(2, 3), snapshot.fetchProjectsByIds(Arrays.asList(2, null, 7, 3)).stream().map(Project::getProjectId).toList());
+		}
+	}
+
+	@Test
+	void keepsNullColumns() throws IOException {
+		Path path = dir.resolve("projects.snapshot");
+		Project project = new Project();
+		project.setProjectId(1);
+
+		ProjectSnapshot.write(path, List.of(), Stream.of(project), 0);
+
+		try(ProjectSnapshot snapshot = ProjectSnapshot.open(path)) {
+			Project read = snapshot.fetchProjectById(1).orElseThrow();
+
+			assertNull(read.getProjectName());
+			assertNull(read.getEstimatedHours());
+			assertNull(read.getDifficulty());
+			assertNull(read.getVersion());
+		}
+	}
+
+	@Test
+	void mergesChangesIntoANewSnapshot() throws IOException {
+		Path path = dir.resolve("projects.snapshot");
+		Path next = dir.resolve("next.snapshot");
+		ProjectSnapshot.write(path, List.of(), Stream.of(project(1, "a"), project(2, "b"), project(3, "c")), 10);
+
+		try(ProjectSnapshot snapshot = ProjectSnapshot.open(path)) {
+			// 2 was deleted, 3 changed and 4 added
+			assertEquals(3, snapshot.writeWithChanges(next, List.of(), Set.of(2, 3, 4), List.of(project(3, "c2"), project(4, "d")), 12));
+		}
+
+		try(ProjectSnapshot snapshot = ProjectSnapshot.open(next)) {
+			assertEquals(12, snapshot.getChangeSeq());
+			assertEquals(List.of("a", "c2", "d"), snapshot.fetchAllProjects().stream().map(Project::getProjectName).toList());
+		}
+	}
+
+	@Test
+	void rejectsProjectsOutOfOrder() {
+		Path path = dir.resolve("projects.snapshot");
+
+		assertThrows(DbException.class, () -> ProjectSnapshot.write(path, List.of(), Stream.of(project(2, "b"), project(1, "a")), 0));
+		assertFalse(Files.exists(path));
+		assertFalse(Files.exists(dir.resolve("projects.snapshot.tmp")));
+	}
+
+	@Test
+	void failsBeforeWritingPastTheSizeLimit() throws IOException {
+		Path path = dir.resolve("projects.snapshot");
+		List<Project> projects = List.of(project(1, "a"), project(2, "b"));
+		ProjectSnapshot.write(path, List.of(), projects.stream(), 0);
+		long size = Files.size(path);
+
+		assertEquals(2, ProjectSnapshot.write(dir.resolve("exact.snapshot"), List.of(), projects.stream(), 0, size));
+		assertThrows(DbException.class, () -> ProjectSnapshot.write(dir.resolve("over.snapshot"), List.of(), projects.stream(), 0, size - 1));
+		assertFalse(Files.exists(dir.resolve("over.snapshot")));
+		assertFalse(Files.exists(dir.resolve("over.snapshot.tmp")));
+	}
+
+	@Test
+	void rejectsATruncatedFile() throws IOException {
+		Path path = dir.resolve("projects.snapshot");
+		ProjectSnapshot.write(path, List.of(), Stream.of(project(1, "a")), 0);
+
+		byte[] bytes = Files.readAllBytes(path);
+		Files.write(path, Arrays.copyOf(bytes, bytes.length - 1));
+
+		assertThrows(DbException.class, () -> ProjectSnapshot.open(path));
+	}
+
+	private Project project(int projectId, String projectName) {
+		Project project = new Project();
+		project.setProjectId(projectId);
+		project.setVersion(projectId * 10);
+		project.setProjectName(projectName);
+		project.setEstimatedHours(new BigDecimal("12.50"));
+		project.setActualHours(new BigDecimal("-0.25"));
+		project.setDifficulty(3);
+		project.setNotes("notes for " + projectName + " \u00e9");
+
+		Material material = new Material();
+		material.setMaterialId(projectId * 100);
+		material.setProjectId(projectId);
+		material.setMaterialName("board");
+		material.setNumRequired(4);
+		material.setCost(new BigDecimal("3.99"));
+		project.getMaterials().add(material);
+
+		Step step = new Step();
+		step.setStepId(projectId * 100);
+		step.setProjectId(projectId);
+		step.setStepOrder(1024);
+		step.setStepText("cut the boards");
+		project.getSteps().add(step);
+
+		project.getCategories().add(category(1, "Outdoor"));
+		return project;
+	}
+
+	private Category category(int categoryId, String categoryName) {
+		Category category = new Category();
+		category.setCategoryId(categoryId);
+		category.setCategoryName(categoryName);
+		return category;
+	}
+}
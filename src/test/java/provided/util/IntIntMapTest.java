@@ -0,0 +1,110 @@
+/**
+ *
+ */
+package provided.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for {@link IntIntMap}.
+ *
+ * @author Promineo
+ *
+ */
+class IntIntMapTest {
+
+  @Test
+  void getReturnsMissingForAbsentKeys() {
+    IntIntMap map = new IntIntMap();
+
+    assertTrue(map.isEmpty());
+    assertEquals(IntIntMap.MISSING, map.get(1));
+    assertFalse(map.containsKey(1));
+  }
+
+  @Test
+  void putAddsAndReplacesValues() {
+    IntIntMap map = new IntIntMap();
+
+    assertEquals(IntIntMap.MISSING, map.put(7, 70));
+    assertEquals(70, map.put(7, 71));
+    assertEquals(71, map.get(7));
+    assertEquals(1, map.size());
+  }
+
+  @Test
+  void putIfAbsentKeepsTheExistingValue() {
+    IntIntMap map = new IntIntMap();
+
+    assertEquals(IntIntMap.MISSING, map.putIfAbsent(3, 30));
+    assertEquals(30, map.putIfAbsent(3, 31));
+    assertEquals(30, map.get(3));
+    assertEquals(1, map.size());
+  }
+
+  @Test
+  void acceptsAnyIntKey() {
+    IntIntMap map = new IntIntMap();
+
+    map.put(0, 1);
+    map.put(-1, 2);
+    map.put(Integer.MIN_VALUE, 3);
+    map.put(Integer.MAX_VALUE, 4);
+
+    assertEquals(1, map.get(0));
+    assertEquals(2, map.get(-1));
+    assertEquals(3, map.get(Integer.MIN_VALUE));
+    assertEquals(4, map.get(Integer.MAX_VALUE));
+    assertEquals(4, map.size());
+  }
+
+  @Test
+  void rejectsNegativeValues() {
+    IntIntMap map = new IntIntMap();
+
+    assertThrows(IllegalArgumentException.class, () -> map.put(1, -1));
+    assertThrows(IllegalArgumentException.class, () -> map.putIfAbsent(1, -5));
+    assertTrue(map.isEmpty());
+  }
+
+  @Test
+  void keepsEveryEntryAsItGrows() {
+    IntIntMap map = new IntIntMap(0);
+    Map<Integer, Integer> expected = new HashMap<>();
+    Random random = new Random(42);
+
+    for(int index = 0; index < 10_000; index++) {
+      int key = random.nextInt();
+      int value = random.nextInt(Integer.MAX_VALUE);
+
+      map.put(key, value);
+      expected.put(key, value);
+    }
+
+    assertEquals(expected.size(), map.size());
+    expected.forEach((key, value) -> assertEquals(value, map.get(key)));
+  }
+
+  @Test
+  void keepsSequentialKeysApart() {
+    IntIntMap map = new IntIntMap(1_000);
+
+    for(int key = 1; key <= 1_000; key++) {
+      map.put(key, key * 2);
+    }
+
+    for(int key = 1; key <= 1_000; key++) {
+      assertEquals(key * 2, map.get(key));
+    }
+    assertFalse(map.containsKey(1_001));
+  }
+}